@@ -24,15 +24,28 @@
  * Bugs:       no known bugs
  */
 
+import java.io.IOException;
 import java.lang.IllegalArgumentException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 /** This class utilizes the BSTNode class and implements the functionality of an
- * AVL tree. 
+ * AVL tree. The keys can be iterated in order (or in reverse, or over a range)
+ * without copying them: the iterators keep a stack of the nodes still to visit,
+ * which never holds more than the height of the tree.
  * @param <K>
  */
 
-public class AVLTree<K extends Comparable<K>> implements AVLTreeADT<K> {
+public class AVLTree<K extends Comparable<K>> implements AVLTreeADT<K>, Iterable<K> {
+	//set operations on trees smaller than this together run on one thread
+	private static final int PARALLEL_THRESHOLD = 1 << 13;
+	
 	//instance variables
 	private BSTNode<K> root; //the root or head of the AVL tree
 	
@@ -42,6 +55,115 @@ public class AVLTree<K extends Comparable<K>> implements AVLTreeADT<K> {
 	public AVLTree() {
 	} // creates an empty AVL Tree
 	
+	/**
+	 * Builds a tree from n keys given in ascending order, in O(n) steps. No key is
+	 * compared except with the one before it and there are no rotations: the middle
+	 * key becomes the root and each half is built the same way, so the tree is as
+	 * balanced as possible and every height and size is set once.
+	 * @param keys - the keys, smallest first
+	 * @param n - the number of keys to take from the iterator
+	 * @return the new tree
+	 * @throws DuplicateKeyException if the same key is given twice
+	 * @throws IllegalArgumentException if a key is null, the keys are out of order,
+	 * or the iterator has fewer than n keys
+	 */
+	public static <K extends Comparable<K>> AVLTree<K> fromSorted(Iterator<K> keys, int n)
+			throws DuplicateKeyException, IllegalArgumentException {
+		if (n < 0) {
+			throw new IllegalArgumentException("Cannot build a tree of a negative number of keys");
+		}
+		Object[] sorted = new Object[n];
+		for (int i = 0; i < n; i++) {
+			if (!keys.hasNext()) {
+				throw new IllegalArgumentException("Expected " + n + " keys but found only " + i);
+			}
+			sorted[i] = keys.next();
+		}
+		return fromSortedArray(sorted);
+	}
+	
+	/**
+	 * Builds a tree from keys in any order. The keys are sorted with a parallel
+	 * sort and the tree is then built as in fromSorted, which is much faster than
+	 * inserting them one at a time.
+	 * @param keys - the keys to put in the tree
+	 * @return the new tree
+	 * @throws DuplicateKeyException if the same key is given twice
+	 * @throws IllegalArgumentException if a key is null
+	 */
+	public static <K extends Comparable<K>> AVLTree<K> fromUnsorted(Collection<K> keys)
+			throws DuplicateKeyException, IllegalArgumentException {
+		Object[] sorted = keys.toArray();
+		for (Object key : sorted) {
+			if (key == null) {
+				throw new IllegalArgumentException("Cannot insert a null key");
+			}
+		}
+		Arrays.parallelSort(sorted, AVLTree::<K>compareKeys);
+		return fromSortedArray(sorted);
+	}
+	
+	/**
+	 * Helper method for fromSorted and fromUnsorted. Checks that the keys are in
+	 * ascending order and builds the tree from them.
+	 * @param sorted - the keys, smallest first
+	 * @return the new tree
+	 */
+	private static <K extends Comparable<K>> AVLTree<K> fromSortedArray(Object[] sorted)
+			throws DuplicateKeyException, IllegalArgumentException {
+		for (int i = 0; i < sorted.length; i++) {
+			if (sorted[i] == null) {
+				throw new IllegalArgumentException("Cannot insert a null key");
+			}
+			if (i > 0) {
+				int comparison = AVLTree.<K>compareKeys(sorted[i - 1], sorted[i]);
+				if (comparison == 0) {
+					throw new DuplicateKeyException("WARNING: failed to insert duplicate key: "
+							+ sorted[i] + ".");
+				}
+				if (comparison > 0) {
+					throw new IllegalArgumentException("Keys must be in ascending order, but "
+							+ sorted[i] + " follows " + sorted[i - 1]);
+				}
+			}
+		}
+		
+		AVLTree<K> tree = new AVLTree<K>();
+		tree.root = tree.buildBalanced(sorted, 0, sorted.length);
+		return tree;
+	}
+	
+	/**
+	 * Compares two keys held in an Object array
+	 * @return the result of a.compareTo(b)
+	 */
+	@SuppressWarnings("unchecked")
+	private static <K extends Comparable<K>> int compareKeys(Object a, Object b) {
+		return ((K) a).compareTo((K) b);
+	}
+	
+	/**
+	 * Builds a balanced subtree from sorted[from] to sorted[to - 1] bottom-up:
+	 * the children are built first, so each node's height and size are set once.
+	 * @param sorted - the keys, smallest first
+	 * @param from - the first key of the subtree
+	 * @param to - one past the last key of the subtree
+	 * @return the root of the subtree, or null if it is empty
+	 */
+	@SuppressWarnings("unchecked")
+	private BSTNode<K> buildBalanced(Object[] sorted, int from, int to) {
+		if (from >= to) {
+			return null;
+		}
+		int middle = (from + to) >>> 1;
+		BSTNode<K> current = new BSTNode<K>((K) sorted[middle]);
+		current.setLeft(buildBalanced(sorted, from, middle));
+		current.setRight(buildBalanced(sorted, middle + 1, to));
+		current.setHeight(updateHeight(current));
+		current.setSize(updateSize(current));
+		return current;
+	}
+	
 	/** This class represents a tree node. Sets up the node with a constructor
 	 * and getters and setters for all relevant variables. Tracks key, height,
 	 * and the left and right children of the node.
@@ -51,6 +173,7 @@ public class AVLTree<K extends Comparable<K>> implements AVLTreeADT<K> {
 		/* fields */
 		private K key;	// A value to be inserted into the tree
 		private int height;	// An integer representing the height of the node
+		private int size;	// The number of nodes in the subtree rooted at this node
 		private BSTNode<K> left, right;	// Stores the left and right nodes
 										// of the current node
 		
@@ -61,8 +184,9 @@ public class AVLTree<K extends Comparable<K>> implements AVLTreeADT<K> {
 		BSTNode(K key) {
 			// TODO: implement constructor
 			this.key = key;
-			//node initially has a height of one
+			//node initially has a height of one and is a subtree of one node
 			height = 1;
+			size = 1;
 			left = null;
 			right = null;
 		}
@@ -85,6 +209,10 @@ public class AVLTree<K extends Comparable<K>> implements AVLTreeADT<K> {
 			return height;
 		}
 		
+		public int getSize() {
+			return size;
+		}
+		
 		/* mutators */
 		//set left, set right, setKey, set Height
 		public void setLeft(BSTNode<K> left) {
@@ -99,6 +227,10 @@ public class AVLTree<K extends Comparable<K>> implements AVLTreeADT<K> {
 			this.height = height;
 		}
 		
+		public void setSize(int size) {
+			this.size = size;
+		}
+		
 		public void setKey(K key) {
 			this.key = key;
 		}
@@ -159,10 +291,11 @@ public class AVLTree<K extends Comparable<K>> implements AVLTreeADT<K> {
     	} //end else
     	
     	//--------------------------------------------------------------
-    	//Update the height
+    	//Update the height and subtree size
     	//--------------------------------------------------------------
     	
     	current.setHeight(updateHeight(current));
+    	current.setSize(updateSize(current));
     	
     	//--------------------------------------------------------------
     	//Get the balance factor for the current node, then check for balance
@@ -206,8 +339,11 @@ public class AVLTree<K extends Comparable<K>> implements AVLTreeADT<K> {
         BSTNode<K> newParent = current.getRight();
         current.setRight(newParent.getLeft());
         newParent.setLeft(current);
+        //current is now below newParent, so it must be updated first
         current.setHeight(updateHeight(current));
-        newParent.setHeight(updateHeight(current));
+        current.setSize(updateSize(current));
+        newParent.setHeight(updateHeight(newParent));
+        newParent.setSize(updateSize(newParent));
         return newParent;
     }
     
@@ -219,8 +355,11 @@ public class AVLTree<K extends Comparable<K>> implements AVLTreeADT<K> {
         BSTNode<K> newParent = current.getLeft();
         current.setLeft(newParent.getRight());
         newParent.setRight(current);
+        //current is now below newParent, so it must be updated first
         current.setHeight(updateHeight(current));
-        newParent.setHeight(updateHeight(current));
+        current.setSize(updateSize(current));
+        newParent.setHeight(updateHeight(newParent));
+        newParent.setSize(updateSize(newParent));
         return newParent;
     }
     
@@ -280,6 +419,23 @@ public class AVLTree<K extends Comparable<K>> implements AVLTreeADT<K> {
     		return (current.getLeft().getHeight() + 1);
     	}
     }
+    
+    /** Returns the new subtree size for a given node: the sizes of its
+     * children plus one for the node itself.
+     * Called during rotation and insertion/deletion, after the children are updated
+     * @param current; the node being evaluated
+     * @return new subtree size (integer)
+     */
+    public int updateSize(BSTNode<K> current) {
+    	return sizeOf(current.getLeft()) + sizeOf(current.getRight()) + 1;
+    }
+    
+    /** @param current; a node, or null
+     * @return the size of the subtree rooted at current, 0 for an empty subtree
+     */
+    private int sizeOf(BSTNode<K> current) {
+    	return (current == null) ? 0 : current.getSize();
+    }
 
 	/**
 	 * This method finds the node with the key matching the passed in parameter
@@ -326,9 +482,10 @@ public class AVLTree<K extends Comparable<K>> implements AVLTreeADT<K> {
 		}
   
         //--------------------------------------------------------------
-    	//Update height
+    	//Update height and subtree size
     	//-------------------------------------------------------------- 
         current.setHeight(updateHeight(current)); 
+        current.setSize(updateSize(current));
   
         //--------------------------------------------------------------
     	//Get the balance factor for the current node and check if it is unbalanced
@@ -373,6 +530,18 @@ public class AVLTree<K extends Comparable<K>> implements AVLTreeADT<K> {
 		return current;
 	}
 
+	/**
+	 * returns the largest node in this tree
+	 * @param BSTNode<K> current - the current node being evaluated, starting node for search
+	 * @return the largest node
+	 */
+	public BSTNode<K> largestInTree(BSTNode<K> current){
+		while (current.getRight() != null) {
+			current = current.getRight();
+		}
+		return current;
+	}
+
 	/**
 	 * removes the current Node and promotes the smallest node in the right subtree
 	 * calls a helper method smallestInTree
@@ -459,48 +628,553 @@ public class AVLTree<K extends Comparable<K>> implements AVLTreeADT<K> {
 	    	
 	} 
 
+	/**
+	 * Returns the number of keys in the tree. Every node keeps the size of its
+	 * subtree, so this is read from the root.
+	 * @return the number of keys in the tree
+	 */
+	public int size() {
+		return sizeOf(root);
+	}
+	
+	/**
+	 * Finds the k-th smallest key, counting from 0, without walking the whole tree.
+	 * At each node the size of the left subtree says whether the key is on the left,
+	 * is this node, or is on the right, so this takes O(log n) steps.
+	 * @param k - the number of keys smaller than the key wanted
+	 * @return the k-th smallest key
+	 * @throws IllegalArgumentException if k is not between 0 and size() - 1
+	 */
+	public K select(int k) throws IllegalArgumentException {
+		if (k < 0 || k >= size()) {
+			throw new IllegalArgumentException("k must be between 0 and size() - 1");
+		}
+		
+		BSTNode<K> current = root;
+		while (true) {
+			int leftSize = sizeOf(current.getLeft());
+			if (k < leftSize) {
+				//the key is in the left subtree
+				current = current.getLeft();
+			}
+			else if (k == leftSize) {
+				//exactly k keys are smaller than this one
+				return current.getKey();
+			}
+			else {
+				//skip this node and its left subtree
+				k -= leftSize + 1;
+				current = current.getRight();
+			}
+		}
+	}
+	
+	/**
+	 * Counts the keys in the tree that are smaller than key in O(log n) steps.
+	 * The key itself does not have to be in the tree. For a key that is in the tree
+	 * this is its position in print(), counting from 0, so select(rank(key)) is key.
+	 * @param key - the value to compare against
+	 * @return the number of keys less than key
+	 * @throws IllegalArgumentException if key is null
+	 */
+	public int rank(K key) throws IllegalArgumentException {
+		if (key == null) {
+			throw new IllegalArgumentException("Cannot rank a null key");
+		}
+		return countBelow(key, false);
+	}
+	
+	/**
+	 * Counts the keys from lo to hi, including lo and hi if they are in the tree,
+	 * in O(log n) steps.
+	 * @param lo - the smallest key to count
+	 * @param hi - the largest key to count
+	 * @return the number of keys k with lo <= k <= hi, or 0 if lo is greater than hi
+	 * @throws IllegalArgumentException if lo or hi is null
+	 */
+	public int countInRange(K lo, K hi) throws IllegalArgumentException {
+		if (lo == null || hi == null) {
+			throw new IllegalArgumentException("Cannot count a range with a null bound");
+		}
+		if (lo.compareTo(hi) > 0) {
+			return 0;
+		}
+		return countBelow(hi, true) - countBelow(lo, false);
+	}
+	
+	/**
+	 * Helper method for rank and countInRange. Walks from the root towards key,
+	 * adding up the nodes passed on the left.
+	 * @param key - the value to compare against
+	 * @param inclusive - true to also count a node equal to key
+	 * @return the number of keys less than key (or less than or equal to key)
+	 */
+	private int countBelow(K key, boolean inclusive) {
+		int count = 0;
+		BSTNode<K> current = root;
+		while (current != null) {
+			int comparison = key.compareTo(current.getKey());
+			if (comparison < 0) {
+				current = current.getLeft();
+			}
+			else if (comparison == 0) {
+				return count + sizeOf(current.getLeft()) + (inclusive ? 1 : 0);
+			}
+			else {
+				//this node and its whole left subtree are below key
+				count += sizeOf(current.getLeft()) + 1;
+				current = current.getRight();
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Builds a tree of left's keys, key, and right's keys, in O(|height(left) -
+	 * height(right)|) steps. The nodes of left and right are moved into the new
+	 * tree, so both are left empty.
+	 * @param left - a tree whose keys are all less than key
+	 * @param key - the key between the two trees
+	 * @param right - a tree whose keys are all greater than key
+	 * @return the joined tree
+	 * @throws IllegalArgumentException if key is null, the keys are not in that
+	 * order, or left and right are the same tree
+	 */
+	public static <K extends Comparable<K>> AVLTree<K> join(AVLTree<K> left, K key,
+			AVLTree<K> right) throws IllegalArgumentException {
+		if (key == null) {
+			throw new IllegalArgumentException("Cannot join with a null key");
+		}
+		if (left == right) {
+			throw new IllegalArgumentException("Cannot join a tree with itself");
+		}
+		if ((left.root != null && left.largestInTree(left.root).getKey().compareTo(key) >= 0)
+				|| (right.root != null && right.smallestInTree(right.root).getKey().compareTo(key) <= 0)) {
+			throw new IllegalArgumentException("Every key of left must be less than " + key
+					+ " and every key of right greater");
+		}
+		
+		AVLTree<K> result = new AVLTree<K>();
+		result.root = result.join(left.root, result.new BSTNode<K>(key), right.root);
+		left.root = null;
+		right.root = null;
+		return result;
+	}
+	
+	/**
+	 * Splits the tree at key in O(log n) steps. This tree keeps the keys less than
+	 * key and the rest are moved to the tree returned.
+	 * @param key - where to split
+	 * @return a tree of the keys greater than or equal to key
+	 * @throws IllegalArgumentException if key is null
+	 */
+	public AVLTree<K> split(K key) throws IllegalArgumentException {
+		if (key == null) {
+			throw new IllegalArgumentException("Cannot split at a null key");
+		}
+		SplitResult parts = split(root, key);
+		root = parts.left;
+		AVLTree<K> rest = new AVLTree<K>();
+		rest.root = (parts.match == null) ? parts.right : join(null, parts.match, parts.right);
+		return rest;
+	}
+	
+	/**
+	 * Adds every key of other to this tree. The nodes of other are moved into this
+	 * tree, so other is left empty. Large trees are combined on several threads.
+	 * For trees of m and n keys, m <= n, this takes O(m log(n/m + 1)) steps, which
+	 * is far less than inserting m keys when m is small or the keys are clustered.
+	 * @param other - the keys to add
+	 */
+	public void union(AVLTree<K> other) {
+		combine(other, SetOperation.UNION);
+	}
+	
+	/**
+	 * Removes every key of this tree that is not in other, in the same number of
+	 * steps as union. other is left empty.
+	 * @param other - the keys to keep
+	 */
+	public void intersection(AVLTree<K> other) {
+		combine(other, SetOperation.INTERSECTION);
+	}
+	
+	/**
+	 * Removes every key of other from this tree, in the same number of steps as
+	 * union. other is left empty.
+	 * @param other - the keys to remove
+	 */
+	public void difference(AVLTree<K> other) {
+		combine(other, SetOperation.DIFFERENCE);
+	}
+	
+	/**
+	 * Helper method for union, intersection and difference
+	 * @param other - the second tree, which is emptied
+	 * @param operation - the operation to apply
+	 */
+	private void combine(AVLTree<K> other, SetOperation operation) {
+		if (other == this) {
+			//a tree combined with itself: union and intersection change nothing
+			if (operation == SetOperation.DIFFERENCE) {
+				root = null;
+			}
+			return;
+		}
+		BSTNode<K> otherRoot = other.root;
+		other.root = null;
+		root = ForkJoinPool.commonPool().invoke(new SetOperationTask(operation, root, otherRoot));
+	}
+	
+	/** The set operations that SetOperationTask can apply */
+	private enum SetOperation { UNION, INTERSECTION, DIFFERENCE }
+	
+	/**
+	 * Applies a set operation to two subtrees with the join-based algorithms of
+	 * Blelloch, Ferizovic and Sun: the second tree is split at the first tree's
+	 * root key, the two left halves and the two right halves are combined (on
+	 * separate threads for large trees), and the results are joined again. No
+	 * two tasks touch the same node, so no locking is needed, and joining the
+	 * tasks makes their writes visible to the thread that joins them.
+	 */
+	private class SetOperationTask extends RecursiveTask<BSTNode<K>> {
+		private static final long serialVersionUID = 1L;
+		
+		private final SetOperation operation;	// the operation to apply
+		private final BSTNode<K> first, second;	// roots of the two subtrees
+		
+		SetOperationTask(SetOperation operation, BSTNode<K> first, BSTNode<K> second) {
+			this.operation = operation;
+			this.first = first;
+			this.second = second;
+		}
+		
+		@Override
+		protected BSTNode<K> compute() {
+			if (first == null) {
+				return (operation == SetOperation.UNION) ? second : null;
+			}
+			if (second == null) {
+				return (operation == SetOperation.INTERSECTION) ? null : first;
+			}
+			
+			BSTNode<K> firstLeft = first.getLeft();
+			BSTNode<K> firstRight = first.getRight();
+			SplitResult parts = split(second, first.getKey());
+			
+			SetOperationTask leftTask = new SetOperationTask(operation, firstLeft, parts.left);
+			SetOperationTask rightTask = new SetOperationTask(operation, firstRight, parts.right);
+			BSTNode<K> left, right;
+			if (sizeOf(first) + sizeOf(second) >= PARALLEL_THRESHOLD) {
+				leftTask.fork();
+				right = rightTask.compute();
+				left = leftTask.join();
+			}
+			else {
+				left = leftTask.compute();
+				right = rightTask.compute();
+			}
+			
+			//keep the first tree's root key when the operation says it belongs
+			boolean inSecond = (parts.match != null);
+			boolean keep = (operation == SetOperation.UNION)
+					|| (operation == SetOperation.INTERSECTION && inSecond)
+					|| (operation == SetOperation.DIFFERENCE && !inSecond);
+			return keep ? AVLTree.this.join(left, first, right) : join2(left, right);
+		}
+	}
+	
+	/** The pieces of a tree split at a key, or of a tree split off its largest node */
+	private class SplitResult {
+		private final BSTNode<K> left;	// the keys less than the split key
+		private final BSTNode<K> match;	// the node holding the split key, or null
+		private final BSTNode<K> right;	// the keys greater than the split key
+		
+		SplitResult(BSTNode<K> left, BSTNode<K> match, BSTNode<K> right) {
+			this.left = left;
+			this.match = match;
+			this.right = right;
+		}
+	}
+	
+	/**
+	 * Splits the subtree rooted at current at key. Each node on the path to key
+	 * is joined into the side it belongs to, so this takes O(log n) steps.
+	 * @param current - the root of the subtree to split
+	 * @param key - where to split
+	 * @return the keys less than key, the node holding key (or null), and the keys
+	 * greater than key
+	 */
+	private SplitResult split(BSTNode<K> current, K key) {
+		if (current == null) {
+			return new SplitResult(null, null, null);
+		}
+		BSTNode<K> left = current.getLeft();
+		BSTNode<K> right = current.getRight();
+		int comparison = key.compareTo(current.getKey());
+		if (comparison == 0) {
+			return new SplitResult(left, current, right);
+		}
+		if (comparison < 0) {
+			SplitResult parts = split(left, key);
+			return new SplitResult(parts.left, parts.match, join(parts.right, current, right));
+		}
+		SplitResult parts = split(right, key);
+		return new SplitResult(join(left, current, parts.left), parts.match, parts.right);
+	}
+	
+	/**
+	 * Removes the largest node from the subtree rooted at current
+	 * @param current - the root of a non-empty subtree
+	 * @return the rest of the subtree as left, and the largest node as match
+	 */
+	private SplitResult splitLast(BSTNode<K> current) {
+		if (current.getRight() == null) {
+			return new SplitResult(current.getLeft(), current, null);
+		}
+		SplitResult parts = splitLast(current.getRight());
+		return new SplitResult(join(current.getLeft(), current, parts.left), parts.match, null);
+	}
+	
+	/**
+	 * Joins two subtrees that have no key between them
+	 * @param left - a subtree whose keys are all less than those of right
+	 * @param right - a subtree
+	 * @return the root of the joined subtree
+	 */
+	private BSTNode<K> join2(BSTNode<K> left, BSTNode<K> right) {
+		if (left == null) {
+			return right;
+		}
+		SplitResult parts = splitLast(left);
+		return join(parts.left, parts.match, right);
+	}
+	
+	/**
+	 * Joins two subtrees with middle as the node between them. If their heights
+	 * differ by more than one, middle is joined into the taller subtree along its
+	 * inner edge at the height of the shorter one, and the nodes above are
+	 * rebalanced on the way back up, so this takes O(difference in height) steps.
+	 * @param left - a subtree whose keys are all less than middle's key
+	 * @param middle - a node, whose children are replaced
+	 * @param right - a subtree whose keys are all greater than middle's key
+	 * @return the root of the joined subtree
+	 */
+	private BSTNode<K> join(BSTNode<K> left, BSTNode<K> middle, BSTNode<K> right) {
+		if (heightOf(left) > heightOf(right) + 1) {
+			return joinRight(left, middle, right);
+		}
+		if (heightOf(right) > heightOf(left) + 1) {
+			return joinLeft(left, middle, right);
+		}
+		return makeNode(left, middle, right);
+	}
+	
+	/**
+	 * Helper method for join when left is the taller subtree
+	 * @return the root of the joined subtree
+	 */
+	private BSTNode<K> joinRight(BSTNode<K> left, BSTNode<K> middle, BSTNode<K> right) {
+		BSTNode<K> inner = left.getRight();
+		BSTNode<K> joined;
+		if (heightOf(inner) <= heightOf(right) + 1) {
+			joined = makeNode(inner, middle, right);
+			if (heightOf(joined) > heightOf(left.getLeft()) + 1) {
+				//Right Left Case
+				joined = rotateRight(joined);
+			}
+		}
+		else {
+			joined = joinRight(inner, middle, right);
+		}
+		BSTNode<K> current = makeNode(left.getLeft(), left, joined);
+		if (getBalance(current) < -1) {
+			return rotateLeft(current);
+		}
+		return current;
+	}
+	
+	/**
+	 * Helper method for join when right is the taller subtree
+	 * @return the root of the joined subtree
+	 */
+	private BSTNode<K> joinLeft(BSTNode<K> left, BSTNode<K> middle, BSTNode<K> right) {
+		BSTNode<K> inner = right.getLeft();
+		BSTNode<K> joined;
+		if (heightOf(inner) <= heightOf(left) + 1) {
+			joined = makeNode(left, middle, inner);
+			if (heightOf(joined) > heightOf(right.getRight()) + 1) {
+				//Left Right Case
+				joined = rotateLeft(joined);
+			}
+		}
+		else {
+			joined = joinLeft(left, middle, inner);
+		}
+		BSTNode<K> current = makeNode(joined, right, right.getRight());
+		if (getBalance(current) > 1) {
+			return rotateRight(current);
+		}
+		return current;
+	}
+	
+	/**
+	 * Gives current the two children and updates its height and size
+	 * @return current
+	 */
+	private BSTNode<K> makeNode(BSTNode<K> left, BSTNode<K> current, BSTNode<K> right) {
+		current.setLeft(left);
+		current.setRight(right);
+		current.setHeight(updateHeight(current));
+		current.setSize(updateSize(current));
+		return current;
+	}
+	
+	/** @param current; a node, or null
+	 * @return the height of the subtree rooted at current, 0 for an empty subtree
+	 */
+	private int heightOf(BSTNode<K> current) {
+		return (current == null) ? 0 : current.getHeight();
+	}
+
 	/**
 	 * Performs in-order traversal of AVL Tree, and builds a string of the keys
 	 * @return a String with all the keys, in order, with exactly one space between keys
 	 */
 	@Override
 	public String print() {
-		//create ArrayList to collect the keys in order
-		ArrayList<K> result = new ArrayList<K>();
-		result = printRecursive(root, result);
-		
-		String inorderString = "";
-		
-		//Loop through the result array and build the in order string
-		for (int i=0; i < result.size(); i++) {
-			inorderString += result.get(i) + " ";
+		StringBuilder result = new StringBuilder();
+		try {
+			print(result);
+		} catch (IOException e) {
+			//a StringBuilder never throws IOException
+			throw new IllegalStateException(e);
 		}
-		
-		//use trim to remove the trailing space when returning
-    	return inorderString.trim();
+		return result.toString();
     }
-    
+	
 	/**
-	 * Helper method for print()
-	 * Performs in-order traversal of AVL Tree, and builds an ArrayList of the keys
-	 * @param current (node passed from main print method), result (the ArrayList of keys)
-	 * @return a String with all the keys, in order, with exactly one space between keys
+	 * Writes the same text as print() to out one key at a time, so a large tree
+	 * can be written to a file or stream without building the whole string first.
+	 * @param out - where to write the keys
+	 * @throws IOException if out throws it
 	 */
-    private ArrayList<K> printRecursive(BSTNode<K> current, ArrayList<K> result){
-    	
-    	if (current == null) {
-			return result;
+	public void print(Appendable out) throws IOException {
+		boolean first = true;
+		for (K key : this) {
+			if (!first) {
+				out.append(' ');
+			}
+			out.append(String.valueOf(key));
+			first = false;
 		}
+	}
+	
+	/**
+	 * Returns an iterator over the keys from smallest to largest. The tree must
+	 * not be changed while it is being iterated.
+	 * @return an in-order iterator
+	 */
+	@Override
+	public Iterator<K> iterator() {
+		return new InOrderIterator(null, null, false);
+	}
+	
+	/**
+	 * Returns an iterator over the keys from largest to smallest. The tree must
+	 * not be changed while it is being iterated.
+	 * @return a reverse-order iterator
+	 */
+	public Iterator<K> descendingIterator() {
+		return new InOrderIterator(null, null, true);
+	}
+	
+	/**
+	 * Returns the keys from lo to hi, in order, including lo and hi if they are in
+	 * the tree. Each iteration starts with a seek to lo that takes O(log n) steps,
+	 * then visits only the keys in the range.
+	 * @param lo - the smallest key to return
+	 * @param hi - the largest key to return
+	 * @return the keys k with lo <= k <= hi, which is empty if lo is greater than hi
+	 * @throws IllegalArgumentException if lo or hi is null
+	 */
+	public Iterable<K> range(K lo, K hi) throws IllegalArgumentException {
+		if (lo == null || hi == null) {
+			throw new IllegalArgumentException("Cannot iterate a range with a null bound");
+		}
+		return () -> new InOrderIterator(lo, hi, false);
+	}
+	
+	/**
+	 * An iterator that walks the tree in order (or in reverse order) without
+	 * recursion. The stack holds the nodes whose key is still to be returned and
+	 * whose far subtree is still to be visited, so it never grows past the height
+	 * of the tree. next() takes O(1) steps on average.
+	 */
+	private class InOrderIterator implements Iterator<K> {
+		private final ArrayDeque<BSTNode<K>> stack = new ArrayDeque<>();
+		private final K hi;					// the last key to return, or null for no limit
+		private final boolean descending;	// true to return the largest key first
 		
-    	//traverse left tree
-		printRecursive(current.getLeft(), result);
-		//handle the root
-		result.add(current.getKey());
-		//traverse right tree
-		printRecursive(current.getRight(), result);
+		/**
+		 * Sets up the stack for the first key, which is the smallest key at least
+		 * lo (or the smallest key if lo is null, or the largest if descending).
+		 * @param lo - the first key to return, or null for no limit
+		 * @param hi - the last key to return, or null for no limit
+		 * @param descending - true to iterate from largest to smallest
+		 */
+		InOrderIterator(K lo, K hi, boolean descending) {
+			this.hi = hi;
+			this.descending = descending;
+			if (lo == null) {
+				pushPath(root);
+				return;
+			}
+			
+			//seek to lo: every node at least lo is on the stack with its smaller
+			//keys below it, and every node less than lo is skipped with its left subtree
+			BSTNode<K> current = root;
+			while (current != null) {
+				if (current.getKey().compareTo(lo) >= 0) {
+					stack.push(current);
+					current = current.getLeft();
+				}
+				else {
+					current = current.getRight();
+				}
+			}
+		}
 		
-		return result;
-    }
+		@Override
+		public boolean hasNext() {
+			if (stack.isEmpty()) {
+				return false;
+			}
+			return hi == null || stack.peek().getKey().compareTo(hi) <= 0;
+		}
+		
+		@Override
+		public K next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException("There are no more keys in this iteration");
+			}
+			BSTNode<K> current = stack.pop();
+			pushPath(descending ? current.getLeft() : current.getRight());
+			return current.getKey();
+		}
+		
+		/**
+		 * Pushes current and its left children (its right children if descending),
+		 * down to the smallest (or largest) key of the subtree.
+		 * @param current - the root of the subtree to visit next
+		 */
+		private void pushPath(BSTNode<K> current) {
+			while (current != null) {
+				stack.push(current);
+				current = descending ? current.getRight() : current.getLeft();
+			}
+		}
+	}
 
 	/**
 	 * This method traverses the tree in order to check for a balanced tree. 
@@ -859,5 +1533,102 @@ public class AVLTree<K extends Comparable<K>> implements AVLTreeADT<K> {
 			}
 		else {System.out.println("Check for isEmpty failed. "
 				+ "Output did not match expected");}
+		
+		System.out.println("-------------------------------------------------------");
+		System.out.println("Test size, select, rank and countInRange: ");
+		System.out.println("-------------------------------------------------------");
+		System.out.println("Expected result: 7 4 4 5 0");
+		String orderExpected = "7 4 4 5 0";
+		String orderReturned = AVL2.size() + " " + AVL2.select(3) + " " + AVL2.rank(7)
+				+ " " + AVL2.countInRange(2, 8) + " " + AVL2.countInRange(8, 2);
+		System.out.println("Returned by program: " + orderReturned);
+		if (orderExpected.equals(orderReturned)) {
+			System.out.println("Order statistics test passed.");
+			}
+		else {System.out.println("Order statistics test failed. "
+				+ "Output did not match expected");}
+		
+		System.out.println("-------------------------------------------------------");
+		System.out.println("Test descending and range iteration: ");
+		System.out.println("-------------------------------------------------------");
+		System.out.println("Expected result: 10 8 7 4 3 2 1 / 3 4 7 8");
+		StringBuilder iterated = new StringBuilder();
+		for (Iterator<Integer> keys = AVL2.descendingIterator(); keys.hasNext();) {
+			iterated.append(keys.next()).append(' ');
+		}
+		iterated.append('/');
+		for (int key : AVL2.range(3, 9)) {
+			iterated.append(' ').append(key);
+		}
+		System.out.println("Returned by program: " + iterated);
+		if ("10 8 7 4 3 2 1 / 3 4 7 8".equals(iterated.toString())) {
+			System.out.println("Iteration test passed.");
+			}
+		else {System.out.println("Iteration test failed. "
+				+ "Output did not match expected");}
+		
+		System.out.println("-------------------------------------------------------");
+		System.out.println("Test fromSorted and fromUnsorted: ");
+		System.out.println("-------------------------------------------------------");
+		int bulkSize = 1000000;
+		ArrayList<Integer> bulkKeys = new ArrayList<Integer>();
+		for (int i = 0; i < bulkSize; i++) {
+			bulkKeys.add(i);
+		}
+		long start = System.nanoTime();
+		AVLTree<Integer> inserted = new AVLTree<Integer>();
+		for (int key : bulkKeys) {
+			inserted.insert(key);
+		}
+		long insertMillis = (System.nanoTime() - start) / 1000000;
+		start = System.nanoTime();
+		AVLTree<Integer> built = fromSorted(bulkKeys.iterator(), bulkSize);
+		long buildMillis = (System.nanoTime() - start) / 1000000;
+		java.util.Collections.shuffle(bulkKeys, new java.util.Random(1));
+		AVLTree<Integer> shuffled = fromUnsorted(bulkKeys);
+		System.out.println(bulkSize + " keys: inserts took " + insertMillis + " ms, fromSorted took "
+				+ buildMillis + " ms");
+		System.out.println("Expected result: true true true");
+		boolean bulkBalanced = built.checkForBalancedTree() && shuffled.checkForBalancedTree();
+		boolean bulkSame = built.size() == bulkSize && shuffled.size() == bulkSize
+				&& built.select(123456) == 123456 && shuffled.select(123456) == 123456;
+		boolean bulkHeight = built.root.getHeight() == 20;
+		System.out.println("Returned by program: " + bulkBalanced + " " + bulkSame + " " + bulkHeight);
+		if (bulkBalanced && bulkSame && bulkHeight) {
+			System.out.println("Bulk construction test passed.");
+			}
+		else {System.out.println("Bulk construction test failed. "
+				+ "Output did not match expected");}
+		
+		System.out.println("-------------------------------------------------------");
+		System.out.println("Test union, intersection, difference, split and join: ");
+		System.out.println("-------------------------------------------------------");
+		AVLTree<Integer> evens = new AVLTree<Integer>();
+		AVLTree<Integer> threes = new AVLTree<Integer>();
+		for (int i = 0; i <= 12; i++) {
+			if (i % 2 == 0) {
+				evens.insert(i);
+			}
+			if (i % 3 == 0) {
+				threes.insert(i);
+			}
+		}
+		AVLTree<Integer> union = fromSorted(evens.iterator(), evens.size());
+		union.union(fromSorted(threes.iterator(), threes.size()));
+		AVLTree<Integer> intersection = fromSorted(evens.iterator(), evens.size());
+		intersection.intersection(fromSorted(threes.iterator(), threes.size()));
+		evens.difference(threes);
+		AVLTree<Integer> upper = union.split(6);
+		AVLTree<Integer> joined = join(union, 5, fromUnsorted(java.util.List.of(7, 8)));
+		String setReturned = upper.print() + " / " + intersection.print() + " / " + evens.print()
+				+ " / " + joined.print();
+		String setExpected = "6 8 9 10 12 / 0 6 12 / 2 4 8 10 / 0 2 3 4 5 7 8";
+		System.out.println("Expected result: " + setExpected);
+		System.out.println("Returned by program: " + setReturned);
+		if (setExpected.equals(setReturned) && threes.isEmpty() && union.isEmpty()) {
+			System.out.println("Set operations test passed.");
+			}
+		else {System.out.println("Set operations test failed. "
+				+ "Output did not match expected");}
 	} //end main
 }
\ No newline at end of file
@@ -0,0 +1,168 @@
+/**
+ * Filename:   ConcurrentAVLTree.java
+ * Project:    p2
+ * Authors:    Kelly East (kgeast@wisc.edu)
+ *
+ * Version:    1.0
+ *
+ * Bugs:       no known bugs
+ */
+
+import java.lang.IllegalArgumentException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/** An AVL tree that any number of threads can read while others write, with no
+ * locks. It holds the current version of a PersistentAVLTree in an
+ * AtomicReference. A write builds the next version from the current one and
+ * swaps it in with compareAndSet, trying again if another writer got there
+ * first. A read uses whatever version is current when it starts, and
+ * snapshot() hands out a version that can be iterated for as long as needed
+ * while writers keep going.
+ * @param <K>
+ */
+
+public class ConcurrentAVLTree<K extends Comparable<K>> implements AVLTreeADT<K> {
+	//instance variables
+	private final AtomicReference<PersistentAVLTree<K>> current; //the latest version
+
+	/**
+	 * constructor for an empty tree
+	 */
+	public ConcurrentAVLTree() {
+		current = new AtomicReference<PersistentAVLTree<K>>(PersistentAVLTree.<K>empty());
+	}
+
+	/**
+	 * Returns the current version. It never changes, so it can be searched or
+	 * iterated while other threads keep writing to this tree.
+	 * @return the current version of the tree
+	 */
+	public PersistentAVLTree<K> snapshot() {
+		return current.get();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return current.get().isEmpty();
+	}
+
+	/**
+	 * @return the number of keys in the current version
+	 */
+	public int size() {
+		return current.get().size();
+	}
+
+	/**
+	 * Adds key, publishing a new version
+	 * @throws DuplicateKeyException if key is already in the tree
+	 * @throws IllegalArgumentException if key is null
+	 */
+	@Override
+	public void insert(K key) throws DuplicateKeyException, IllegalArgumentException {
+		while (true) {
+			PersistentAVLTree<K> version = current.get();
+			if (current.compareAndSet(version, version.insert(key))) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Removes key, publishing a new version if it was in the tree
+	 * @throws IllegalArgumentException if key is null
+	 */
+	@Override
+	public void delete(K key) throws IllegalArgumentException {
+		while (true) {
+			PersistentAVLTree<K> version = current.get();
+			PersistentAVLTree<K> next = version.delete(key);
+			if (next == version || current.compareAndSet(version, next)) {
+				return;
+			}
+		}
+	}
+
+	@Override
+	public boolean search(K key) throws IllegalArgumentException {
+		return current.get().search(key);
+	}
+
+	@Override
+	public String print() {
+		return current.get().print();
+	}
+
+	@Override
+	public boolean checkForBalancedTree() {
+		return current.get().checkForBalancedTree();
+	}
+
+	@Override
+	public boolean checkForBinarySearchTree() {
+		return current.get().checkForBinarySearchTree();
+	}
+
+	//This is just used for testing. One writer inserts keys in order while
+	//reader threads keep iterating snapshots, each of which must be a complete,
+	//sorted prefix of the keys
+	public static void main(String [] args) throws Exception {
+		int count = (args.length > 0) ? Integer.parseInt(args[0]) : 200000;
+		int readers = Math.max(2, Runtime.getRuntime().availableProcessors() - 1);
+		ConcurrentAVLTree<Integer> tree = new ConcurrentAVLTree<Integer>();
+
+		Thread writer = new Thread(() -> {
+			try {
+				for (int i = 0; i < count; i++) {
+					tree.insert(i);
+				}
+			} catch (DuplicateKeyException e) {
+				throw new IllegalStateException(e);
+			}
+		});
+
+		boolean[] passed = new boolean[readers];
+		int[] snapshots = new int[readers];
+		Thread[] readerThreads = new Thread[readers];
+		for (int r = 0; r < readers; r++) {
+			int reader = r;
+			readerThreads[r] = new Thread(() -> {
+				boolean ok = true;
+				int lastSize = 0;
+				while (lastSize < count) {
+					PersistentAVLTree<Integer> snapshot = tree.snapshot();
+					int expected = 0;
+					for (int key : snapshot) {
+						ok &= (key == expected);
+						expected++;
+					}
+					ok &= (expected == snapshot.size()) && (expected >= lastSize);
+					lastSize = expected;
+					snapshots[reader]++;
+				}
+				passed[reader] = ok;
+			});
+		}
+
+		long start = System.nanoTime();
+		writer.start();
+		for (Thread reader : readerThreads) {
+			reader.start();
+		}
+		writer.join();
+		for (Thread reader : readerThreads) {
+			reader.join();
+		}
+		long millis = (System.nanoTime() - start) / 1000000;
+
+		boolean allPassed = tree.size() == count && tree.checkForBalancedTree();
+		int totalSnapshots = 0;
+		for (int r = 0; r < readers; r++) {
+			allPassed &= passed[r];
+			totalSnapshots += snapshots[r];
+		}
+		System.out.println(count + " inserts with " + readers + " readers iterating "
+				+ totalSnapshots + " snapshots took " + millis + " ms");
+		System.out.println("Concurrent snapshot test " + (allPassed ? "passed." : "failed."));
+	}
+}
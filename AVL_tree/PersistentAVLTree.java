@@ -0,0 +1,382 @@
+/**
+ * Filename:   PersistentAVLTree.java
+ * Project:    p2
+ * Authors:    Kelly East (kgeast@wisc.edu)
+ *
+ * Version:    1.0
+ *
+ * Credits:    Okasaki, Purely Functional Data Structures (path copying)
+ *
+ * Bugs:       no known bugs
+ */
+
+import java.lang.IllegalArgumentException;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/** An immutable AVL tree. insert and delete never change a tree; they return a
+ * new tree that shares every node with the old one except the O(log n) nodes on
+ * the path to the key, which are copied. Every version stays valid for as long
+ * as it is referenced, so a thread holding one can search or iterate it while
+ * other threads build newer versions, without any locking. Nodes have only final
+ * fields, so a tree is safe to hand to another thread once it is built.
+ * ConcurrentAVLTree publishes the versions through an AtomicReference.
+ * @param <K>
+ */
+
+public final class PersistentAVLTree<K extends Comparable<K>> implements Iterable<K> {
+	//the tree with no keys, shared by every key type
+	private static final PersistentAVLTree<?> EMPTY = new PersistentAVLTree<>(null);
+
+	//instance variables
+	private final Node<K> root; //the root of this version, or null if it is empty
+
+	/** A node of the tree. Never changed after it is built, since other versions
+	 * of the tree may share it. Stores the height and size of its subtree.
+	 * @param <K>
+	 */
+	private static final class Node<K> {
+		private final K key;				// The key stored at this node
+		private final Node<K> left, right;	// The left and right children
+		private final int height;			// The height of the subtree rooted here
+		private final int size;				// The number of nodes in the subtree rooted here
+
+		Node(Node<K> left, K key, Node<K> right) {
+			this.key = key;
+			this.left = left;
+			this.right = right;
+			height = Math.max(heightOf(left), heightOf(right)) + 1;
+			size = sizeOf(left) + sizeOf(right) + 1;
+		}
+	}
+
+	/**
+	 * constructor for a version with the given root
+	 */
+	private PersistentAVLTree(Node<K> root) {
+		this.root = root;
+	}
+
+	/**
+	 * Returns the empty tree, the starting point for building any other version
+	 * @return a tree with no keys
+	 */
+	@SuppressWarnings("unchecked")
+	public static <K extends Comparable<K>> PersistentAVLTree<K> empty() {
+		return (PersistentAVLTree<K>) EMPTY;
+	}
+
+	/**
+	 * isEmpty returns true for an empty tree
+	 * @return true if the tree is empty, otherwise false
+	 */
+	public boolean isEmpty() {
+		return (root == null);
+	}
+
+	/**
+	 * @return the number of keys in this version of the tree
+	 */
+	public int size() {
+		return sizeOf(root);
+	}
+
+	/**
+	 * Returns a tree with the keys of this one plus key. This tree is unchanged.
+	 * @param key - the key to add
+	 * @return the new version
+	 * @throws DuplicateKeyException if key is already in the tree
+	 * @throws IllegalArgumentException if key is null
+	 */
+	public PersistentAVLTree<K> insert(K key) throws DuplicateKeyException, IllegalArgumentException {
+		if (key == null) {
+			throw new IllegalArgumentException("Cannot insert a null key");
+		}
+		return new PersistentAVLTree<K>(insertRecursive(root, key));
+	}
+
+	/**
+	 * helper method for insert(K key). Copies each node on the path to key.
+	 * @return the root of the new subtree
+	 */
+	private static <K extends Comparable<K>> Node<K> insertRecursive(Node<K> current, K key)
+			throws DuplicateKeyException {
+		if (current == null) {
+			return new Node<K>(null, key, null);
+		}
+		int comparison = key.compareTo(current.key);
+		if (comparison == 0) {
+			throw new DuplicateKeyException("WARNING: failed to insert duplicate key: " + key + ".");
+		}
+		if (comparison < 0) {
+			return balance(insertRecursive(current.left, key), current.key, current.right);
+		}
+		return balance(current.left, current.key, insertRecursive(current.right, key));
+	}
+
+	/**
+	 * Returns a tree with the keys of this one except key. This tree is unchanged,
+	 * and is returned itself if key is not in it.
+	 * @param key - the key to remove
+	 * @return the new version
+	 * @throws IllegalArgumentException if key is null
+	 */
+	public PersistentAVLTree<K> delete(K key) throws IllegalArgumentException {
+		if (key == null) {
+			throw new IllegalArgumentException("Cannot delete a null key");
+		}
+		Node<K> newRoot = deleteRecursive(root, key);
+		return (newRoot == root) ? this : new PersistentAVLTree<K>(newRoot);
+	}
+
+	/**
+	 * helper method for delete(K key). Copies each node on the path to key, and
+	 * returns current itself if key is not below it.
+	 * @return the root of the new subtree
+	 */
+	private static <K extends Comparable<K>> Node<K> deleteRecursive(Node<K> current, K key) {
+		if (current == null) {
+			return null;
+		}
+		int comparison = key.compareTo(current.key);
+		if (comparison < 0) {
+			Node<K> left = deleteRecursive(current.left, key);
+			return (left == current.left) ? current : balance(left, current.key, current.right);
+		}
+		if (comparison > 0) {
+			Node<K> right = deleteRecursive(current.right, key);
+			return (right == current.right) ? current : balance(current.left, current.key, right);
+		}
+
+		//remove this node, promoting the smallest key of the right subtree if
+		//there are two children
+		if (current.left == null) {
+			return current.right;
+		}
+		if (current.right == null) {
+			return current.left;
+		}
+		K smallestRight = smallestKey(current.right);
+		return balance(current.left, smallestRight, deleteRecursive(current.right, smallestRight));
+	}
+
+	/**
+	 * Search for a key in this version of the tree
+	 * @param key - the value being searched for
+	 * @return true if the key is found in the tree, otherwise false
+	 * @throws IllegalArgumentException if key is null
+	 */
+	public boolean search(K key) throws IllegalArgumentException {
+		if (key == null) {
+			throw new IllegalArgumentException("Cannot search for a null key");
+		}
+		Node<K> current = root;
+		while (current != null) {
+			int comparison = key.compareTo(current.key);
+			if (comparison == 0) {
+				return true;
+			}
+			current = (comparison < 0) ? current.left : current.right;
+		}
+		return false;
+	}
+
+	/**
+	 * Finds the k-th smallest key, counting from 0, in O(log n) steps
+	 * @param k - the number of keys smaller than the key wanted
+	 * @return the k-th smallest key
+	 * @throws IllegalArgumentException if k is not between 0 and size() - 1
+	 */
+	public K select(int k) throws IllegalArgumentException {
+		if (k < 0 || k >= size()) {
+			throw new IllegalArgumentException("k must be between 0 and size() - 1");
+		}
+		Node<K> current = root;
+		while (true) {
+			int leftSize = sizeOf(current.left);
+			if (k < leftSize) {
+				current = current.left;
+			}
+			else if (k == leftSize) {
+				return current.key;
+			}
+			else {
+				k -= leftSize + 1;
+				current = current.right;
+			}
+		}
+	}
+
+	/**
+	 * Returns an iterator over the keys of this version from smallest to largest.
+	 * Since the version never changes, the iterator sees the same keys however
+	 * long it runs and whatever other threads do.
+	 * @return an in-order iterator
+	 */
+	@Override
+	public Iterator<K> iterator() {
+		return new Iterator<K>() {
+			private final ArrayDeque<Node<K>> stack = pushPath(new ArrayDeque<Node<K>>(), root);
+
+			@Override
+			public boolean hasNext() {
+				return !stack.isEmpty();
+			}
+
+			@Override
+			public K next() {
+				if (stack.isEmpty()) {
+					throw new NoSuchElementException("There are no more keys in this iteration");
+				}
+				Node<K> current = stack.pop();
+				pushPath(stack, current.right);
+				return current.key;
+			}
+		};
+	}
+
+	/**
+	 * Performs in-order traversal of this version
+	 * @return a String with all the keys, in order, with exactly one space between keys
+	 */
+	public String print() {
+		StringBuilder result = new StringBuilder();
+		for (K key : this) {
+			if (result.length() > 0) {
+				result.append(' ');
+			}
+			result.append(key);
+		}
+		return result.toString();
+	}
+
+	/**
+	 * Checks that every node's subtrees differ in height by at most one and that
+	 * every stored height and size is correct
+	 * @return true for a balanced tree, otherwise false
+	 */
+	public boolean checkForBalancedTree() {
+		return checkForBalancedTreeRecursive(root);
+	}
+
+	/**
+	 * helper method for checkForBalancedTree()
+	 * @return true if the subtree rooted at current is balanced
+	 */
+	private static <K> boolean checkForBalancedTreeRecursive(Node<K> current) {
+		if (current == null) {
+			return true;
+		}
+		return Math.abs(heightOf(current.left) - heightOf(current.right)) <= 1
+				&& current.height == Math.max(heightOf(current.left), heightOf(current.right)) + 1
+				&& current.size == sizeOf(current.left) + sizeOf(current.right) + 1
+				&& checkForBalancedTreeRecursive(current.left)
+				&& checkForBalancedTreeRecursive(current.right);
+	}
+
+	/**
+	 * Checks that the keys come out of an in-order walk in increasing order
+	 * @return true if the tree is a binary search tree
+	 */
+	public boolean checkForBinarySearchTree() {
+		K previous = null;
+		for (K key : this) {
+			if (previous != null && previous.compareTo(key) >= 0) {
+				return false;
+			}
+			previous = key;
+		}
+		return true;
+	}
+
+	//
+	// Start of helper methods
+	//
+
+	/**
+	 * Builds a node from left, key and right, rotating if their heights differ by
+	 * two. Rotations build new nodes rather than relinking old ones, since the old
+	 * ones may belong to other versions.
+	 * @return the root of the balanced subtree
+	 */
+	private static <K> Node<K> balance(Node<K> left, K key, Node<K> right) {
+		int balance = heightOf(left) - heightOf(right);
+
+		if (balance > 1) {
+			// Left Left Case
+			if (heightOf(left.left) >= heightOf(left.right)) {
+				return new Node<K>(left.left, left.key, new Node<K>(left.right, key, right));
+			}
+			// Left Right Case
+			Node<K> middle = left.right;
+			return new Node<K>(new Node<K>(left.left, left.key, middle.left), middle.key,
+					new Node<K>(middle.right, key, right));
+		}
+
+		if (balance < -1) {
+			// Right Right Case
+			if (heightOf(right.right) >= heightOf(right.left)) {
+				return new Node<K>(new Node<K>(left, key, right.left), right.key, right.right);
+			}
+			// Right Left Case
+			Node<K> middle = right.left;
+			return new Node<K>(new Node<K>(left, key, middle.left), middle.key,
+					new Node<K>(middle.right, right.key, right.right));
+		}
+
+		return new Node<K>(left, key, right);
+	}
+
+	/** @return the smallest key in the subtree rooted at current */
+	private static <K> K smallestKey(Node<K> current) {
+		while (current.left != null) {
+			current = current.left;
+		}
+		return current.key;
+	}
+
+	/** Pushes current and its left children onto stack
+	 * @return stack */
+	private static <K> ArrayDeque<Node<K>> pushPath(ArrayDeque<Node<K>> stack, Node<K> current) {
+		while (current != null) {
+			stack.push(current);
+			current = current.left;
+		}
+		return stack;
+	}
+
+	/** @return the height of the subtree rooted at current, 0 for an empty subtree */
+	private static int heightOf(Node<?> current) {
+		return (current == null) ? 0 : current.height;
+	}
+
+	/** @return the size of the subtree rooted at current, 0 for an empty subtree */
+	private static int sizeOf(Node<?> current) {
+		return (current == null) ? 0 : current.size;
+	}
+
+	//This is just used for testing
+	public static void main(String [] args) throws DuplicateKeyException {
+		System.out.println("-------------------------------------------------------");
+		System.out.println("Test that old versions are unchanged: ");
+		System.out.println("-------------------------------------------------------");
+		PersistentAVLTree<Integer> version1 = PersistentAVLTree.<Integer>empty();
+		for (int i = 1; i <= 10; i++) {
+			version1 = version1.insert(i);
+		}
+		PersistentAVLTree<Integer> version2 = version1.insert(11).delete(5).delete(6);
+		PersistentAVLTree<Integer> version3 = version2.delete(42);
+		System.out.println("Expected: 1 2 3 4 5 6 7 8 9 10 / 1 2 3 4 7 8 9 10 11 / true");
+		String returned = version1.print() + " / " + version2.print() + " / " + (version3 == version2);
+		System.out.println("Returned by program: " + returned);
+		if (returned.equals("1 2 3 4 5 6 7 8 9 10 / 1 2 3 4 7 8 9 10 11 / true")
+				&& version1.checkForBalancedTree() && version2.checkForBalancedTree()
+				&& version1.checkForBinarySearchTree() && version2.checkForBinarySearchTree()) {
+			System.out.println("Persistence test passed.");
+		}
+		else {
+			System.out.println("Persistence test failed. Output did not match expected");
+		}
+	}
+}
@@ -0,0 +1,417 @@
+/**
+ * Filename:   CachingHashTable.java
+ * Project:    p3
+ * Authors:    Kelly East
+ *
+ * Version:    1.0
+ *
+ * Credits:    Einziger, Friedman and Manes, "TinyLFU: A Highly Efficient Cache
+ * 			   Admission Policy" (2017) for the window / main split (W-TinyLFU)
+ * 			   Ben Manes' Caffeine library design notes
+ *
+ * Bugs:       No known bugs
+ */
+
+
+import java.util.NoSuchElementException;
+
+
+// A HashTable with a bound on its size, for use as a memo cache. The bound is either a
+// number of entries or a total weight given by a Weigher. Once it is passed, entries
+// are evicted according to the chosen EvictionPolicy:
+//
+// 		LRU      - every entry is on one list in order of use. The least recently used
+//		           entry is evicted first.
+//		TINY_LFU - W-TinyLFU. New entries go into a small LRU "window" (1% of the
+//		           bound). When they leave the window they join the main region
+//		           "on probation". An entry used again while on probation moves to the
+//		           "protected" part of the main region (80% of it). When the cache is
+//		           full, the entry leaving the window has to beat the probation entry
+//		           that would be evicted, using the recent use counts kept by a
+//		           FrequencySketch, or it is evicted itself. This keeps one-off keys
+//		           from pushing out popular ones.
+//
+// Entries live in a HashTable for O(1) lookup and are also linked into a doubly linked
+// list for their region, so a hit only relinks two nodes and allocates nothing.
+// Hit, miss and eviction counts are kept for tuning. This class is not thread safe.
+
+public class CachingHashTable<K extends Comparable<K>, V> implements HashTableADT<K, V> {
+
+	/** How entries are chosen for eviction */
+	public enum EvictionPolicy {
+		LRU, TINY_LFU
+	}
+
+	/** Gives the weight of an entry, counted against the cache's maximum weight */
+	public interface Weigher<K, V> {
+		int weigh(K key, V value);
+	}
+
+	//regions an entry can be in
+	private static final int WINDOW = 0;
+	private static final int PROBATION = 1;
+	private static final int PROTECTED = 2;
+
+	/** A cached entry. It is also a node in the list of its region */
+	static final class Entry<K, V> {
+		K key;
+		V value;
+		int hash;				//spread hash code of key, for the frequency sketch
+		int weight;				//weight given by the weigher
+		int region;				//WINDOW, PROBATION or PROTECTED
+		Entry<K, V> prev, next;	//neighbours in the region's list
+
+		Entry(K key, V value, int hash, int weight) {
+			this.key = key;
+			this.value = value;
+			this.hash = hash;
+			this.weight = weight;
+		}
+	}
+
+	//instance variables for CachingHashTable
+	private final HashTable<K, Entry<K, V>> table;	//lookup from key to entry
+	private final EvictionPolicy policy;		//how entries are evicted
+	private final Weigher<K, V> weigher;		//weight of each entry
+	private final long maxWeight;				//total weight allowed
+	private final long maxWindowWeight;			//weight allowed in the window
+	private final long maxProtectedWeight;		//weight allowed in the protected region
+	private final FrequencySketch sketch;		//recent use counts, TINY_LFU only
+
+	//sentinel heads of the circular list for each region. head.next is the least
+	//recently used entry and head.prev the most recently used
+	private final Entry<K, V> window;
+	private final Entry<K, V> probation;
+	private final Entry<K, V> protectedRegion;
+
+	private long totalWeight;		//weight of every entry in the cache
+	private long windowWeight;		//weight of the entries in the window
+	private long protectedWeight;	//weight of the entries in the protected region
+	private long hitCount;			//lookups that found their key
+	private long missCount;			//lookups that did not find their key
+	private long evictionCount;		//entries removed to stay under the bound
+
+	//Constructor for a cache holding at most maxEntries entries
+	public CachingHashTable(int maxEntries, EvictionPolicy policy) {
+		this(maxEntries, (key, value) -> 1, policy);
+	}
+
+	//Constructor for a cache whose entries, weighed by weigher, total at most maxWeight
+	public CachingHashTable(long maxWeight, Weigher<K, V> weigher, EvictionPolicy policy) {
+		if (maxWeight < 1) {
+			throw new IllegalArgumentException("Maximum weight must be at least 1");
+		}
+		if (weigher == null || policy == null) {
+			throw new IllegalArgumentException("Weigher and eviction policy cannot be null");
+		}
+		this.maxWeight = maxWeight;
+		this.weigher = weigher;
+		this.policy = policy;
+		table = new HashTable<>();
+
+		window = newSentinel();
+		probation = newSentinel();
+		protectedRegion = newSentinel();
+
+		if (policy == EvictionPolicy.TINY_LFU) {
+			maxWindowWeight = Math.max(1, maxWeight / 100);
+			maxProtectedWeight = (long) ((maxWeight - maxWindowWeight) * 0.8);
+			sketch = new FrequencySketch((int) Math.min(maxWeight, Integer.MAX_VALUE));
+		}
+		else {
+			//plain LRU keeps everything in the window list
+			maxWindowWeight = maxWeight;
+			maxProtectedWeight = 0;
+			sketch = null;
+		}
+	}
+
+	/** insert a <key,value> pair entry into the cache, replacing the value of an
+	 * existing key, then evict entries until the cache is back within its bound.
+	 * throw IllegalArgumentException when key is null
+	 */
+	@Override
+	public void put(K key, V value) throws IllegalArgumentException {
+		//handle null keys
+		if (key == null) {
+			throw new IllegalArgumentException("Cannot insert a null key");
+		}
+
+		int weight = weigher.weigh(key, value);
+		if (weight < 0) {
+			throw new IllegalArgumentException("Weight cannot be negative");
+		}
+
+		Entry<K, V> entry = table.getOrDefault(key, null);
+		if (entry != null) {
+			//existing key: update the value and weight, and count it as a use
+			addWeight(entry, weight - entry.weight);
+			entry.value = value;
+			entry.weight = weight;
+			recordAccess(entry);
+		}
+		else {
+			entry = new Entry<>(key, value, spread(key.hashCode()), weight);
+			table.put(key, entry);
+			if (sketch != null) {
+				sketch.increment(entry.hash);
+			}
+			entry.region = WINDOW;
+			linkLast(window, entry);
+			addWeight(entry, weight);
+		}
+
+		evict();
+	}
+
+	/** return the value associated with the given key, and count it as a use.
+	 * throw IllegalArgumentException if key is null
+	 * throw NoSuchElementException if key is not in the cache
+	 */
+	@Override
+	public V get(K key) throws IllegalArgumentException, NoSuchElementException {
+		//handle null keys
+		if (key == null) {
+			throw new IllegalArgumentException("Cannot get a null key");
+		}
+
+		Entry<K, V> entry = lookup(key);
+		if (entry == null) {
+			throw new NoSuchElementException("The key does not exist in this cache");
+		}
+		return entry.value;
+	}
+
+	/** return the value associated with the given key, or defaultValue if the
+	 * key is not in the cache.
+	 * throw IllegalArgumentException if key is null
+	 */
+	public V getOrDefault(K key, V defaultValue) throws IllegalArgumentException {
+		//handle null keys
+		if (key == null) {
+			throw new IllegalArgumentException("Cannot get a null key");
+		}
+
+		Entry<K, V> entry = lookup(key);
+		return (entry != null) ? entry.value : defaultValue;
+	}
+
+	/** remove the (key,value) entry for the specified key
+	 * throw IllegalArgumentException if key is null
+	 * throw NoSuchElementException if key is not in the cache
+	 */
+	@Override
+	public void remove(K key) throws IllegalArgumentException, NoSuchElementException {
+		//handle null keys
+		if (key == null) {
+			throw new IllegalArgumentException("Cannot remove a null key");
+		}
+
+		Entry<K, V> entry = table.getOrDefault(key, null);
+		if (entry == null) {
+			throw new NoSuchElementException("The key does not exist in this cache");
+		}
+		removeEntry(entry);
+	}
+
+	/** @return  the number of keys in the cache */
+	@Override
+	public int size() {
+		return table.size();
+	}
+
+	/** @return the total weight of the entries in the cache */
+	public long weight() {
+		return totalWeight;
+	}
+
+	/** @return the number of get and getOrDefault calls that found their key */
+	public long getHitCount() {
+		return hitCount;
+	}
+
+	/** @return the number of get and getOrDefault calls that did not find their key */
+	public long getMissCount() {
+		return missCount;
+	}
+
+	/** @return the number of entries evicted to stay within the bound */
+	public long getEvictionCount() {
+		return evictionCount;
+	}
+
+	//
+	// Start of helper methods
+	//
+
+	/** Finds the entry for key and records a hit or a miss
+	 * @return the entry, or null if key is not in the cache */
+	private Entry<K, V> lookup(K key) {
+		Entry<K, V> entry = table.getOrDefault(key, null);
+		if (entry == null) {
+			missCount++;
+			if (sketch != null) {
+				//a miss still counts towards the key's popularity
+				sketch.increment(spread(key.hashCode()));
+			}
+			return null;
+		}
+		hitCount++;
+		if (sketch != null) {
+			sketch.increment(entry.hash);
+		}
+		recordAccess(entry);
+		return entry;
+	}
+
+	/** Moves a used entry to the most recently used end of its region, promoting
+	 *  it from probation to protected under TINY_LFU */
+	private void recordAccess(Entry<K, V> entry) {
+		if (entry.region == WINDOW) {
+			moveToLast(window, entry);
+		}
+		else if (entry.region == PROTECTED) {
+			moveToLast(protectedRegion, entry);
+		}
+		else {
+			//used again while on probation: promote to protected
+			unlink(entry);
+			entry.region = PROTECTED;
+			linkLast(protectedRegion, entry);
+			protectedWeight += entry.weight;
+
+			//demote the least recently used protected entries if it is now too large
+			while (protectedWeight > maxProtectedWeight && protectedRegion.next != entry) {
+				Entry<K, V> demoted = protectedRegion.next;
+				unlink(demoted);
+				protectedWeight -= demoted.weight;
+				demoted.region = PROBATION;
+				linkLast(probation, demoted);
+			}
+		}
+	}
+
+	/** Evicts entries until the total weight is within the bound */
+	private void evict() {
+		if (policy == EvictionPolicy.LRU) {
+			while (totalWeight > maxWeight) {
+				evictEntry(window.next);
+			}
+			return;
+		}
+
+		//entries leaving the window become candidates at the end of probation
+		while (windowWeight > maxWindowWeight && window.next != window) {
+			Entry<K, V> candidate = window.next;
+			unlink(candidate);
+			windowWeight -= candidate.weight;
+			candidate.region = PROBATION;
+			linkLast(probation, candidate);
+		}
+
+		while (totalWeight > maxWeight) {
+			Entry<K, V> victim = probation.next;
+			Entry<K, V> candidate = probation.prev;
+
+			if (victim == probation) {
+				//probation is empty, fall back to protected and then the window
+				evictEntry((protectedRegion.next != protectedRegion) ? protectedRegion.next : window.next);
+			}
+			else if (victim == candidate) {
+				evictEntry(victim);
+			}
+			else if (sketch.frequency(candidate.hash) > sketch.frequency(victim.hash)) {
+				//the candidate has been used more recently often enough to win its place
+				evictEntry(victim);
+			}
+			else {
+				evictEntry(candidate);
+			}
+		}
+	}
+
+	private void evictEntry(Entry<K, V> entry) {
+		removeEntry(entry);
+		evictionCount++;
+	}
+
+	/** Removes an entry from the table, its region's list and the weight totals */
+	private void removeEntry(Entry<K, V> entry) {
+		table.remove(entry.key);
+		unlink(entry);
+		addWeight(entry, -entry.weight);
+	}
+
+	/** Adds delta to the total weight and to the weight of the entry's region */
+	private void addWeight(Entry<K, V> entry, long delta) {
+		totalWeight += delta;
+		if (entry.region == WINDOW) {
+			windowWeight += delta;
+		}
+		else if (entry.region == PROTECTED) {
+			protectedWeight += delta;
+		}
+	}
+
+	private Entry<K, V> newSentinel() {
+		Entry<K, V> sentinel = new Entry<>(null, null, 0, 0);
+		sentinel.prev = sentinel;
+		sentinel.next = sentinel;
+		return sentinel;
+	}
+
+	private static <K, V> void linkLast(Entry<K, V> head, Entry<K, V> entry) {
+		entry.prev = head.prev;
+		entry.next = head;
+		head.prev.next = entry;
+		head.prev = entry;
+	}
+
+	private static <K, V> void unlink(Entry<K, V> entry) {
+		entry.prev.next = entry.next;
+		entry.next.prev = entry.prev;
+		entry.prev = null;
+		entry.next = null;
+	}
+
+	private static <K, V> void moveToLast(Entry<K, V> head, Entry<K, V> entry) {
+		if (head.prev != entry) {
+			unlink(entry);
+			linkLast(head, entry);
+		}
+	}
+
+	/** @return the hash code with its high bits folded into its low bits */
+	private static int spread(int hashCode) {
+		return hashCode ^ (hashCode >>> 16);
+	}
+
+	//This is just used for testing
+	public static void main(String args[]) {
+		CachingHashTable<Integer, Integer> lru = new CachingHashTable<>(3, EvictionPolicy.LRU);
+		lru.put(1, 1);
+		lru.put(2, 2);
+		lru.put(3, 3);
+		lru.get(1);			//1 is now the most recently used
+		lru.put(4, 4);		//evicts 2
+		System.out.println("LRU evicted 2: " + (lru.getOrDefault(2, null) == null) + " (expected true)");
+		System.out.println("LRU kept 1: " + (lru.getOrDefault(1, null) != null) + " (expected true)");
+		System.out.println("LRU size = " + lru.size() + " (expected 3)");
+
+		//a small set of popular keys mixed with a stream of one-off keys
+		CachingHashTable<Integer, Integer> tinyLfu = new CachingHashTable<>(100, EvictionPolicy.TINY_LFU);
+		CachingHashTable<Integer, Integer> plainLru = new CachingHashTable<>(100, EvictionPolicy.LRU);
+		for (int i = 0; i < 100000; i++) {
+			int key = (i % 4 == 0) ? (i / 4) % 50 : 1000 + i;
+			for (CachingHashTable<Integer, Integer> cache : java.util.Arrays.asList(tinyLfu, plainLru)) {
+				if (cache.getOrDefault(key, null) == null) {
+					cache.put(key, key);
+				}
+			}
+		}
+		System.out.println(String.format("Hit rate with one-off keys: TinyLFU %.2f, LRU %.2f",
+				tinyLfu.getHitCount() / 100000.0, plainLru.getHitCount() / 100000.0));
+		System.out.println("TinyLFU size = " + tinyLfu.size() + ", evictions = " + tinyLfu.getEvictionCount());
+	}
+
+}
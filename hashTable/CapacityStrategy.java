@@ -0,0 +1,98 @@
+/**
+ * Filename:   CapacityStrategy.java
+ * Project:    p3
+ * Authors:    Kelly East
+ *
+ * Version:    1.0
+ *
+ * Credits:    Lemire, "A fast alternative to the modulo reduction" (2016)
+ * 			   Knuth, The Art of Computer Programming Vol. 3, 6.4 (multiplicative hashing)
+ *
+ * Bugs:       No known bugs
+ */
+
+/**
+ * Decides how many buckets a HashTable has and which bucket a hash belongs in.
+ * Both strategies provided here avoid the integer division of hash % buckets: the
+ * hash is scrambled with one multiplication and the bucket is taken from the high
+ * bits of a product, which is a few cycles instead of a few dozen.
+ */
+public interface CapacityStrategy {
+
+	/**
+	 * @param requested the smallest number of buckets wanted
+	 * @return the number of buckets to use, at least requested when possible
+	 */
+	public int initialBuckets(int requested);
+
+	/**
+	 * @param currentBuckets the number of buckets the table has now
+	 * @return the number of buckets to grow to, about twice currentBuckets
+	 */
+	public int grow(int currentBuckets);
+
+	/**
+	 * @param hash the spread hash of a key
+	 * @param bucketCount a number of buckets returned by initialBuckets or grow
+	 * @return the bucket for hash, from 0 to bucketCount - 1
+	 */
+	public int index(int hash, int bucketCount);
+
+	/** Odd constant close to 2^32 divided by the golden ratio, used to scramble hashes */
+	public static final int GOLDEN_RATIO = 0x9E3779B9;
+
+	/**
+	 * Prime bucket counts, each the first prime past twice the one before, taken from
+	 * a precomputed table. The bucket is found by "fastrange": the scrambled hash, read
+	 * as a fraction of 2^32, is multiplied by the bucket count and the whole part kept.
+	 */
+	public static final CapacityStrategy PRIME = new CapacityStrategy() {
+		//the first prime past 2n+1 for each entry n, starting from 11
+		private final int[] primes = { 2, 3, 5, 7, 11, 23, 47, 97, 197, 397, 797, 1597, 3203,
+				6421, 12853, 25717, 51437, 102877, 205759, 411527, 823117, 1646237, 3292489,
+				6584983, 13169977, 26339969, 52679969, 105359939, 210719881, 421439783,
+				842879579, 1685759167 };
+
+		public int initialBuckets(int requested) {
+			return atLeast(requested);
+		}
+
+		public int grow(int currentBuckets) {
+			return atLeast((int) Math.min(2L * currentBuckets, Integer.MAX_VALUE));
+		}
+
+		public int index(int hash, int bucketCount) {
+			long scrambled = (hash * GOLDEN_RATIO) & 0xFFFFFFFFL;
+			return (int) ((scrambled * bucketCount) >>> 32);
+		}
+
+		/** @return the smallest table prime at least n, or the largest one */
+		private int atLeast(int n) {
+			for (int prime : primes) {
+				if (prime >= n) {
+					return prime;
+				}
+			}
+			return primes[primes.length - 1];
+		}
+	};
+
+	/**
+	 * Power of two bucket counts. The bucket is the top bits of the scrambled hash
+	 * (Fibonacci hashing), so keys that differ only in their low bits still spread
+	 * across the table.
+	 */
+	public static final CapacityStrategy POWER_OF_TWO = new CapacityStrategy() {
+		public int initialBuckets(int requested) {
+			return HashTableSizes.tableSizeFor(requested);
+		}
+
+		public int grow(int currentBuckets) {
+			return (currentBuckets >= (1 << 30)) ? currentBuckets : currentBuckets * 2;
+		}
+
+		public int index(int hash, int bucketCount) {
+			return (hash * GOLDEN_RATIO) >>> (32 - Integer.numberOfTrailingZeros(bucketCount));
+		}
+	};
+}
@@ -0,0 +1,91 @@
+/**
+ * Filename:   Codec.java
+ * Project:    p3
+ * Authors:    Kelly East
+ *
+ * Version:    1.0
+ *
+ * Bugs:       No known bugs
+ */
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Turns keys or values into bytes and back, for the hash tables that keep their
+ * entries outside of ordinary java objects (in a file, in native memory, or in a
+ * stream). Codecs for the common key types are provided as constants.
+ * @param <T> the type being encoded
+ */
+public interface Codec<T> {
+
+	/**
+	 * @param value the object to encode, never null
+	 * @return the bytes for value
+	 */
+	public byte[] encode(T value);
+
+	/**
+	 * @param bytes array holding the encoded object
+	 * @param offset position of the first byte of the object
+	 * @param length number of bytes in the object
+	 * @return the decoded object
+	 */
+	public T decode(byte[] bytes, int offset, int length);
+
+	/**
+	 * Decodes an object stored in a buffer, such as a mapped file or native memory.
+	 * The default copies the bytes out first; a codec can override it to read the
+	 * buffer directly.
+	 * @param buffer buffer holding the encoded object
+	 * @param offset absolute position of the first byte of the object
+	 * @param length number of bytes in the object
+	 * @return the decoded object
+	 */
+	public default T decode(ByteBuffer buffer, int offset, int length) {
+		byte[] bytes = new byte[length];
+		buffer.get(offset, bytes);
+		return decode(bytes, 0, length);
+	}
+
+	/** Encodes a String as UTF-8 */
+	public static final Codec<String> STRING = new Codec<String>() {
+		public byte[] encode(String value) {
+			return value.getBytes(StandardCharsets.UTF_8);
+		}
+
+		public String decode(byte[] bytes, int offset, int length) {
+			return new String(bytes, offset, length, StandardCharsets.UTF_8);
+		}
+	};
+
+	/** Encodes an Integer as 4 big-endian bytes */
+	public static final Codec<Integer> INTEGER = new Codec<Integer>() {
+		public byte[] encode(Integer value) {
+			return ByteBuffer.allocate(4).putInt(value).array();
+		}
+
+		public Integer decode(byte[] bytes, int offset, int length) {
+			return ByteBuffer.wrap(bytes, offset, length).getInt();
+		}
+
+		public Integer decode(ByteBuffer buffer, int offset, int length) {
+			return buffer.getInt(offset);
+		}
+	};
+
+	/** Encodes a Long as 8 big-endian bytes */
+	public static final Codec<Long> LONG = new Codec<Long>() {
+		public byte[] encode(Long value) {
+			return ByteBuffer.allocate(8).putLong(value).array();
+		}
+
+		public Long decode(byte[] bytes, int offset, int length) {
+			return ByteBuffer.wrap(bytes, offset, length).getLong();
+		}
+
+		public Long decode(ByteBuffer buffer, int offset, int length) {
+			return buffer.getLong(offset);
+		}
+	};
+}
@@ -0,0 +1,386 @@
+/**
+ * Filename:   ConcurrentHashTable.java
+ * Project:    p3
+ * Authors:    Kelly East
+ *
+ * Version:    1.0
+ *
+ * Credits:    Doug Lea's java.util.concurrent.ConcurrentHashMap (JDK 8) for the idea of
+ * 			   locking the first node of a bin and forwarding nodes during a resize
+ *
+ * Bugs:       No known bugs
+ */
+
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+
+// This is a thread safe hash table that can be shared by many threads without a
+// global lock. Like HashTable it stores a chain of nodes in each bucket ("bin"), but:
+// 		1) nodes are immutable. A put or remove builds a new chain (copying only the
+//		   nodes in front of the one that changed) and publishes it with a single
+//		   write to the bin, so a reader always sees a complete chain
+//		2) get never locks. It reads the bin through an AtomicReferenceArray and
+//		   walks the chain it finds
+//		3) a write into an empty bin uses compareAndSet. A write into a non-empty bin
+//		   locks the first node of that bin only, so writers to other bins never wait
+//		4) when the table grows, the bins are moved in strides of TRANSFER_STRIDE.
+//		   Every moved bin is replaced by a forwarding node that points readers and
+//		   writers to the new array, and any writer that runs into a forwarding node
+//		   claims a stride and helps finish the resize before retrying
+
+public class ConcurrentHashTable<K extends Comparable<K>, V> implements HashTableADT<K, V> {
+
+	private static final int MOVED = -1;				//hash of a forwarding node
+	private static final int TRANSFER_STRIDE = 16;		//bins claimed at a time when resizing
+	private static final int MAXIMUM_CAPACITY = 1 << 30;	//largest power of two array size
+
+	/** An immutable entry in a bin. Real entries always have a non-negative hash */
+	static class Node<K,V> {
+		final int hash;			//spread hash code of key
+		final K key;			//the location where the value should be stored
+		final V value;			//value to be stored
+		final Node<K,V> next;	//pointer to the next node
+
+		Node(int hash, K key, V value, Node<K,V> next) {
+			this.hash = hash;
+			this.key = key;
+			this.value = value;
+			this.next = next;
+		}
+	}
+
+	/** Placed in a bin of the old array once its entries have been moved */
+	static final class ForwardingNode<K,V> extends Node<K,V> {
+		final AtomicReferenceArray<Node<K,V>> nextBins;	//array the entries moved to
+
+		ForwardingNode(AtomicReferenceArray<Node<K,V>> nextBins) {
+			super(MOVED, null, null, null);
+			this.nextBins = nextBins;
+		}
+	}
+
+	/** Bookkeeping for one resize that any number of threads can help with */
+	static final class Resize<K,V> {
+		final AtomicReferenceArray<Node<K,V>> nextBins;	//the new, larger array
+		final ForwardingNode<K,V> forward;				//shared by every moved bin
+		final AtomicInteger transferIndex;				//bins below this are not yet claimed
+		final AtomicInteger remaining;					//bins not yet moved
+
+		Resize(int oldLength) {
+			nextBins = new AtomicReferenceArray<>(oldLength * 2);
+			forward = new ForwardingNode<>(nextBins);
+			transferIndex = new AtomicInteger(oldLength);
+			remaining = new AtomicInteger(oldLength);
+		}
+	}
+
+	/** The current bin array together with the resize moving out of it, if any.
+	 *  Keeping both in one object lets a resize start and finish with a single
+	 *  compareAndSet, so it can never be attached to an array that is already stale */
+	static final class Table<K,V> {
+		final AtomicReferenceArray<Node<K,V>> bins;
+		final Resize<K,V> resize;
+
+		Table(AtomicReferenceArray<Node<K,V>> bins, Resize<K,V> resize) {
+			this.bins = bins;
+			this.resize = resize;
+		}
+	}
+
+	//instance variables for ConcurrentHashTable
+	private final AtomicReference<Table<K,V>> table;	//current bins and resize state
+	private final LongAdder count;					//number of keys, striped across threads
+	private final double loadFactor;				//used to determine when to resize
+
+	//no-arg constructor
+	public ConcurrentHashTable() {
+		this(16, 0.75);
+	}
+
+	//Constructor that accepts initial capacity and load factor
+	public ConcurrentHashTable(int initialCapacity, double loadFactor) {
+		if (initialCapacity < 0) {
+			throw new IllegalArgumentException("Initial capacity cannot be negative");
+		}
+		if (loadFactor <= 0 || Double.isNaN(loadFactor)) {
+			throw new IllegalArgumentException("Load factor must be positive");
+		}
+		this.loadFactor = loadFactor;
+		int capacity = 2;
+		while (capacity < initialCapacity && capacity < MAXIMUM_CAPACITY) {
+			capacity <<= 1;
+		}
+		table = new AtomicReference<>(new Table<>(new AtomicReferenceArray<>(capacity), null));
+		count = new LongAdder();
+	}
+
+	/** insert a <key,value> pair entry into the hash table
+	 * if the key already exists in the table,
+	 * replace existing value for that key with the
+	 * value specified in this call to put.
+	 *
+	 * permits null values but not null keys and permits the same value
+	 * to be paired with different key
+	 *
+	 * throw IllegalArgumentException when key is null
+	 */
+	@Override
+	public void put(K key, V value) throws IllegalArgumentException {
+		//handle null keys
+		if (key == null) {
+			throw new IllegalArgumentException("Cannot insert a null key");
+		}
+
+		int hash = spread(key.hashCode());
+		AtomicReferenceArray<Node<K,V>> bins = table.get().bins;
+		boolean added;
+		while (true) {
+			int index = hash & (bins.length() - 1);
+			Node<K,V> head = bins.get(index);
+
+			if (head == null) {
+				//empty bin, no lock needed
+				if (bins.compareAndSet(index, null, new Node<>(hash, key, value, null))) {
+					added = true;
+					break;
+				}
+			}
+			else if (head.hash == MOVED) {
+				//this bin has been moved, help with the resize then retry in the new array
+				bins = helpResize(bins, (ForwardingNode<K,V>) head);
+			}
+			else {
+				synchronized (head) {
+					if (bins.get(index) != head) {
+						//another writer changed the bin first, try again
+						continue;
+					}
+					Node<K,V> existing = find(head, hash, key);
+					if (existing != null) {
+						bins.set(index, replace(head, existing, new Node<>(hash, key, value, existing.next)));
+						added = false;
+					}
+					else {
+						bins.set(index, new Node<>(hash, key, value, head));
+						added = true;
+					}
+				}
+				break;
+			}
+		}
+
+		if (added) {
+			count.increment();
+			checkForResize();
+		}
+	}
+
+	/** return the value associated with the given key.
+	 * Never locks, so it can run at the same time as any number of writers.
+	 * throw IllegalArgumentException if key is null
+	 * throw NoSuchElementException if key does not exist
+	 */
+	@Override
+	public V get(K key) throws IllegalArgumentException, NoSuchElementException {
+		//handle null keys
+		if (key == null) {
+			throw new IllegalArgumentException("Cannot get a null key");
+		}
+
+		int hash = spread(key.hashCode());
+		AtomicReferenceArray<Node<K,V>> bins = table.get().bins;
+		while (true) {
+			Node<K,V> head = bins.get(hash & (bins.length() - 1));
+			if (head != null && head.hash == MOVED) {
+				//follow the forwarding node to the array the bin was moved to
+				bins = ((ForwardingNode<K,V>) head).nextBins;
+				continue;
+			}
+			Node<K,V> node = find(head, hash, key);
+			if (node == null) {
+				throw new NoSuchElementException("The key does not exist in this hash table");
+			}
+			return node.value;
+		}
+	}
+
+	/** remove the (key,value) entry for the specified key
+	 * throw IllegalArgumentException if key is null
+	 * throw NoSuchElementException if key does not exist in the tree
+	 */
+	@Override
+	public void remove(K key) throws IllegalArgumentException, NoSuchElementException {
+		//handle null keys
+		if (key == null) {
+			throw new IllegalArgumentException("Cannot remove a null key");
+		}
+
+		int hash = spread(key.hashCode());
+		AtomicReferenceArray<Node<K,V>> bins = table.get().bins;
+		while (true) {
+			int index = hash & (bins.length() - 1);
+			Node<K,V> head = bins.get(index);
+
+			if (head == null) {
+				break;
+			}
+			else if (head.hash == MOVED) {
+				bins = helpResize(bins, (ForwardingNode<K,V>) head);
+			}
+			else {
+				synchronized (head) {
+					if (bins.get(index) != head) {
+						continue;
+					}
+					Node<K,V> existing = find(head, hash, key);
+					if (existing != null) {
+						bins.set(index, replace(head, existing, existing.next));
+						count.decrement();
+						return;
+					}
+				}
+				break;
+			}
+		}
+
+		//if we get here, the key did not exist. Throw an error and return a message.
+		throw new NoSuchElementException("The key does not exist in this hash table");
+	}
+
+	/** @return  the number of keys in the hash table. While other threads are
+	 *  writing this is an estimate of the size at some recent moment */
+	@Override
+	public int size() {
+		long sum = count.sum();
+		return (sum > Integer.MAX_VALUE) ? Integer.MAX_VALUE : (int) Math.max(sum, 0);
+	}
+
+	//
+	// Start of helper methods
+	//
+
+	/** Mixes the high bits of the java hashCode into the low bits used for the bin
+	 *  index, and clears the sign bit so no entry can be mistaken for MOVED
+	 * @return the spread hash */
+	private static int spread(int hashCode) {
+		return (hashCode ^ (hashCode >>> 16)) & 0x7fffffff;
+	}
+
+	/** Walks a chain looking for key
+	 * @return the node holding key, or null if it is not in the chain */
+	private static <K,V> Node<K,V> find(Node<K,V> head, int hash, Object key) {
+		for (Node<K,V> node = head; node != null; node = node.next) {
+			if (node.hash == hash && node.key.equals(key)) {
+				return node;
+			}
+		}
+		return null;
+	}
+
+	/** Builds the chain that results from replacing target with replacement.
+	 *  Nodes in front of target are copied, nodes after it are shared
+	 * @return the new head of the chain */
+	private static <K,V> Node<K,V> replace(Node<K,V> head, Node<K,V> target, Node<K,V> replacement) {
+		if (head == target) {
+			return replacement;
+		}
+		return new Node<>(head.hash, head.key, head.value, replace(head.next, target, replacement));
+	}
+
+	/** Starts a resize once the load factor is reached, or helps one already running */
+	private void checkForResize() {
+		Table<K,V> current = table.get();
+		if (current.resize != null) {
+			transfer(current);
+			return;
+		}
+
+		int length = current.bins.length();
+		if (length < MAXIMUM_CAPACITY && count.sum() >= (long) (length * loadFactor)) {
+			Table<K,V> resizing = new Table<>(current.bins, new Resize<K,V>(length));
+			if (table.compareAndSet(current, resizing)) {
+				transfer(resizing);
+			}
+		}
+	}
+
+	/** Called by a writer that found a forwarding node in bins
+	 * @return the array the writer should retry in */
+	private AtomicReferenceArray<Node<K,V>> helpResize(AtomicReferenceArray<Node<K,V>> bins,
+			ForwardingNode<K,V> forward) {
+		Table<K,V> current = table.get();
+		if (current.bins == bins && current.resize != null) {
+			transfer(current);
+		}
+		return forward.nextBins;
+	}
+
+	/** Claims strides of bins from the resize until none are left. The thread that
+	 *  moves the last bin installs the new array as the current table */
+	private void transfer(Table<K,V> resizing) {
+		Resize<K,V> resize = resizing.resize;
+		AtomicReferenceArray<Node<K,V>> bins = resizing.bins;
+
+		while (true) {
+			int hi = resize.transferIndex.get();
+			if (hi <= 0) {
+				//every stride has been claimed
+				return;
+			}
+			int lo = Math.max(0, hi - TRANSFER_STRIDE);
+			if (!resize.transferIndex.compareAndSet(hi, lo)) {
+				continue;
+			}
+
+			for (int i = hi - 1; i >= lo; i--) {
+				moveBin(bins, resize, i);
+			}
+
+			if (resize.remaining.addAndGet(lo - hi) == 0) {
+				table.compareAndSet(resizing, new Table<>(resize.nextBins, null));
+				return;
+			}
+		}
+	}
+
+	/** Splits the chain in bin index between index and index + n of the new array,
+	 *  then replaces the old bin with the forwarding node */
+	private static <K,V> void moveBin(AtomicReferenceArray<Node<K,V>> bins, Resize<K,V> resize, int index) {
+		int n = bins.length();
+		while (true) {
+			Node<K,V> head = bins.get(index);
+			if (head == null) {
+				if (bins.compareAndSet(index, null, resize.forward)) {
+					return;
+				}
+				continue;
+			}
+
+			synchronized (head) {
+				if (bins.get(index) != head) {
+					continue;
+				}
+				Node<K,V> low = null;
+				Node<K,V> high = null;
+				for (Node<K,V> node = head; node != null; node = node.next) {
+					if ((node.hash & n) == 0) {
+						low = new Node<>(node.hash, node.key, node.value, low);
+					}
+					else {
+						high = new Node<>(node.hash, node.key, node.value, high);
+					}
+				}
+				resize.nextBins.set(index, low);
+				resize.nextBins.set(index + n, high);
+				bins.set(index, resize.forward);
+				return;
+			}
+		}
+	}
+
+}
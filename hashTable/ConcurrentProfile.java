@@ -0,0 +1,110 @@
+/**
+ * Filename:   ConcurrentProfile.java
+ * Project:    p3
+ * Authors:    Kelly East
+ *
+ * Version:    1.0
+ *
+ * Credits:    Profile.java for the insert and retrieve workload
+ *
+ * Bugs:       No known bugs
+ */
+
+import java.util.concurrent.CountDownLatch;
+
+// Multi-threaded version of Profile. For every thread count from 1 to the maximum given,
+// the threads split the keys 0 .. num_elements-1 between them, insert their share and
+// then retrieve it. The same run is timed against ConcurrentHashTable and against a
+// HashTable behind one global lock, and the throughput of each is printed so the
+// scaling can be compared as threads are added.
+
+public class ConcurrentProfile {
+
+	/** Runs the workload on table with the given number of threads.
+	 * @return the elapsed time in nanoseconds */
+	private static long run(final HashTableADT<Integer, Integer> table, final int numElements,
+			int numThreads) throws InterruptedException {
+		final CountDownLatch start = new CountDownLatch(1);
+		Thread[] threads = new Thread[numThreads];
+
+		for (int t = 0; t < numThreads; t++) {
+			//each thread gets its own contiguous range of keys
+			final int from = (int) ((long) numElements * t / numThreads);
+			final int to = (int) ((long) numElements * (t + 1) / numThreads);
+			threads[t] = new Thread(() -> {
+				try {
+					start.await();
+				} catch (InterruptedException e) {
+					return;
+				}
+				for (int i = from; i < to; i++) {
+					table.put(i, i);
+				}
+				for (int i = from; i < to; i++) {
+					table.get(i);
+				}
+			});
+			threads[t].start();
+		}
+
+		long begin = System.nanoTime();
+		start.countDown();
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		return System.nanoTime() - begin;
+	}
+
+	/** HashTable guarded by a single lock, the way it has to be shared today */
+	private static class LockedHashTable implements HashTableADT<Integer, Integer> {
+		private final HashTable<Integer, Integer> hashtable = new HashTable<>();
+
+		public synchronized void put(Integer key, Integer value) {
+			hashtable.put(key, value);
+		}
+
+		public synchronized Integer get(Integer key) {
+			return hashtable.get(key);
+		}
+
+		public synchronized void remove(Integer key) {
+			hashtable.remove(key);
+		}
+
+		public synchronized int size() {
+			return hashtable.size();
+		}
+	}
+
+	/** main method used to test this class
+	 */
+	public static void main(String[] args) throws InterruptedException {
+		if (args.length < 1) {
+			System.out.println("Expected arguments: <num_elements> [max_threads]");
+			System.exit(1);
+		}
+		int numElements = Integer.parseInt(args[0]);
+		int maxThreads = (args.length > 1) ? Integer.parseInt(args[1])
+				: Runtime.getRuntime().availableProcessors();
+
+		//every put and get counts as one operation
+		double operations = 2.0 * numElements;
+		System.out.println(String.format("%-8s %22s %22s", "threads",
+				"concurrent (ops/sec)", "global lock (ops/sec)"));
+
+		for (int numThreads = 1; numThreads <= maxThreads; numThreads++) {
+			ConcurrentHashTable<Integer, Integer> concurrent = new ConcurrentHashTable<>();
+			long concurrentTime = run(concurrent, numElements, numThreads);
+
+			LockedHashTable locked = new LockedHashTable();
+			long lockedTime = run(locked, numElements, numThreads);
+
+			if (concurrent.size() != numElements || locked.size() != numElements) {
+				System.out.println("Size check failed for " + numThreads + " threads");
+			}
+
+			System.out.println(String.format("%-8d %22.0f %22.0f", numThreads,
+					operations / concurrentTime * 1e9, operations / lockedTime * 1e9));
+		}
+	}
+}
@@ -0,0 +1,122 @@
+/**
+ * Filename:   CountingBloomFilter.java
+ * Project:    p3
+ * Authors:    Kelly East
+ *
+ * Version:    1.0
+ *
+ * Credits:    Fan et al., "Summary Cache" (2000) for counting Bloom filters
+ * 			   Kirsch and Mitzenmacher, "Less Hashing, Same Performance" (2006) for
+ * 			   deriving every probe position from two hashes
+ *
+ * Bugs:       No known bugs
+ */
+
+
+// A counting Bloom filter over int hash codes. It answers "might this hash be in the
+// set?" with no false negatives and a small, tunable rate of false positives, which
+// lets HashTable skip the bucket search for most keys that are not in the table.
+//
+// A plain Bloom filter can only add. Here every position holds a 4 bit counter instead
+// of a single bit, so entries can also be removed when they leave the table. Sixteen
+// counters are packed into each long. A counter that reaches 15 is left at 15 forever,
+// since after that it is no longer known how many entries share it.
+
+public class CountingBloomFilter {
+
+	private static final int COUNTER_MAX = 15;	//largest value a 4 bit counter can hold
+
+	//instance variables for CountingBloomFilter
+	private final long[] counters;		//4 bit counters, sixteen per long
+	private final int mask;				//number of counters - 1 (a power of two)
+	private final int numHashes;		//positions checked for each hash code
+
+	/** Sizes the filter so that holding expectedEntries hash codes gives about the
+	 *  requested false positive rate
+	 * @param expectedEntries the number of hash codes the filter should hold
+	 * @param falsePositiveRate the target rate, between 0 and 1 */
+	public CountingBloomFilter(int expectedEntries, double falsePositiveRate) {
+		if (falsePositiveRate <= 0 || falsePositiveRate >= 1 || Double.isNaN(falsePositiveRate)) {
+			throw new IllegalArgumentException("False positive rate must be between 0 and 1");
+		}
+		int n = Math.max(expectedEntries, 1);
+
+		//optimal number of counters m = -n ln(p) / (ln 2)^2, rounded up to a power of two
+		double bestSize = -n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+		int size = 16;
+		while (size < bestSize && size < (1 << 30)) {
+			size <<= 1;
+		}
+		counters = new long[size / 16];
+		mask = size - 1;
+
+		//optimal number of hashes k = (m / n) ln 2
+		numHashes = Math.max(1, (int) Math.round((double) size / n * Math.log(2)));
+	}
+
+	/** Records one more entry with the given hash code */
+	public void add(int hash) {
+		long h = mix(hash);
+		int h1 = (int) h;
+		int h2 = (int) (h >>> 32) | 1;
+		for (int i = 0; i < numHashes; i++) {
+			int position = (h1 + i * h2) & mask;
+			int count = getCounter(position);
+			if (count < COUNTER_MAX) {
+				setCounter(position, count + 1);
+			}
+		}
+	}
+
+	/** Forgets one entry with the given hash code. Must only be called for a hash
+	 *  code that was previously added */
+	public void remove(int hash) {
+		long h = mix(hash);
+		int h1 = (int) h;
+		int h2 = (int) (h >>> 32) | 1;
+		for (int i = 0; i < numHashes; i++) {
+			int position = (h1 + i * h2) & mask;
+			int count = getCounter(position);
+			if (count > 0 && count < COUNTER_MAX) {
+				setCounter(position, count - 1);
+			}
+		}
+	}
+
+	/** @return false if no entry with this hash code was added, true if one might
+	 *  have been */
+	public boolean mightContain(int hash) {
+		long h = mix(hash);
+		int h1 = (int) h;
+		int h2 = (int) (h >>> 32) | 1;
+		for (int i = 0; i < numHashes; i++) {
+			if (getCounter((h1 + i * h2) & mask) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	//
+	// Start of helper methods
+	//
+
+	/** Spreads a 32 bit hash over 64 bits so the two halves can act as
+	 *  independent hashes
+	 * @return the mixed hash */
+	private static long mix(int hash) {
+		long h = hash * 0x9E3779B97F4A7C15L;
+		return h ^ (h >>> 29);
+	}
+
+	private int getCounter(int position) {
+		return (int) (counters[position >>> 4] >>> ((position & 15) << 2)) & COUNTER_MAX;
+	}
+
+	private void setCounter(int position, int value) {
+		int shift = (position & 15) << 2;
+		long word = counters[position >>> 4] & ~((long) COUNTER_MAX << shift);
+		counters[position >>> 4] = word | ((long) value << shift);
+	}
+
+}
@@ -0,0 +1,388 @@
+/**
+ * Filename:   ExpiringHashTable.java
+ * Project:    p3
+ * Authors:    Kelly East
+ *
+ * Version:    1.0
+ *
+ * Credits:    Varghese and Lauck, "Hashed and Hierarchical Timing Wheels" (1987)
+ * 			   Ben Manes' Caffeine library (TimerWheel) for the choice of spans
+ *
+ * Bugs:       No known bugs
+ */
+
+
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+
+
+// A HashTable whose entries expire, for session and result caches. Each entry is given
+// a time to live when it is put (or the table's default), and after that it is never
+// returned again.
+//
+// Expired entries are found with a hierarchical timer wheel rather than by scanning
+// the table. The wheel has LEVELS levels of 64 buckets. A bucket on level 0 covers
+// about a millisecond, a bucket on each level above covers 64 times the one below,
+// so the top level reaches out about 13 days. An entry is linked into the bucket for
+// its expiry time on the lowest level that reaches that far:
+//
+// 		1) when the clock moves into a bucket's time, the bucket is emptied
+//		2) entries in it that have expired are removed from the table
+//		3) the rest are not due until later in the bucket's time, and are relinked
+//		   into a finer bucket on a lower level
+//
+// An entry moves down at most once per level, so the cost of expiring it is O(1)
+// amortized, and a put or remove only links or unlinks one node.
+//
+// There is no background thread. The wheel is moved forward at the start of every
+// call, and get also checks an entry's own expiry time, so an entry is never returned
+// after it expires even between clock ticks. Callers that want memory reclaimed while
+// the table is idle can call cleanUp() from a timer of their own. Like HashTable, this
+// class is not thread safe.
+
+public class ExpiringHashTable<K extends Comparable<K>, V> implements HashTableADT<K, V> {
+
+	/** Source of the current time in nanoseconds. Can be replaced for testing */
+	public interface Ticker {
+		long read();
+	}
+
+	private static final int LEVELS = 5;				//levels in the timer wheel
+	private static final int BUCKETS = 64;				//buckets on each level
+	private static final int BASE_SHIFT = 20;			//level 0 buckets last 2^20 ns (~1 ms)
+	private static final int LEVEL_SHIFT = 6;			//each level's buckets are 2^6 times longer
+	private static final long NEVER = Long.MAX_VALUE;	//expiry time of an entry with no time to live
+
+	/** An entry in the table. It is also a node in the list of its wheel bucket */
+	static final class Entry<K, V> {
+		K key;
+		V value;
+		long expiresAt;			//time the entry expires, relative to the table's start
+		Entry<K, V> prev, next;	//neighbours in the bucket's list, null if not in the wheel
+
+		Entry(K key, V value, long expiresAt) {
+			this.key = key;
+			this.value = value;
+			this.expiresAt = expiresAt;
+		}
+	}
+
+	//instance variables for ExpiringHashTable
+	private final HashTable<K, Entry<K, V>> table;	//lookup from key to entry
+	private final Entry<K, V>[][] wheel;		//sentinel heads of each bucket's circular list
+	private final Ticker ticker;				//clock
+	private final long origin;					//ticker reading when the table was made
+	private final long defaultTtl;				//time to live for put(key, value), in ns
+	private long now;							//time the wheel has been advanced to
+	private long expiredCount;					//entries removed because they expired
+
+	//Constructor for a table whose entries live for defaultTtl unless put says otherwise
+	public ExpiringHashTable(long defaultTtl, TimeUnit unit) {
+		this(defaultTtl, unit, System::nanoTime);
+	}
+
+	//Constructor that also takes the clock to use
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public ExpiringHashTable(long defaultTtl, TimeUnit unit, Ticker ticker) {
+		if (defaultTtl <= 0 || unit == null || ticker == null) {
+			throw new IllegalArgumentException("Time to live must be positive, with a unit and ticker");
+		}
+		this.defaultTtl = unit.toNanos(defaultTtl);
+		this.ticker = ticker;
+		table = new HashTable<>();
+		origin = ticker.read();
+
+		wheel = new Entry[LEVELS][BUCKETS];
+		for (int level = 0; level < LEVELS; level++) {
+			for (int bucket = 0; bucket < BUCKETS; bucket++) {
+				Entry<K, V> sentinel = new Entry<>(null, null, NEVER);
+				sentinel.prev = sentinel;
+				sentinel.next = sentinel;
+				wheel[level][bucket] = sentinel;
+			}
+		}
+	}
+
+	/** insert a <key,value> pair entry into the table with the default time to
+	 * live, replacing the value and expiry time of an existing key.
+	 * throw IllegalArgumentException when key is null
+	 */
+	@Override
+	public void put(K key, V value) throws IllegalArgumentException {
+		put(key, value, defaultTtl, TimeUnit.NANOSECONDS);
+	}
+
+	/** insert a <key,value> pair entry into the table that expires after ttl,
+	 * replacing the value and expiry time of an existing key. Long.MAX_VALUE
+	 * means the entry never expires.
+	 * throw IllegalArgumentException when key is null or ttl is not positive
+	 */
+	public void put(K key, V value, long ttl, TimeUnit unit) throws IllegalArgumentException {
+		//handle null keys
+		if (key == null) {
+			throw new IllegalArgumentException("Cannot insert a null key");
+		}
+		if (ttl <= 0) {
+			throw new IllegalArgumentException("Time to live must be positive");
+		}
+		advance();
+
+		long ttlNanos = unit.toNanos(ttl);
+		long expiresAt = (ttl == Long.MAX_VALUE || ttlNanos > NEVER - now) ? NEVER : now + ttlNanos;
+
+		Entry<K, V> entry = table.getOrDefault(key, null);
+		if (entry != null) {
+			unlink(entry);
+			entry.value = value;
+			entry.expiresAt = expiresAt;
+		}
+		else {
+			entry = new Entry<>(key, value, expiresAt);
+			table.put(key, entry);
+		}
+		schedule(entry);
+	}
+
+	/** return the value associated with the given key.
+	 * throw IllegalArgumentException if key is null
+	 * throw NoSuchElementException if key does not exist or has expired
+	 */
+	@Override
+	public V get(K key) throws IllegalArgumentException, NoSuchElementException {
+		//handle null keys
+		if (key == null) {
+			throw new IllegalArgumentException("Cannot get a null key");
+		}
+
+		Entry<K, V> entry = liveEntry(key);
+		if (entry == null) {
+			throw new NoSuchElementException("The key does not exist in this hash table");
+		}
+		return entry.value;
+	}
+
+	/** return the value associated with the given key, or defaultValue if the
+	 * key does not exist or has expired
+	 * throw IllegalArgumentException if key is null
+	 */
+	public V getOrDefault(K key, V defaultValue) throws IllegalArgumentException {
+		//handle null keys
+		if (key == null) {
+			throw new IllegalArgumentException("Cannot get a null key");
+		}
+
+		Entry<K, V> entry = liveEntry(key);
+		return (entry != null) ? entry.value : defaultValue;
+	}
+
+	/** @return true if the key exists in the table and has not expired
+	 * throw IllegalArgumentException if key is null
+	 */
+	public boolean containsKey(K key) throws IllegalArgumentException {
+		//handle null keys
+		if (key == null) {
+			throw new IllegalArgumentException("Cannot search for a null key");
+		}
+
+		return liveEntry(key) != null;
+	}
+
+	/** remove the (key,value) entry for the specified key
+	 * throw IllegalArgumentException if key is null
+	 * throw NoSuchElementException if key does not exist or has expired
+	 */
+	@Override
+	public void remove(K key) throws IllegalArgumentException, NoSuchElementException {
+		//handle null keys
+		if (key == null) {
+			throw new IllegalArgumentException("Cannot remove a null key");
+		}
+
+		Entry<K, V> entry = liveEntry(key);
+		if (entry == null) {
+			throw new NoSuchElementException("The key does not exist in this hash table");
+		}
+		unlink(entry);
+		table.remove(key);
+	}
+
+	/** @return the number of keys in the table. An entry that expired less than
+	 *  a level 0 bucket (about a millisecond) ago may still be counted */
+	@Override
+	public int size() {
+		advance();
+		return table.size();
+	}
+
+	/** Removes expired entries now instead of waiting for the next call */
+	public void cleanUp() {
+		advance();
+	}
+
+	/** @return the number of entries removed because they expired */
+	public long getExpiredCount() {
+		return expiredCount;
+	}
+
+	//
+	// Start of helper methods
+	//
+
+	/** Moves the wheel forward, then finds key's entry. An entry that has expired
+	 *  since the last bucket was emptied is removed here
+	 * @return the entry, or null if the key does not exist or has expired */
+	private Entry<K, V> liveEntry(K key) {
+		advance();
+		Entry<K, V> entry = table.getOrDefault(key, null);
+		if (entry != null && entry.expiresAt <= now) {
+			expire(entry);
+			return null;
+		}
+		return entry;
+	}
+
+	/** @return the shift giving the bucket number on a level from a time */
+	private static int shift(int level) {
+		return BASE_SHIFT + level * LEVEL_SHIFT;
+	}
+
+	/** Moves the wheel to the current time, emptying every bucket whose time has
+	 *  started since the last call */
+	private void advance() {
+		long previous = now;
+		long current = ticker.read() - origin;
+		if (current <= previous) {
+			return;
+		}
+		now = current;
+
+		for (int level = 0; level < LEVELS; level++) {
+			long previousTicks = previous >>> shift(level);
+			long currentTicks = current >>> shift(level);
+			if (previousTicks == currentTicks) {
+				//the higher levels have not moved either
+				break;
+			}
+			//from the bucket that was current up to the one that is now,
+			//or every bucket if the clock has gone all the way around
+			long count = Math.min(currentTicks - previousTicks + 1, BUCKETS);
+			for (long tick = previousTicks; tick < previousTicks + count; tick++) {
+				emptyBucket(wheel[level][(int) (tick & (BUCKETS - 1))]);
+			}
+		}
+	}
+
+	/** Takes every entry out of a bucket, then expires or relinks each one */
+	private void emptyBucket(Entry<K, V> sentinel) {
+		Entry<K, V> entry = sentinel.next;
+		sentinel.prev = sentinel;
+		sentinel.next = sentinel;
+
+		while (entry != sentinel) {
+			Entry<K, V> next = entry.next;
+			entry.prev = null;
+			entry.next = null;
+			if (entry.expiresAt <= now) {
+				expire(entry);
+			}
+			else {
+				schedule(entry);
+			}
+			entry = next;
+		}
+	}
+
+	/** Removes an expired entry from the wheel and the table */
+	private void expire(Entry<K, V> entry) {
+		unlink(entry);
+		table.removeIfPresent(entry.key);
+		expiredCount++;
+	}
+
+	/** Links an entry into the bucket for its expiry time on the lowest level that
+	 *  reaches that far. Entries past the top level go in the top level and are
+	 *  relinked when their bucket comes round */
+	private void schedule(Entry<K, V> entry) {
+		if (entry.expiresAt == NEVER) {
+			return;
+		}
+		long delay = entry.expiresAt - now;
+		int level = 0;
+		while (level < LEVELS - 1 && delay >= ((long) BUCKETS << shift(level))) {
+			level++;
+		}
+		int bucket = (int) ((entry.expiresAt >>> shift(level)) & (BUCKETS - 1));
+
+		//link in as the last entry of the bucket
+		Entry<K, V> sentinel = wheel[level][bucket];
+		entry.prev = sentinel.prev;
+		entry.next = sentinel;
+		sentinel.prev.next = entry;
+		sentinel.prev = entry;
+	}
+
+	/** Unlinks an entry from its bucket, if it is in one */
+	private void unlink(Entry<K, V> entry) {
+		if (entry.next != null) {
+			entry.prev.next = entry.next;
+			entry.next.prev = entry.prev;
+			entry.prev = null;
+			entry.next = null;
+		}
+	}
+
+	//This is just used for testing
+	public static void main(String args[]) {
+		//a clock that only moves when told to
+		long[] clock = { 0 };
+		ExpiringHashTable<String, Integer> sessions =
+				new ExpiringHashTable<>(30, TimeUnit.MINUTES, () -> clock[0]);
+
+		sessions.put("kelly", 1);
+		sessions.put("lauren", 2, 5, TimeUnit.SECONDS);
+		sessions.put("matt", 3, 2, TimeUnit.HOURS);
+		sessions.put("chewie", 4, Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+		System.out.println("Table size = " + sessions.size() + " (expected 4)");
+
+		clock[0] += TimeUnit.SECONDS.toNanos(5);
+		System.out.println("lauren after 5 seconds = " + sessions.getOrDefault("lauren", null)
+				+ " (expected null)");
+		System.out.println("kelly after 5 seconds = " + sessions.get("kelly") + " (expected 1)");
+
+		clock[0] += TimeUnit.MINUTES.toNanos(30);
+		System.out.println("Table size after 30 minutes = " + sessions.size() + " (expected 2)");
+
+		clock[0] += TimeUnit.DAYS.toNanos(400);
+		System.out.println("Table size after 400 days = " + sessions.size() + " (expected 1)");
+		System.out.println("Expired count = " + sessions.getExpiredCount() + " (expected 3)");
+
+		//many entries with random lifetimes, checked against their own expiry times
+		java.util.Random random = new java.util.Random(1);
+		ExpiringHashTable<Integer, Long> results =
+				new ExpiringHashTable<>(1, TimeUnit.SECONDS, () -> clock[0]);
+		java.util.HashMap<Integer, Long> expiry = new java.util.HashMap<>();
+		boolean passed = true;
+		for (int i = 0; i < 200000; i++) {
+			clock[0] += random.nextInt(200000);
+			int key = random.nextInt(5000);
+			if (random.nextBoolean()) {
+				long ttl = 1 + random.nextInt(2000000000);
+				results.put(key, clock[0] + ttl, ttl, TimeUnit.NANOSECONDS);
+				expiry.put(key, clock[0] + ttl);
+			}
+			else {
+				Long expected = expiry.get(key);
+				boolean live = expected != null && expected > clock[0];
+				passed &= results.containsKey(key) == live;
+			}
+		}
+		int live = 0;
+		for (long expiresAt : expiry.values()) {
+			live += (expiresAt > clock[0]) ? 1 : 0;
+		}
+		clock[0] += TimeUnit.MILLISECONDS.toNanos(2);
+		passed &= results.size() <= live;
+		System.out.println("Random expiry test " + (passed ? "passed" : "failed"));
+	}
+
+}
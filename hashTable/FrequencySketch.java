@@ -0,0 +1,108 @@
+/**
+ * Filename:   FrequencySketch.java
+ * Project:    p3
+ * Authors:    Kelly East
+ *
+ * Version:    1.0
+ *
+ * Credits:    Einziger, Friedman and Manes, "TinyLFU: A Highly Efficient Cache
+ * 			   Admission Policy" (2017)
+ * 			   Cormode and Muthukrishnan, "An Improved Data Stream Summary: The
+ * 			   Count-Min Sketch and its Applications" (2005)
+ *
+ * Bugs:       No known bugs
+ */
+
+
+// Estimates how often each hash code has been seen recently, in a fixed amount of
+// memory. It is a count-min sketch: DEPTH rows of 4 bit counters, where each hash code
+// increments one counter per row and its estimate is the smallest of those counters.
+//
+// To keep the estimates about *recent* popularity, every counter is halved once the
+// number of increments reaches the sample size. CachingHashTable uses this to decide
+// whether a new entry is worth keeping over the entry it would evict.
+
+public class FrequencySketch {
+
+	private static final int DEPTH = 4;				//number of rows (hash functions)
+	private static final int COUNTER_MAX = 15;		//largest value a 4 bit counter can hold
+	private static final long RESET_MASK = 0x7777777777777777L;	//clears the bit shifted
+																//into each counter on reset
+
+	//row seeds, one odd multiplier per row
+	private static final long[] SEEDS = {
+			0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L };
+
+	//instance variables for FrequencySketch
+	private final long[] counters;	//DEPTH rows of width 4 bit counters, sixteen per long
+	private final int widthMask;	//counters per row - 1 (a power of two)
+	private final int sampleSize;	//increments between each halving of the counters
+	private int additions;			//increments since the last halving
+
+	/** @param maximumSize about how many distinct entries the cache holds */
+	public FrequencySketch(int maximumSize) {
+		int width = 16;
+		while (width < maximumSize && width < (1 << 26)) {
+			width <<= 1;
+		}
+		widthMask = width - 1;
+		counters = new long[(width * DEPTH) / 16];
+		sampleSize = (int) Math.min(10L * width, Integer.MAX_VALUE);
+	}
+
+	/** Records one more occurrence of the hash code */
+	public void increment(int hash) {
+		boolean added = false;
+		for (int row = 0; row < DEPTH; row++) {
+			int cell = cell(hash, row);
+			int count = getCounter(cell);
+			if (count < COUNTER_MAX) {
+				setCounter(cell, count + 1);
+				added = true;
+			}
+		}
+
+		if (added && ++additions >= sampleSize) {
+			reset();
+		}
+	}
+
+	/** @return the estimated number of recent occurrences of the hash code, 0 to 15 */
+	public int frequency(int hash) {
+		int frequency = COUNTER_MAX;
+		for (int row = 0; row < DEPTH; row++) {
+			frequency = Math.min(frequency, getCounter(cell(hash, row)));
+		}
+		return frequency;
+	}
+
+	//
+	// Start of helper methods
+	//
+
+	/** @return the position of the hash code's counter in the given row */
+	private int cell(int hash, int row) {
+		long h = (hash + SEEDS[row]) * SEEDS[row];
+		int column = (int) (h >>> 32) & widthMask;
+		return row * (widthMask + 1) + column;
+	}
+
+	/** Halves every counter so older occurrences count for less */
+	private void reset() {
+		for (int i = 0; i < counters.length; i++) {
+			counters[i] = (counters[i] >>> 1) & RESET_MASK;
+		}
+		additions /= 2;
+	}
+
+	private int getCounter(int cell) {
+		return (int) (counters[cell >>> 4] >>> ((cell & 15) << 2)) & COUNTER_MAX;
+	}
+
+	private void setCounter(int cell, int value) {
+		int shift = (cell & 15) << 2;
+		long word = counters[cell >>> 4] & ~((long) COUNTER_MAX << shift);
+		counters[cell >>> 4] = word | ((long) value << shift);
+	}
+
+}
@@ -0,0 +1,389 @@
+/**
+ * Filename:   FrozenHashTable.java
+ * Project:    p3
+ * Authors:    Kelly East
+ *
+ * Version:    1.0
+ *
+ * Credits:    Belazzougui, Botelho and Dietzfelbinger, "Hash, displace, and compress"
+ * 			   (2009) for the bucket and displacement scheme
+ * 			   Pibiri and Trani, "PTHash: Revisiting FCH Minimal Perfect Hashing" (2021)
+ *
+ * Bugs:       No known bugs
+ */
+
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+
+// An immutable hash table for data that is built once and then only read. It is made
+// with HashTable.freeze(), or directly from a collection of entries.
+//
+// The table is a minimal perfect hash: n keys sit in exactly n slots, and every key has
+// a slot of its own, so a lookup is one slot read and one equals call. There are no
+// chains, no probing and no empty slots. It works as follows:
+// 		1) the keys are split into small buckets (about BUCKET_SIZE keys each) by one
+//		   hash of their hashCode
+//		2) working from the largest bucket down, each bucket is given a seed: the first
+//		   number that, mixed with the hashCode of every key in the bucket, sends them
+//		   all to different slots that no earlier bucket has taken
+//		3) a lookup finds its key's bucket, reads the bucket's seed and mixes it with
+//		   the hashCode to get the slot
+// Only the seeds (one int per bucket) are stored on top of the keys and values.
+//
+// A perfect hash can only tell keys apart by their hashCode, so keys that share a
+// hashCode are given one slot between them, holding a Collision with all of them.
+//
+// Every field is final and nothing changes after construction, so a FrozenHashTable can
+// be shared between threads with no locking.
+
+public class FrozenHashTable<K extends Comparable<K>, V> implements HashTableADT<K, V> {
+
+	private static final int BUCKET_SIZE = 4;				//average keys per bucket
+	private static final int BUCKET_SEED = 0x5BD1E995;		//seed for choosing a key's bucket
+
+	/** The keys sharing a hashCode, and their values, all stored in one slot */
+	private static final class Collision {
+		final Object[] keys;
+		final Object[] values;
+
+		Collision(Object[] keys, Object[] values) {
+			this.keys = keys;
+			this.values = values;
+		}
+	}
+
+	//instance variables for FrozenHashTable
+	private final int[] seeds;		//seed found for each bucket
+	private final Object[] keys;	//key in each slot, or a Collision
+	private final Object[] values;	//value in each slot, unused for a Collision
+	private final int size;			//number of keys in the table
+
+	/** Builds the table from a collection of entries. If a key appears more than
+	 *  once its last value is kept
+	 * @throws IllegalArgumentException if any key is null
+	 */
+	public FrozenHashTable(Collection<? extends Map.Entry<? extends K, ? extends V>> entries)
+			throws IllegalArgumentException {
+		int n = entries.size();
+		Object[] entryKeys = new Object[n];
+		Object[] entryValues = new Object[n];
+		int count = 0;
+		for (Map.Entry<? extends K, ? extends V> entry : entries) {
+			if (entry.getKey() == null) {
+				throw new IllegalArgumentException("Cannot insert a null key");
+			}
+			entryKeys[count] = entry.getKey();
+			entryValues[count] = entry.getValue();
+			count++;
+		}
+
+		//sort the entries by hashCode, keeping their order within a hashCode
+		long[] order = new long[count];
+		for (int i = 0; i < count; i++) {
+			order[i] = ((long) entryKeys[i].hashCode() << 32) | i;
+		}
+		Arrays.sort(order);
+
+		//one group per distinct hashCode
+		int[] groupHash = new int[count];
+		int[] groupStart = new int[count + 1];
+		int groups = 0;
+		for (int i = 0; i < count; i++) {
+			int hash = (int) (order[i] >> 32);
+			if (i == 0 || hash != groupHash[groups - 1]) {
+				groupHash[groups] = hash;
+				groupStart[groups] = i;
+				groups++;
+			}
+		}
+		groupStart[groups] = count;
+
+		seeds = new int[Math.max(1, (groups + BUCKET_SIZE - 1) / BUCKET_SIZE)];
+		keys = new Object[groups];
+		values = new Object[groups];
+
+		int[] slotOfGroup = placeGroups(groupHash, groups);
+		int keyCount = 0;
+		for (int g = 0; g < groups; g++) {
+			//drop repeated keys within the group, the later entry winning
+			ArrayList<Object> groupKeys = new ArrayList<>();
+			ArrayList<Object> groupValues = new ArrayList<>();
+			for (int i = groupStart[g]; i < groupStart[g + 1]; i++) {
+				int entry = (int) order[i];
+				int existing = groupKeys.indexOf(entryKeys[entry]);
+				if (existing >= 0) {
+					groupValues.set(existing, entryValues[entry]);
+				}
+				else {
+					groupKeys.add(entryKeys[entry]);
+					groupValues.add(entryValues[entry]);
+				}
+			}
+
+			int slot = slotOfGroup[g];
+			if (groupKeys.size() == 1) {
+				keys[slot] = groupKeys.get(0);
+				values[slot] = groupValues.get(0);
+			}
+			else {
+				keys[slot] = new Collision(groupKeys.toArray(), groupValues.toArray());
+			}
+			keyCount += groupKeys.size();
+		}
+		size = keyCount;
+	}
+
+	/** Unsupported: a frozen table cannot change
+	 * throw UnsupportedOperationException always
+	 */
+	@Override
+	public void put(K key, V value) {
+		throw new UnsupportedOperationException("A frozen hash table cannot be changed");
+	}
+
+	/** return the value associated with the given key.
+	 * throw IllegalArgumentException if key is null
+	 * throw NoSuchElementException if key does not exist
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public V get(K key) throws IllegalArgumentException, NoSuchElementException {
+		//handle null keys
+		if (key == null) {
+			throw new IllegalArgumentException("Cannot get a null key");
+		}
+
+		int index = find(key);
+		if (index < 0) {
+			throw new NoSuchElementException("The key does not exist in this hash table");
+		}
+		return (V) valueAt(key, index);
+	}
+
+	/** return the value associated with the given key, or defaultValue if the
+	 * key does not exist
+	 * throw IllegalArgumentException if key is null
+	 */
+	@SuppressWarnings("unchecked")
+	public V getOrDefault(K key, V defaultValue) throws IllegalArgumentException {
+		//handle null keys
+		if (key == null) {
+			throw new IllegalArgumentException("Cannot get a null key");
+		}
+
+		int index = find(key);
+		return (index >= 0) ? (V) valueAt(key, index) : defaultValue;
+	}
+
+	/** @return true if the key exists in the hash table
+	 * throw IllegalArgumentException if key is null
+	 */
+	public boolean containsKey(K key) throws IllegalArgumentException {
+		//handle null keys
+		if (key == null) {
+			throw new IllegalArgumentException("Cannot search for a null key");
+		}
+
+		return find(key) >= 0;
+	}
+
+	/** Unsupported: a frozen table cannot change
+	 * throw UnsupportedOperationException always
+	 */
+	@Override
+	public void remove(K key) {
+		throw new UnsupportedOperationException("A frozen hash table cannot be changed");
+	}
+
+	/** @return  the number of keys in the hash table */
+	@Override
+	public int size() {
+		return size;
+	}
+
+	//
+	// Start of helper methods
+	//
+
+	/** Mixes a hashCode with a seed (the finalizer of MurmurHash3 over both)
+	 * @return 32 well mixed bits */
+	private static int mix(int hash, int seed) {
+		long x = ((long) seed << 32) | (hash & 0xFFFFFFFFL);
+		x ^= x >>> 33;
+		x *= 0xFF51AFD7ED558CCDL;
+		x ^= x >>> 33;
+		x *= 0xC4CEB9FE1A85EC53L;
+		x ^= x >>> 33;
+		return (int) (x >>> 32);
+	}
+
+	/** Maps 32 mixed bits onto 0 .. n-1 with a multiply and shift
+	 * @return the index */
+	private static int reduce(int mixed, int n) {
+		return (int) (((mixed & 0xFFFFFFFFL) * n) >>> 32);
+	}
+
+	/** @return the slot a hashCode is sent to */
+	private int slotFor(int hash) {
+		int bucket = reduce(mix(hash, BUCKET_SEED), seeds.length);
+		return reduce(mix(hash, seeds[bucket]), keys.length);
+	}
+
+	/** @return the slot holding key (possibly inside a Collision), or -1 if the key
+	 *  does not exist */
+	private int find(Object key) {
+		if (keys.length == 0) {
+			return -1;
+		}
+		int slot = slotFor(key.hashCode());
+		Object stored = keys[slot];
+		if (stored instanceof Collision) {
+			Object[] shared = ((Collision) stored).keys;
+			for (int i = 0; i < shared.length; i++) {
+				if (shared[i].equals(key)) {
+					return slot;
+				}
+			}
+			return -1;
+		}
+		return stored.equals(key) ? slot : -1;
+	}
+
+	/** @return the value for key, which find has located at slot */
+	private Object valueAt(Object key, int slot) {
+		Object stored = keys[slot];
+		if (stored instanceof Collision) {
+			Collision collision = (Collision) stored;
+			for (int i = 0; i < collision.keys.length; i++) {
+				if (collision.keys[i].equals(key)) {
+					return collision.values[i];
+				}
+			}
+		}
+		return values[slot];
+	}
+
+	/** Chooses a seed for every bucket so each distinct hashCode gets its own slot.
+	 *  Large buckets are placed first, while most slots are still free
+	 * @return the slot for each group (distinct hashCode) */
+	private int[] placeGroups(int[] groupHash, int groups) {
+		int numBuckets = seeds.length;
+
+		//group numbers sorted by bucket
+		int[] bucketStart = new int[numBuckets + 1];
+		int[] bucketOf = new int[groups];
+		for (int g = 0; g < groups; g++) {
+			bucketOf[g] = reduce(mix(groupHash[g], BUCKET_SEED), numBuckets);
+			bucketStart[bucketOf[g] + 1]++;
+		}
+		for (int b = 0; b < numBuckets; b++) {
+			bucketStart[b + 1] += bucketStart[b];
+		}
+		int[] members = new int[groups];
+		int[] next = Arrays.copyOf(bucketStart, numBuckets);
+		for (int g = 0; g < groups; g++) {
+			members[next[bucketOf[g]]++] = g;
+		}
+
+		//buckets ordered from largest to smallest
+		int largest = 0;
+		for (int b = 0; b < numBuckets; b++) {
+			largest = Math.max(largest, bucketStart[b + 1] - bucketStart[b]);
+		}
+		int[] bySizeStart = new int[largest + 2];
+		for (int b = 0; b < numBuckets; b++) {
+			bySizeStart[largest - (bucketStart[b + 1] - bucketStart[b]) + 1]++;
+		}
+		for (int i = 0; i <= largest; i++) {
+			bySizeStart[i + 1] += bySizeStart[i];
+		}
+		int[] bucketOrder = new int[numBuckets];
+		for (int b = 0; b < numBuckets; b++) {
+			bucketOrder[bySizeStart[largest - (bucketStart[b + 1] - bucketStart[b])]++] = b;
+		}
+
+		boolean[] taken = new boolean[groups];
+		int[] slotOfGroup = new int[groups];
+		int[] trial = new int[largest];
+		for (int b : bucketOrder) {
+			int from = bucketStart[b];
+			int count = bucketStart[b + 1] - from;
+			if (count == 0) {
+				continue;
+			}
+			for (int seed = 0; ; seed++) {
+				if (seed == Integer.MAX_VALUE) {
+					throw new IllegalStateException("No seed places bucket " + b);
+				}
+				if (tryPlace(groupHash, members, from, count, seed, taken, trial)) {
+					seeds[b] = seed;
+					for (int i = 0; i < count; i++) {
+						slotOfGroup[members[from + i]] = trial[i];
+					}
+					break;
+				}
+			}
+		}
+		return slotOfGroup;
+	}
+
+	/** Tries one seed for a bucket. On success the slots are recorded in trial and
+	 *  marked as taken
+	 * @return true if every group in the bucket landed on a different free slot */
+	private boolean tryPlace(int[] groupHash, int[] members, int from, int count, int seed,
+			boolean[] taken, int[] trial) {
+		for (int i = 0; i < count; i++) {
+			int slot = reduce(mix(groupHash[members[from + i]], seed), keys.length);
+			if (taken[slot]) {
+				//undo the slots this seed has claimed so far
+				for (int j = 0; j < i; j++) {
+					taken[trial[j]] = false;
+				}
+				return false;
+			}
+			taken[slot] = true;
+			trial[i] = slot;
+		}
+		return true;
+	}
+
+	//This is just used for testing
+	public static void main(String args[]) {
+		HashTable<String, Integer> map = new HashTable<>();
+		for (int i = 0; i < 100000; i++) {
+			map.put("winery-" + i, i);
+		}
+		//"Aa" and "BB" share a hashCode
+		map.put("Aa", -1);
+		map.put("BB", -2);
+
+		long start = System.nanoTime();
+		FrozenHashTable<String, Integer> frozen = map.freeze();
+		long elapsed = System.nanoTime() - start;
+		System.out.println("Froze " + frozen.size() + " keys in " + elapsed / 1000000 + " ms");
+
+		boolean passed = frozen.size() == map.size();
+		for (int i = 0; i < 100000; i++) {
+			passed &= frozen.get("winery-" + i) == i;
+		}
+		passed &= frozen.get("Aa") == -1 && frozen.get("BB") == -2;
+		for (int i = 100000; i < 110000; i++) {
+			passed &= !frozen.containsKey("winery-" + i);
+		}
+		passed &= frozen.getOrDefault("C#", 7) == 7;
+		System.out.println("Lookups in frozen table " + (passed ? "passed" : "failed"));
+
+		try {
+			frozen.put("winery-0", 0);
+			System.out.println("put on a frozen table failed to throw");
+		} catch (UnsupportedOperationException e) {
+			System.out.println("put on a frozen table threw as expected");
+		}
+	}
+
+}
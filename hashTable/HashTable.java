@@ -18,8 +18,30 @@
  */
 
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
 
 
 // This is a hash table program designed to store key and value pairs in a hash table
@@ -28,36 +50,341 @@ import java.util.NoSuchElementException;
 // has a variable next, pointing to the next node.
 // 
 // This program also uses the java hashCode function for determining the hash index.
-// The private method "getIndex" holds the hashing algorithm. It works as follows:
-// 		1) a hash code is generate for the key using the built in java function
-//  		2) an index is determined by taking the modulo of that hashCode with the 
-//		   number of buckets at the given time
-//		3) to eliminate any negatives, the absolute value of that index is returned
-//		   as the final index
+// The private methods "hash" and "getIndex" hold the hashing algorithm. It works as follows:
+// 		1) a hash code is generate for the key using the built in java function, and
+//		   its high bits are folded into its low bits ("spread")
+//  		2) the table's CapacityStrategy turns that hash into an index between 0 and
+//		   the number of buckets. Both built in strategies scramble the hash with a
+//		   multiply and reduce it with a multiply and shift instead of a modulo
+//
+// The CapacityStrategy also picks the number of buckets. The default, PRIME, uses a
+// precomputed table of primes; POWER_OF_TWO doubles the buckets. presized builds a
+// table big enough for a known number of entries, so loading them never resizes.
+//
+// Every node keeps the spread hash of its key. Lookups compare the stored hash before
+// calling equals, and a resize places each node using its stored hash, so hashCode is
+// only ever called once per key (this matters for long String keys).
+//
+// When the load factor is reached the table grows to about twice the number of
+// buckets. By default every entry is moved at once. A table built with
+// incrementalResize set keeps the old bucket array alongside the new one instead, and
+// put, get and remove each move a few old buckets until the old array is empty.
+//
+// A bucket whose chain grows to TREEIFY_THRESHOLD nodes is turned into a TreeBucket,
+// an AVL tree ordered by compareTo, so lookups in a crowded bucket take O(log n)
+// comparisons instead of a walk down the whole list. Once removals shrink it back to
+// UNTREEIFY_THRESHOLD nodes it is turned back into a plain list.
+//
+// putAll loads many entries at once. It grows the table to its final size first,
+// then splits the buckets into ranges and fills the ranges on separate fork-join
+// threads; since no two threads touch the same bucket, no locking is needed.
+// keys(), values() and entries() stream the table through a BucketSpliterator, which
+// splits the same way, so the streams can run in parallel without copying the table.
+//
+// The table counts its own work as it goes: key comparisons made by lookups, the
+// longest single lookup, and the number and total time of resizes. These are plain
+// counters (the table is not thread safe, so nothing stronger is needed) and cost an
+// add per operation. stats() returns them in a HashTableStats snapshot together with a
+// histogram of bucket sizes, which is only computed when the snapshot is taken.
+//
+// writeTo saves the table as a compact stream of entries in bucket order, each with its
+// stored hash and its key and value encoded by Codecs, optionally deflate compressed.
+// readFrom builds a table with the saved number of buckets and links each entry into
+// its bucket using the saved hash, so loading never resizes, calls hashCode or compares
+// keys. This relies on the keys' hashCode being the same in every JVM, as it is for
+// String, Integer and Long. The entries are written in length prefixed blocks ending
+// with an empty block, so readFrom stops exactly at the end of the snapshot and leaves
+// anything written after it in the stream.
   
 public class HashTable<K extends Comparable<K>, V> implements HashTableADT<K, V> {
 	
-	class Node<K,V>{
+	class Node<K,V> implements Map.Entry<K,V> {
+		int hash;		//spread hash code of key, computed once
 		K key; 			//the location where the value should be stored
 		V value; 		//value to be stored
 		Node<K,V> next; //pointer to the next node
 		
 		//constructor
-		public Node(K key, V value){
+		public Node(int hash, K key, V value){
+			this.hash = hash;
 			this.key = key;
 			this.value = value;
 		}
+		
+		public K getKey() {
+			return key;
+		}
+		
+		public V getValue() {
+			return value;
+		}
+		
+		/** Replaces the value stored in the table for this entry */
+		public V setValue(V value) {
+			V oldValue = this.value;
+			this.value = value;
+			return oldValue;
+		}
+		
+		@Override
+		public String toString() {
+			return key + "=" + value;
+		}
+	}
+	
+	/** A node stored in a TreeBucket. Along with the tree links, the nodes of a tree
+	 *  bucket are kept in a doubly linked list through next and prev, so code that
+	 *  only needs to visit every node of a bucket can walk it like a chain. */
+	class TreeNode extends Node<K,V> {
+		TreeNode left, right;	//children in the AVL tree
+		TreeNode prev;			//previous node in the bucket's list
+		int height;				//height of this node in the AVL tree
+		
+		//constructor
+		TreeNode(int hash, K key, V value) {
+			super(hash, key, value);
+			height = 1;
+		}
+	}
+	
+	/** Placeholder stored in a bucket that has been converted to a balanced tree.
+	 *  Its own key and value are unused. Nodes are ordered by their stored hash
+	 *  first and by compareTo only when two hashes are equal. The rotation and
+	 *  balancing steps follow the same cases as AVLTree.insertRecursive and
+	 *  AVLTree.deleteRecursive. */
+	class TreeBucket extends Node<K,V> {
+		TreeNode root;		//root of the AVL tree
+		TreeNode first;		//head of the list of every node in the bucket
+		int count;			//number of nodes in the bucket
+		
+		//constructor
+		TreeBucket() {
+			super(0, null, null);
+		}
+		
+		/** Orders a key against a node, by hash first and then by compareTo
+		 * @return negative, zero or positive as the key is less than, equal to or
+		 *  greater than the node's key */
+		private int compare(int hash, K key, Node<K,V> node) {
+			if (hash != node.hash) {
+				return (hash < node.hash) ? -1 : 1;
+			}
+			return key.compareTo(node.key);
+		}
+		
+		/** @return the node holding key, or null if it is not in this bucket */
+		TreeNode find(int hash, K key) {
+			TreeNode current = root;
+			while (current != null) {
+				probes++;
+				int compare = compare(hash, key, current);
+				if (compare == 0) {
+					return current;
+				}
+				current = (compare < 0) ? current.left : current.right;
+			}
+			return null;
+		}
+		
+		/** Adds a node whose key is known not to be in this bucket */
+		void insert(TreeNode node) {
+			root = insertRecursive(root, node);
+			node.next = first;
+			if (first != null) {
+				first.prev = node;
+			}
+			first = node;
+			count++;
+		}
+		
+		/** Removes the node holding key
+		 * @return true if a node was removed */
+		boolean remove(int hash, K key) {
+			TreeNode node = find(hash, key);
+			if (node == null) {
+				return false;
+			}
+			root = deleteRecursive(root, hash, key);
+			
+			//unlink from the bucket's list
+			if (node.prev == null) {
+				first = (TreeNode) node.next;
+			}
+			else {
+				node.prev.next = node.next;
+			}
+			if (node.next != null) {
+				((TreeNode) node.next).prev = node.prev;
+			}
+			count--;
+			return true;
+		}
+		
+		/** Copies the nodes of this bucket into a plain chain
+		 * @return the head of the chain */
+		Node<K,V> toChain() {
+			Node<K,V> head = null;
+			for (Node<K,V> node = first; node != null; node = node.next) {
+				Node<K,V> copy = new Node<K,V>(node.hash, node.key, node.value);
+				copy.next = head;
+				head = copy;
+			}
+			return head;
+		}
+		
+		private TreeNode insertRecursive(TreeNode current, TreeNode node) {
+			if (current == null) {
+				return node;
+			}
+			if (compare(node.hash, node.key, current) < 0) {
+				current.left = insertRecursive(current.left, node);
+			}
+			else {
+				current.right = insertRecursive(current.right, node);
+			}
+			return rebalance(current);
+		}
+		
+		private TreeNode deleteRecursive(TreeNode current, int hash, K key) {
+			int compare = compare(hash, key, current);
+			if (compare < 0) {
+				current.left = deleteRecursive(current.left, hash, key);
+			}
+			else if (compare > 0) {
+				current.right = deleteRecursive(current.right, hash, key);
+			}
+			else {
+				if (current.left == null) {
+					return current.right;
+				}
+				if (current.right == null) {
+					return current.left;
+				}
+				//promote the smallest node of the right subtree. The node itself is
+				//moved (rather than its key) so the bucket's list stays correct
+				TreeNode smallestRight = current.right;
+				while (smallestRight.left != null) {
+					smallestRight = smallestRight.left;
+				}
+				smallestRight.right = deleteSmallest(current.right);
+				smallestRight.left = current.left;
+				current = smallestRight;
+			}
+			return rebalance(current);
+		}
+		
+		private TreeNode deleteSmallest(TreeNode current) {
+			if (current.left == null) {
+				return current.right;
+			}
+			current.left = deleteSmallest(current.left);
+			return rebalance(current);
+		}
+		
+		/** Updates the height of current and applies the rotation for whichever of
+		 *  the four unbalanced cases it is in
+		 * @return the root of the rebalanced subtree */
+		private TreeNode rebalance(TreeNode current) {
+			updateHeight(current);
+			int balance = getBalance(current);
+			
+			// Left Left and Left Right cases
+			if (balance > 1) {
+				if (getBalance(current.left) < 0) {
+					current.left = rotateLeft(current.left);
+				}
+				return rotateRight(current);
+			}
+			
+			// Right Right and Right Left cases
+			if (balance < -1) {
+				if (getBalance(current.right) > 0) {
+					current.right = rotateRight(current.right);
+				}
+				return rotateLeft(current);
+			}
+			return current;
+		}
+		
+		private TreeNode rotateLeft(TreeNode current) {
+			TreeNode newParent = current.right;
+			current.right = newParent.left;
+			newParent.left = current;
+			updateHeight(current);
+			updateHeight(newParent);
+			return newParent;
+		}
+		
+		private TreeNode rotateRight(TreeNode current) {
+			TreeNode newParent = current.left;
+			current.left = newParent.right;
+			newParent.right = current;
+			updateHeight(current);
+			updateHeight(newParent);
+			return newParent;
+		}
+		
+		private int height(TreeNode current) {
+			return (current == null) ? 0 : current.height;
+		}
+		
+		private int getBalance(TreeNode current) {
+			return (current == null) ? 0 : height(current.left) - height(current.right);
+		}
+		
+		private void updateHeight(TreeNode current) {
+			current.height = Math.max(height(current.left), height(current.right)) + 1;
+		}
 	}
 	
+	//a bucket is turned into a tree once its chain reaches this many nodes
+	private static final int TREEIFY_THRESHOLD = 8;
+	
+	//a tree bucket is turned back into a chain once it shrinks to this many nodes
+	private static final int UNTREEIFY_THRESHOLD = 6;
+	
+	//number of old buckets moved to the new bucket array on each operation
+	//while an incremental resize is in progress
+	private static final int MIGRATE_STEP = 4;
+	
+	//putAll fills the table on one thread when given fewer entries than this
+	private static final int PARALLEL_LOAD_THRESHOLD = 1 << 13;
+	
+	//first int of every snapshot written by writeTo ("HTS2")
+	private static final int SNAPSHOT_MAGIC = 0x48545332;
+	
+	//largest block of entry bytes in a snapshot
+	private static final int SNAPSHOT_BLOCK_SIZE = 1 << 16;
+	
+	//snapshot flag: the entries after the header are deflate compressed
+	private static final int SNAPSHOT_COMPRESSED = 1;
+	
 	//instance variables for HashTable
 	private ArrayList<Node<K,V>> buckets;    //store the chain of buckets
 	private int numBuckets; 					//number of buckets in ArrayList
 	private int size;						//size of ArrayList
 	private double loadFactor;			    //used to determine when to resize
+	private CapacityStrategy capacityStrategy; //picks the number of buckets and each key's bucket
+	private boolean incrementalResize;		//true to spread each resize over later operations
+	private ArrayList<Node<K,V>> oldBuckets; //buckets not yet moved by an incremental resize, else null
+	private int migrateIndex;				//next index in oldBuckets to move
+	private CountingBloomFilter bloomFilter; //hashes of every key in the table, or null if not enabled
+	private CountingBloomFilter nextBloomFilter; //filter being filled for the new buckets during an incremental resize
+	private double bloomFalsePositiveRate;	//rate the Bloom filter is built for
+	private int modCount;					//changes to the set of keys, checked by the spliterators
+	
+	//statistics, see stats()
+	private long probes;					//nodes examined by every bucket search
+	private long lookups;					//calls to get, getOrDefault and containsKey
+	private long lookupProbes;				//nodes examined by those calls
+	private int maxProbeLength;				//most nodes examined by a single lookup
+	private int resizeCount;				//number of resizes started
+	private long resizeNanos;				//time spent resizing, including incremental steps
 	
 	//no-arg constructor
 	public HashTable() {
 		buckets = new ArrayList<>();
+		capacityStrategy = CapacityStrategy.PRIME;
 		numBuckets = 11; //start with a prime number of buckets for best performance
 		size = 0;
 		loadFactor = 0.75; //ideal load factor is between 0.7 and 0.8
@@ -70,9 +397,29 @@ public class HashTable<K extends Comparable<K>, V> implements HashTableADT<K, V>
 	
 	//Constructor that accepts initial capacity and load factor
 	public HashTable(int initialCapacity, double loadFactor) {
-			numBuckets = initialCapacity;
+			this(initialCapacity, loadFactor, false, CapacityStrategy.PRIME);
+	}
+	
+	//Constructor that also selects incremental resizing. When incrementalResize is true,
+	//a resize allocates the new bucket array but leaves the entries in the old one;
+	//each later put, get and remove then moves a few old buckets across, so no single
+	//operation has to rehash the whole table
+	public HashTable(int initialCapacity, double loadFactor, boolean incrementalResize) {
+		this(initialCapacity, loadFactor, incrementalResize, CapacityStrategy.PRIME);
+	}
+	
+	//Constructor that also selects how buckets are counted and indexed. The number of
+	//buckets is initialCapacity rounded up to a size the strategy uses
+	public HashTable(int initialCapacity, double loadFactor, boolean incrementalResize,
+			CapacityStrategy capacityStrategy) {
+			if (capacityStrategy == null) {
+				throw new IllegalArgumentException("Capacity strategy cannot be null");
+			}
+			this.capacityStrategy = capacityStrategy;
+			this.incrementalResize = incrementalResize;
+			numBuckets = capacityStrategy.initialBuckets(Math.max(1, initialCapacity));
 			this.loadFactor = loadFactor;
-			buckets = new ArrayList<>();
+			buckets = new ArrayList<>(numBuckets);
 			size = 0;
 			
 			//we need to setup our Array to be empty at the start
@@ -80,6 +427,28 @@ public class HashTable<K extends Comparable<K>, V> implements HashTableADT<K, V>
 				buckets.add(null);
 			}
 	}
+	
+	/** Creates a table with enough buckets to hold expectedEntries keys at the
+	 * default load factor without resizing
+	 * @return the new, empty table */
+	public static <K extends Comparable<K>, V> HashTable<K,V> presized(int expectedEntries) {
+		return presized(expectedEntries, 0.75, CapacityStrategy.PRIME);
+	}
+	
+	/** Creates a table with enough buckets to hold expectedEntries keys at the
+	 * given load factor without resizing
+	 * @return the new, empty table */
+	public static <K extends Comparable<K>, V> HashTable<K,V> presized(int expectedEntries,
+			double loadFactor, CapacityStrategy capacityStrategy) {
+		if (expectedEntries < 0) {
+			throw new IllegalArgumentException("Expected entries cannot be negative");
+		}
+		//a resize happens once size / buckets reaches the load factor, so there must
+		//be more than expectedEntries / loadFactor buckets
+		long buckets = (long) Math.floor(expectedEntries / loadFactor) + 1;
+		return new HashTable<K,V>((int) Math.min(buckets, Integer.MAX_VALUE), loadFactor,
+				false, capacityStrategy);
+	}
 
 	/** insert a <key,value> pair entry into the hash table 
 	 * if the key already exists in the table, 
@@ -103,37 +472,35 @@ public class HashTable<K extends Comparable<K>, V> implements HashTableADT<K, V>
 		//find the bucket for this key/value pair
 		//
 		
-		int hashIndex = getIndex(key);
+		//move part of an unfinished incremental resize along first
+		migrateBuckets(MIGRATE_STEP);
 		
-		//return the current list of nodes in this bucket
-		Node<K,V> head = buckets.get(hashIndex);
+		int hash = hash(key);
 		
-		//check to see that this key does not already exist, in which case
+		//check to see that this key does not already exist (in the current buckets
+		//or in an old bucket that has not been moved yet), in which case
 		//we just want to update the value
-		while (head != null) {
-			if (head.key.equals(key)){
-				//if we get here, the key already exists, we should
-				//update the value to the value in this key/value pairing
-				head.value = value;
-				return;
-			}
-			head = head.next;
+		Node<K,V> existing = findNode(hash, key);
+		if (existing != null) {
+			existing.value = value;
+			return;
 		}
 		
 		//
 		//add the new key/value pair
 		//
 		
-		//reset head to the start of the list housed in this bucket
-		head = buckets.get(hashIndex);
-		//create our new node to add
-		Node<K,V> newNode = new Node<K,V>(key, value);
-		//add the node to the front of the list at this bucket
-		newNode.next = head;
-		//update this bucket to house the updated list
-		buckets.set(hashIndex, newNode); 
+		//create our new node and add it to this bucket
+		addToBucket(buckets, getIndex(hash), new Node<K,V>(hash, key, value));
+		if (bloomFilter != null) {
+			bloomFilter.add(hash);
+		}
+		if (nextBloomFilter != null) {
+			nextBloomFilter.add(hash);
+		}
 		//update ArrayList size
 		size++; 
+		modCount++;
 		
 		//
 		//check the load factor to make sure we do not need to update table size
@@ -141,29 +508,14 @@ public class HashTable<K extends Comparable<K>, V> implements HashTableADT<K, V>
 		double sizeAsDouble = 1.0*size; //convert to a double to work with loadFactor
 		
 		if (sizeAsDouble / numBuckets >= loadFactor) {
-			//we need to update our array/bucket size
-			ArrayList<Node<K,V>> temp = buckets; //house old array
-			buckets = new ArrayList<>(); //create new bucket array
-			numBuckets = nextPrime(numBuckets*2); //update the number of buckets
-			size = 0; //size of the new array is zero at this point
-			//setup our new array to be empty at the start
-			for (int i = 0; i < numBuckets; i++) {
-				buckets.add(null);
+			if (incrementalResize) {
+				startIncrementalResize();
+			}
+			else {
+				resize();
 			}
-			
-			//transfer the nodes
-			for (int i = 0; i < temp.size(); i++) {
-				Node<K,V> head2 = temp.get(i);
-				while (head2 != null) {
-					put(head2.key, head2.value);
-					head2 = head2.next;
-				} //end while
-			} //end for
-				
 		} //end loadFactor section
 		
-		
-		
 	}
 	
 	/** return the value associated with the given key.
@@ -177,18 +529,10 @@ public class HashTable<K extends Comparable<K>, V> implements HashTableADT<K, V>
 			throw new IllegalArgumentException("Cannot insert a null key");
 		}
 		
-		//begin search for key at the start of the correct bucket
-		int hashIndex = getIndex(key); //get the hashIndex to find the right bucket
-		
-		//return the current list of nodes in this bucket
-		Node<K,V> head = buckets.get(hashIndex);
-		
-		while (head != null) {
-			if (head.key.equals(key)){
-				//the key exists, return the value
-				return head.value;
-			}
-			head = head.next;
+		Node<K,V> node = lookup(key);
+		if (node != null) {
+			//the key exists, return the value
+			return node.value;
 		}
 		
 		//if we get here, the key did not exist. Error and return message
@@ -196,6 +540,33 @@ public class HashTable<K extends Comparable<K>, V> implements HashTableADT<K, V>
 
 	}
 	
+	/** return the value associated with the given key, or defaultValue if the
+	 * key does not exist. Unlike get, a missing key does not throw, so this
+	 * is the cheaper call when misses are common.
+	 * throw IllegalArgumentException if key is null 
+	 */
+	public V getOrDefault(K key, V defaultValue) throws IllegalArgumentException {
+		//handle null keys
+		if (key == null) {
+			throw new IllegalArgumentException("Cannot get a null key");
+		}
+		
+		Node<K,V> node = lookup(key);
+		return (node != null) ? node.value : defaultValue;
+	}
+	
+	/** @return true if the key exists in the hash table
+	 * throw IllegalArgumentException if key is null 
+	 */
+	public boolean containsKey(K key) throws IllegalArgumentException {
+		//handle null keys
+		if (key == null) {
+			throw new IllegalArgumentException("Cannot search for a null key");
+		}
+		
+		return lookup(key) != null;
+	}
+	
 	/** remove the (key,value) entry for the specified key
 	 * throw IllegalArgumentException if key is null 
 	 * throw NoSuchElementException if key does not exist in the tree 
@@ -207,54 +578,78 @@ public class HashTable<K extends Comparable<K>, V> implements HashTableADT<K, V>
 			throw new IllegalArgumentException("Cannot insert a null key");
 		}
 		
-		//begin search for key at the start of the correct bucket
-		int hashIndex = getIndex(key);
+		if (!removeIfPresent(key)) {
+			//if we get here, the key did not exist. Throw an error and return a message.
+			throw new NoSuchElementException("The key does not exist in this hash table");
+		}
+	}
+	
+	/** remove the (key,value) entry for the specified key if it exists.
+	 * Unlike remove, a missing key does not throw.
+	 * throw IllegalArgumentException if key is null 
+	 * @return true if an entry was removed, false if the key did not exist
+	 */
+	public boolean removeIfPresent(K key) throws IllegalArgumentException {
+		//handle null keys
+		if (key == null) {
+			throw new IllegalArgumentException("Cannot remove a null key");
+		}
 		
-		//return the current list of nodes in this bucket
-		Node<K,V> head = buckets.get(hashIndex);
+		//move part of an unfinished incremental resize along first
+		migrateBuckets(MIGRATE_STEP);
 		
-		//handle the case where the head is our key and we just need to update the head
-		if (head.key.equals(key)) {
-
-			if (head.next != null) {
-				//update the head to the next value
-				head = head.next;
-				//update bucket to point to new list
-				buckets.set(hashIndex, head);
-				size --; //decrease size, key was removed
-				return;
+		int hash = hash(key);
+		if (bloomFilter != null && !bloomFilter.mightContain(hash)) {
+			//definitely not in the table
+			return false;
+		}
+		
+		//the key is either in its bucket in the current array, or in a bucket
+		//that an incremental resize has not moved yet
+		if (removeFromBucket(buckets, getIndex(hash), hash, key)) {
+			if (bloomFilter != null) {
+				bloomFilter.remove(hash);
 			}
-			else {
-				//this is the case where the key we are removing was the only
-				//value in the bucket. Set list in this bucket to null
-				head = null;
-				buckets.set(hashIndex, head);
-				size --;
-				return;
+			if (nextBloomFilter != null) {
+				nextBloomFilter.remove(hash);
 			}
+			size--; //decrease size, key was removed
+			modCount++;
+			return true;
 		}
 		
-		//handle all other cases
-		while (head != null) {
-			if (head.next.key.equals(key)){
-				//update head.next to point to the value after the key
-				if (head.next.next != null) {
-					head.next = head.next.next;
-					size--;
-					return;
-				}
-				else {
-					head.next = null;
-					size--;
-					return;
+		if (oldBuckets != null) {
+			int oldIndex = getIndex(hash, oldBuckets.size());
+			if (oldIndex >= migrateIndex && removeFromBucket(oldBuckets, oldIndex, hash, key)) {
+				//an unmoved node was never added to nextBloomFilter
+				if (bloomFilter != null) {
+					bloomFilter.remove(hash);
 				}
+				size--;
+				modCount++;
+				return true;
 			}
-			head = head.next;
 		}
+		return false;
+	}
+	
+	/** Puts a counting Bloom filter in front of the buckets. A lookup or removal
+	 * of a key the filter has never seen then returns straight away, without
+	 * searching a bucket. The filter is kept up to date by put and remove, and
+	 * is rebuilt at the new size whenever the table grows.
+	 * @param falsePositiveRate how often a missing key may still need a bucket
+	 *  search, between 0 and 1
+	 */
+	public void enableBloomFilter(double falsePositiveRate) {
+		//check the rate before changing anything
+		if (falsePositiveRate <= 0 || falsePositiveRate >= 1 || Double.isNaN(falsePositiveRate)) {
+			throw new IllegalArgumentException("False positive rate must be between 0 and 1");
+		}
+		bloomFalsePositiveRate = falsePositiveRate;
 		
-		//if we get here, the key did not exist. Throw an error and return a message.
-		throw new NoSuchElementException("The key does not exist in this hash table");
-		
+		//finish any incremental resize so every node is in the current buckets
+		migrateBuckets(Integer.MAX_VALUE);
+		bloomFilter = buildBloomFilter();
 	}
 	
 	/** @return  the number of keys in the hash table */
@@ -263,56 +658,887 @@ public class HashTable<K extends Comparable<K>, V> implements HashTableADT<K, V>
 		return size;
 	}
 	
+	//The counters behind stats(), each read on its own in O(1). HashTableMonitor
+	//uses these so that a JMX refresh only walks the buckets for the histogram
+	int bucketCount() {
+		return numBuckets;
+	}
+	
+	int maxProbeLength() {
+		return maxProbeLength;
+	}
+	
+	int resizeCount() {
+		return resizeCount;
+	}
+	
+	long resizeNanos() {
+		return resizeNanos;
+	}
+	
+	long lookupCount() {
+		return lookups;
+	}
+	
+	long lookupProbes() {
+		return lookupProbes;
+	}
+	
+	/** Takes a snapshot of the table's statistics. The counters are kept as the
+	 * table is used; the bucket size histogram is computed now, so this call
+	 * walks every bucket.
+	 * @return the statistics as of this call */
+	public HashTableStats stats() {
+		long[] histogram = new long[HashTableStats.HISTOGRAM_SIZE];
+		ArrayList<Node<K,V>> current = buckets;
+		for (int i = 0; i < current.size(); i++) {
+			addToHistogram(histogram, current.get(i));
+		}
+		ArrayList<Node<K,V>> old = oldBuckets;
+		if (old != null) {
+			//buckets an incremental resize has not moved yet
+			for (int i = migrateIndex; i < old.size(); i++) {
+				addToHistogram(histogram, old.get(i));
+			}
+		}
+		
+		return new HashTableStats(size, numBuckets, histogram, maxProbeLength, resizeCount,
+				resizeNanos, lookups, lookupProbes);
+	}
+	
+	/** Sets the lookup and resize counters back to zero */
+	public void resetStats() {
+		lookups = 0;
+		lookupProbes = 0;
+		maxProbeLength = 0;
+		resizeCount = 0;
+		resizeNanos = 0;
+	}
+	
+	/** insert every entry of map into the hash table, as putAll(map.entrySet())
+	 * throw IllegalArgumentException if any key is null
+	 */
+	public void putAll(Map<? extends K, ? extends V> map) throws IllegalArgumentException {
+		putAll(map.entrySet());
+	}
+	
+	/** insert every entry of the stream into the hash table, as putAll of a list
+	 * of its entries
+	 * throw IllegalArgumentException if any key is null
+	 */
+	public void putAll(Stream<? extends Map.Entry<? extends K, ? extends V>> entries)
+			throws IllegalArgumentException {
+		putAll(entries.collect(Collectors.toList()));
+	}
+	
+	/** insert every entry into the hash table. The result is the same as calling
+	 * put for each entry in order, so if a key appears more than once its last
+	 * value is kept. The table is grown once to fit every entry, and large loads
+	 * fill separate ranges of buckets in parallel.
+	 * 
+	 * throw IllegalArgumentException if any key is null, in which case nothing
+	 * is inserted
+	 */
+	public void putAll(Collection<? extends Map.Entry<? extends K, ? extends V>> entries)
+			throws IllegalArgumentException {
+		int count = entries.size();
+		Object[] keys = new Object[count];
+		Object[] values = new Object[count];
+		int n = 0;
+		for (Map.Entry<? extends K, ? extends V> entry : entries) {
+			if (entry.getKey() == null) {
+				throw new IllegalArgumentException("Cannot insert a null key");
+			}
+			keys[n] = entry.getKey();
+			values[n] = entry.getValue();
+			n++;
+		}
+		if (n < PARALLEL_LOAD_THRESHOLD) {
+			for (int i = 0; i < n; i++) {
+				put(key(keys[i]), value(values[i]));
+			}
+			return;
+		}
+		
+		//finish any incremental resize, then grow once to hold every entry
+		migrateBuckets(Integer.MAX_VALUE);
+		long needed = (long) Math.floor((size + (long) n) / loadFactor) + 1;
+		if (needed > numBuckets) {
+			resize(capacityStrategy.initialBuckets((int) Math.min(needed, Integer.MAX_VALUE)));
+		}
+		
+		//hash every key in parallel
+		int[] hashes = new int[n];
+		Arrays.parallelSetAll(hashes, i -> hash(keys[i]));
+		
+		//group the entries by range of buckets, keeping their order within a range
+		int numRanges = Math.min(ForkJoinPool.getCommonPoolParallelism() * 4, numBuckets);
+		int[] rangeStart = new int[numRanges + 1];
+		int[] rangeOf = new int[n];
+		for (int i = 0; i < n; i++) {
+			rangeOf[i] = (int) ((long) getIndex(hashes[i]) * numRanges / numBuckets);
+			rangeStart[rangeOf[i] + 1]++;
+		}
+		for (int r = 0; r < numRanges; r++) {
+			rangeStart[r + 1] += rangeStart[r];
+		}
+		int[] order = new int[n];
+		int[] next = Arrays.copyOf(rangeStart, numRanges);
+		for (int i = 0; i < n; i++) {
+			order[next[rangeOf[i]]++] = i;
+		}
+		
+		//bucket searches from several threads would race on the lookup counter,
+		//and bulk loading is not a lookup anyway
+		long savedProbes = probes;
+		BulkLoadTask task = new BulkLoadTask(keys, values, hashes, order, rangeStart, 0, numRanges);
+		ForkJoinPool.commonPool().invoke(task);
+		probes = savedProbes;
+		
+		size += task.added;
+		modCount++;
+		if (bloomFilter != null) {
+			bloomFilter = buildBloomFilter();
+		}
+	}
+	
+	/** @return a stream of every key in the table. Call parallel() on it to
+	 * split the work by range of buckets */
+	public Stream<K> keys() {
+		return StreamSupport.stream(spliterator(node -> node.key,
+				Spliterator.DISTINCT | Spliterator.NONNULL), false);
+	}
+	
+	/** @return a stream of every value in the table, which may include nulls */
+	public Stream<V> values() {
+		return StreamSupport.stream(spliterator(node -> node.value, 0), false);
+	}
+	
+	/** @return a stream of every entry in the table. setValue on an entry
+	 * changes the value stored in the table */
+	public Stream<Map.Entry<K,V>> entries() {
+		return StreamSupport.stream(spliterator(node -> node,
+				Spliterator.DISTINCT | Spliterator.NONNULL), false);
+	}
+	
+	/** Copies the table into a FrozenHashTable: an immutable table where each
+	 * lookup reads exactly one slot. Later changes to this table do not affect it
+	 * @return the frozen copy */
+	public FrozenHashTable<K,V> freeze() {
+		return new FrozenHashTable<K,V>(entries().collect(Collectors.toList()));
+	}
+	
+	/** Writes every entry to out, in bucket order, for readFrom to load. The stream
+	 * is flushed but not closed. The snapshot holds, after a header giving the load
+	 * factor, capacity strategy, number of buckets and size, each entry's stored hash
+	 * followed by its key and value as length prefixed bytes (length -1 for a null
+	 * value). These entry bytes, compressed or not, are cut into blocks of up to
+	 * 64 KiB, each after its length, and an empty block ends the snapshot
+	 * @param keyCodec encodes keys
+	 * @param valueCodec encodes values
+	 * @param compress true to deflate compress the entries
+	 * throw IOException if out cannot be written */
+	public void writeTo(OutputStream out, Codec<K> keyCodec, Codec<V> valueCodec, boolean compress)
+			throws IOException {
+		//every node must be in the current buckets so the saved bucket count fits them
+		migrateBuckets(Integer.MAX_VALUE);
+		
+		DataOutputStream header = new DataOutputStream(out);
+		header.writeInt(SNAPSHOT_MAGIC);
+		header.writeByte(compress ? SNAPSHOT_COMPRESSED : 0);
+		header.writeByte(capacityStrategy == CapacityStrategy.POWER_OF_TWO ? 1 : 0);
+		header.writeDouble(loadFactor);
+		header.writeInt(numBuckets);
+		header.writeInt(size);
+		header.flush();
+		
+		BlockOutputStream blocks = new BlockOutputStream(out);
+		Deflater deflater = compress ? new Deflater(Deflater.BEST_SPEED) : null;
+		DeflaterOutputStream deflated = compress ? new DeflaterOutputStream(blocks, deflater, 1 << 16) : null;
+		OutputStream body = compress ? deflated : blocks;
+		DataOutputStream data = new DataOutputStream(new BufferedOutputStream(body, 1 << 16));
+		for (int i = 0; i < numBuckets; i++) {
+			for (Node<K,V> node = firstNode(buckets.get(i)); node != null; node = node.next) {
+				data.writeInt(node.hash);
+				byte[] key = keyCodec.encode(node.key);
+				data.writeInt(key.length);
+				data.write(key);
+				if (node.value == null) {
+					data.writeInt(-1);
+				}
+				else {
+					byte[] value = valueCodec.encode(node.value);
+					data.writeInt(value.length);
+					data.write(value);
+				}
+			}
+		}
+		data.flush();
+		if (compress) {
+			deflated.finish();
+			deflater.end();
+		}
+		blocks.finish();
+		out.flush();
+	}
+	
+	/** Loads a table saved by writeTo. The table gets the saved number of buckets
+	 * and each entry goes straight into its bucket using its saved hash, so nothing
+	 * is resized, rehashed or compared. A table saved with a capacity strategy other
+	 * than PRIME or POWER_OF_TWO is loaded with PRIME. Reads exactly to the end of
+	 * the snapshot, so anything written after it is still in the stream
+	 * @param keyCodec decodes keys, the same as the one given to writeTo
+	 * @param valueCodec decodes values, the same as the one given to writeTo
+	 * @return the loaded table
+	 * throw IOException if in cannot be read or does not hold a snapshot */
+	public static <K extends Comparable<K>, V> HashTable<K,V> readFrom(InputStream in,
+			Codec<K> keyCodec, Codec<V> valueCodec) throws IOException {
+		DataInputStream header = new DataInputStream(in);
+		if (header.readInt() != SNAPSHOT_MAGIC) {
+			throw new IOException("Not a HashTable snapshot");
+		}
+		boolean compressed = (header.readByte() & SNAPSHOT_COMPRESSED) != 0;
+		CapacityStrategy capacityStrategy = (header.readByte() == 1)
+				? CapacityStrategy.POWER_OF_TWO : CapacityStrategy.PRIME;
+		double loadFactor = header.readDouble();
+		int numBuckets = header.readInt();
+		int size = header.readInt();
+		if (numBuckets < 1 || size < 0) {
+			throw new IOException("Corrupt HashTable snapshot header");
+		}
+		
+		HashTable<K,V> table = new HashTable<>(numBuckets, loadFactor, false, capacityStrategy);
+		BlockInputStream blocks = new BlockInputStream(in);
+		InputStream body = compressed ? new InflaterInputStream(blocks) : blocks;
+		table.load(new DataInputStream(new BufferedInputStream(body, 1 << 16)), size, keyCodec, valueCodec);
+		
+		//step over whatever the buffers above did not need, such as the end of the
+		//deflate stream, up to the empty block
+		blocks.skipToEnd();
+		return table;
+	}
+	
 	//
 	// Start of helper methods
 	//
 	
-	/** Hashing algorithm: use the java hashCode function on the key,
-	 *  then take the modulo of this value with the number of buckets and 
-	 *  return the positive version of this value
-	 * @return the hash index */
-	private int getIndex(K key) {
+	/** First half of the hashing algorithm: use the java hashCode function on the
+	 *  key and fold the high bits into the low bits, so keys whose hash codes only
+	 *  differ in the high bits still land in different buckets
+	 * @return the spread hash stored in the key's node */
+	private static int hash(Object key) {
 		int hashCode = key.hashCode();
-		int hashIndex = hashCode % numBuckets;
-		return Math.abs(hashIndex);
+		return hashCode ^ (hashCode >>> 16);
+	}
+	
+	/** Second half of the hashing algorithm: let the capacity strategy map the hash
+	 *  onto the current number of buckets
+	 * @return the hash index */
+	private int getIndex(int hash) {
+		return getIndex(hash, numBuckets);
 	}
 	
-	/** Takes in an int and returns the next prime. Uses a helper method isPrime
-	 * @return the next prime number as an int */
-	private static int nextPrime(int inputValue) {
-		if (isPrime(inputValue)) {
-			//if this is already prime, return as is
-			return inputValue;
+	/** Same hashing algorithm as getIndex(hash), for a bucket array of the given size.
+	 *  Used to find a key in the old buckets during an incremental resize
+	 * @return the hash index */
+	private int getIndex(int hash, int bucketCount) {
+		return capacityStrategy.index(hash, bucketCount);
+	}
+	
+	/** Moves an incremental resize along, then finds the node holding key
+	 * @return the node holding key, or null if the key does not exist */
+	private Node<K,V> lookup(K key) {
+		//move part of an unfinished incremental resize along first
+		migrateBuckets(MIGRATE_STEP);
+		
+		long probesBefore = probes;
+		Node<K,V> node = findNode(hash(key), key);
+		int probeLength = (int) (probes - probesBefore);
+		lookups++;
+		lookupProbes += probeLength;
+		if (probeLength > maxProbeLength) {
+			maxProbeLength = probeLength;
 		}
-		else {
-			//recursive method to find next prime, incrementing by one
-			return nextPrime(inputValue+1);
+		return node;
+	}
+	
+	/** Finds the node holding key in the current buckets, or in an old bucket that
+	 *  an incremental resize has not moved yet. The Bloom filter, if enabled, is
+	 *  checked first so most missing keys never reach a bucket
+	 * @return the node holding key, or null if the key does not exist */
+	private Node<K,V> findNode(int hash, K key) {
+		if (bloomFilter != null && !bloomFilter.mightContain(hash)) {
+			return null;
 		}
+		
+		Node<K,V> node = findInBucket(buckets, getIndex(hash), hash, key);
+		if (node != null) {
+			return node;
+		}
+		
+		//check any bucket that has not been moved by an incremental resize yet
+		return findInOldBuckets(hash, key);
 	}
-
-	/** method to determine if a number is prime or not
-	 * @return true if prime, else false  */
-	private static boolean isPrime(int inputValue) {
-		for (int i = 2; i < inputValue/2; i++) {
-			//try dividing the input value by everything between 2 and half it's value
-			//if any succeed (meaning inputValue % i == 0) the value is not prime
-			if (inputValue % i == 0) {
+	
+	/** Looks for key in the bucket at hashIndex, which may be a chain or a tree
+	 * @return the node holding key, or null if the key is not in the bucket */
+	private Node<K,V> findInBucket(ArrayList<Node<K,V>> bucketList, int hashIndex, int hash, K key) {
+		Node<K,V> head = bucketList.get(hashIndex);
+		
+		if (head instanceof HashTable.TreeBucket) {
+			return ((TreeBucket) head).find(hash, key);
+		}
+		
+		while (head != null) {
+			probes++;
+			//only call equals when the stored hash already matches
+			if (head.hash == hash && head.key.equals(key)) {
+				return head;
+			}
+			head = head.next;
+		}
+		return null;
+	}
+	
+	/** Adds a node whose key is known not to be in the bucket at hashIndex. A chain
+	 *  that reaches TREEIFY_THRESHOLD nodes is converted to a TreeBucket */
+	private void addToBucket(ArrayList<Node<K,V>> bucketList, int hashIndex, Node<K,V> node) {
+		Node<K,V> head = bucketList.get(hashIndex);
+		
+		if (head instanceof HashTable.TreeBucket) {
+			((TreeBucket) head).insert(new TreeNode(node.hash, node.key, node.value));
+			return;
+		}
+		
+		//add the node to the front of the list at this bucket
+		node.next = head;
+		bucketList.set(hashIndex, node);
+		
+		int chainLength = 0;
+		for (Node<K,V> current = node; current != null; current = current.next) {
+			chainLength++;
+		}
+		if (chainLength >= TREEIFY_THRESHOLD) {
+			TreeBucket tree = new TreeBucket();
+			for (Node<K,V> current = node; current != null; current = current.next) {
+				tree.insert(new TreeNode(current.hash, current.key, current.value));
+			}
+			bucketList.set(hashIndex, tree);
+		}
+	}
+	
+	/** A bucket holds either a chain or a TreeBucket, whose nodes are also linked
+	 *  through next. Either way this gives the start of a list of every node in it
+	 * @return the first node of the bucket, or null if it is empty */
+	private Node<K,V> firstNode(Node<K,V> head) {
+		if (head instanceof HashTable.TreeBucket) {
+			return ((TreeBucket) head).first;
+		}
+		return head;
+	}
+	
+	/** Unlinks the node holding key from the chain at the given bucket
+	 * @return true if a node was removed, false if the key was not in the bucket */
+	private boolean removeFromBucket(ArrayList<Node<K,V>> bucketList, int hashIndex, int hash, K key) {
+		Node<K,V> head = bucketList.get(hashIndex);
+		
+		if (head instanceof HashTable.TreeBucket) {
+			TreeBucket tree = (TreeBucket) head;
+			if (!tree.remove(hash, key)) {
 				return false;
 			}
+			if (tree.count <= UNTREEIFY_THRESHOLD) {
+				//small enough to go back to a plain list
+				bucketList.set(hashIndex, tree.toChain());
+			}
+			return true;
+		}
+		
+		//handle the case where the head is our key and we just need to update the head
+		if (head != null && head.hash == hash && head.key.equals(key)) {
+			bucketList.set(hashIndex, head.next);
+			return true;
+		}
+		
+		//handle all other cases
+		while (head != null && head.next != null) {
+			if (head.next.hash == hash && head.next.key.equals(key)){
+				//update head.next to point to the value after the key
+				head.next = head.next.next;
+				return true;
+			}
+			head = head.next;
+		}
+		return false;
+	}
+	
+	/** Rebuilds the table with about twice as many buckets in one step */
+	private void resize() {
+		resize(capacityStrategy.grow(numBuckets));
+	}
+	
+	/** Rebuilds the table with the given number of buckets in one step */
+	private void resize(int newBucketCount) {
+		long start = System.nanoTime();
+		resizeCount++;
+		
+		//we need to update our array/bucket size
+		ArrayList<Node<K,V>> temp = buckets; //house old array
+		numBuckets = newBucketCount; //update the number of buckets
+		buckets = new ArrayList<>(numBuckets); //create new bucket array
+		//setup our new array to be empty at the start
+		for (int i = 0; i < numBuckets; i++) {
+			buckets.add(null);
+		}
+		
+		//transfer the nodes. Each node is relinked into its new bucket using the
+		//hash it already stores, so no key is hashed or compared again
+		for (int i = 0; i < temp.size(); i++) {
+			Node<K,V> head2 = firstNode(temp.get(i));
+			while (head2 != null) {
+				Node<K,V> next = head2.next;
+				addToBucket(buckets, getIndex(head2.hash), head2);
+				head2 = next;
+			} //end while
+		} //end for
+		
+		if (bloomFilter != null) {
+			//resize the filter along with the table
+			bloomFilter = buildBloomFilter();
+		}
+		resizeNanos += System.nanoTime() - start;
+	}
+	
+	/** Fills an empty table from the entries of a snapshot, placing each one with
+	 *  its saved hash */
+	private void load(DataInputStream data, int size, Codec<K> keyCodec, Codec<V> valueCodec)
+			throws IOException {
+		byte[] buffer = new byte[64];
+		for (int i = 0; i < size; i++) {
+			int hash = data.readInt();
+			int keyLength = data.readInt();
+			buffer = readFully(data, buffer, keyLength);
+			K key = keyCodec.decode(buffer, 0, keyLength);
+			int valueLength = data.readInt();
+			V value = null;
+			if (valueLength >= 0) {
+				buffer = readFully(data, buffer, valueLength);
+				value = valueCodec.decode(buffer, 0, valueLength);
+			}
+			addToBucket(buckets, getIndex(hash), new Node<K,V>(hash, key, value));
+		}
+		this.size = size;
+		modCount++;
+	}
+	
+	/** Reads length bytes into buffer, first replacing it with a larger one if needed
+	 * @return the buffer holding the bytes */
+	private static byte[] readFully(DataInputStream in, byte[] buffer, int length) throws IOException {
+		if (length < 0) {
+			throw new IOException("Corrupt HashTable snapshot entry");
 		}
-		return true;
+		if (length > buffer.length) {
+			buffer = new byte[Math.max(length, buffer.length * 2)];
+		}
+		in.readFully(buffer, 0, length);
+		return buffer;
+	}
+	
+	@SuppressWarnings("unchecked")
+	private K key(Object key) {
+		return (K) key;
+	}
+	
+	@SuppressWarnings("unchecked")
+	private V value(Object value) {
+		return (V) value;
+	}
+	
+	/** Fills the buckets for a run of bucket ranges during putAll. Each range is
+	 *  only ever touched by one task, so the buckets need no locking. Joining the
+	 *  tasks makes their writes visible to the thread that called putAll */
+	private class BulkLoadTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		
+		private final Object[] keys, values;	//entries being loaded
+		private final int[] hashes;				//hash of each key
+		private final int[] order;				//entry numbers grouped by range
+		private final int[] rangeStart;			//where each range starts in order
+		private final int fromRange, toRange;	//ranges this task fills
+		int added;								//new keys inserted by this task
+		
+		BulkLoadTask(Object[] keys, Object[] values, int[] hashes, int[] order,
+				int[] rangeStart, int fromRange, int toRange) {
+			this.keys = keys;
+			this.values = values;
+			this.hashes = hashes;
+			this.order = order;
+			this.rangeStart = rangeStart;
+			this.fromRange = fromRange;
+			this.toRange = toRange;
+		}
+		
+		@Override
+		protected void compute() {
+			if (toRange - fromRange > 1) {
+				int middle = (fromRange + toRange) >>> 1;
+				BulkLoadTask left = new BulkLoadTask(keys, values, hashes, order, rangeStart, fromRange, middle);
+				BulkLoadTask right = new BulkLoadTask(keys, values, hashes, order, rangeStart, middle, toRange);
+				invokeAll(left, right);
+				added = left.added + right.added;
+				return;
+			}
+			
+			for (int j = rangeStart[fromRange]; j < rangeStart[toRange]; j++) {
+				int i = order[j];
+				int hashIndex = getIndex(hashes[i]);
+				Node<K,V> existing = findInBucket(buckets, hashIndex, hashes[i], key(keys[i]));
+				if (existing != null) {
+					existing.value = value(values[i]);
+				}
+				else {
+					addToBucket(buckets, hashIndex, new Node<K,V>(hashes[i], key(keys[i]), value(values[i])));
+					added++;
+				}
+			}
+		}
+	}
+	
+	/** Finishes any incremental resize, so every node is in the current buckets,
+	 *  then creates a spliterator over all of them
+	 * @return the spliterator */
+	private <T> Spliterator<T> spliterator(Function<Node<K,V>, T> extract, int characteristics) {
+		migrateBuckets(Integer.MAX_VALUE);
+		return new BucketSpliterator<T>(buckets, 0, buckets.size(), size, true, extract,
+				characteristics);
+	}
+	
+	/** Cuts what is written to it into blocks of up to SNAPSHOT_BLOCK_SIZE bytes,
+	 *  each written to out after its length. finish writes the empty block that
+	 *  marks the end */
+	private static class BlockOutputStream extends OutputStream {
+		private final DataOutputStream out;		//stream the blocks go to
+		private final byte[] block = new byte[SNAPSHOT_BLOCK_SIZE];
+		private int length;						//bytes waiting in block
+		
+		BlockOutputStream(OutputStream out) {
+			this.out = new DataOutputStream(out);
+		}
+		
+		@Override
+		public void write(int b) throws IOException {
+			if (length == block.length) {
+				writeBlock();
+			}
+			block[length++] = (byte) b;
+		}
+		
+		@Override
+		public void write(byte[] bytes, int offset, int count) throws IOException {
+			while (count > 0) {
+				if (length == block.length) {
+					writeBlock();
+				}
+				int n = Math.min(count, block.length - length);
+				System.arraycopy(bytes, offset, block, length, n);
+				length += n;
+				offset += n;
+				count -= n;
+			}
+		}
+		
+		/** Writes any waiting bytes and the empty block. Does not close out */
+		void finish() throws IOException {
+			if (length > 0) {
+				writeBlock();
+			}
+			out.writeInt(0);
+			out.flush();
+		}
+		
+		private void writeBlock() throws IOException {
+			out.writeInt(length);
+			out.write(block, 0, length);
+			length = 0;
+		}
+	}
+	
+	/** Reads the blocks written by a BlockOutputStream as one stream, which ends at
+	 *  the empty block. Never reads from in past that block */
+	private static class BlockInputStream extends InputStream {
+		private final DataInputStream in;		//stream the blocks come from
+		private int remaining;					//bytes left in the current block
+		private boolean ended;					//true once the empty block is read
+		
+		BlockInputStream(InputStream in) {
+			this.in = new DataInputStream(in);
+		}
+		
+		@Override
+		public int read() throws IOException {
+			if (!nextBlock()) {
+				return -1;
+			}
+			int b = in.read();
+			if (b < 0) {
+				throw new IOException("HashTable snapshot ends in the middle of a block");
+			}
+			remaining--;
+			return b;
+		}
+		
+		@Override
+		public int read(byte[] bytes, int offset, int count) throws IOException {
+			if (count == 0) {
+				return 0;
+			}
+			if (!nextBlock()) {
+				return -1;
+			}
+			int n = in.read(bytes, offset, Math.min(count, remaining));
+			if (n < 0) {
+				throw new IOException("HashTable snapshot ends in the middle of a block");
+			}
+			remaining -= n;
+			return n;
+		}
+		
+		/** Reads and discards everything up to and including the empty block */
+		void skipToEnd() throws IOException {
+			while (nextBlock()) {
+				int skipped = in.skipBytes(remaining);
+				if (skipped == 0) {
+					throw new IOException("HashTable snapshot ends in the middle of a block");
+				}
+				remaining -= skipped;
+			}
+		}
+		
+		/** Moves on to the next block if the current one is used up
+		 * @return false once the empty block has been read */
+		private boolean nextBlock() throws IOException {
+			while (remaining == 0 && !ended) {
+				int length = in.readInt();
+				if (length < 0 || length > SNAPSHOT_BLOCK_SIZE) {
+					throw new IOException("Corrupt HashTable snapshot block");
+				}
+				remaining = length;
+				ended = (length == 0);
+			}
+			return !ended;
+		}
+	}
+	
+	/** Walks a range of buckets, handing each node to extract. trySplit gives away
+	 *  the first half of the remaining buckets, so a parallel stream divides the
+	 *  table without copying it. Throws ConcurrentModificationException if keys are
+	 *  added or removed while it runs */
+	private class BucketSpliterator<T> implements Spliterator<T> {
+		private final ArrayList<Node<K,V>> bucketList;	//buckets being walked
+		private int index;								//next bucket to start
+		private final int fence;						//one past the last bucket
+		private long estimate;							//about how many nodes are left
+		private boolean exact;							//true while estimate is exact
+		private final Function<Node<K,V>, T> extract;	//turns a node into an element
+		private final int characteristics;
+		private final int expectedModCount;
+		private Node<K,V> current;						//next node in the current bucket
+		
+		BucketSpliterator(ArrayList<Node<K,V>> bucketList, int index, int fence, long estimate,
+				boolean exact, Function<Node<K,V>, T> extract, int characteristics) {
+			this.bucketList = bucketList;
+			this.index = index;
+			this.fence = fence;
+			this.estimate = estimate;
+			this.exact = exact;
+			this.extract = extract;
+			this.characteristics = characteristics;
+			this.expectedModCount = modCount;
+		}
+		
+		@Override
+		public boolean tryAdvance(Consumer<? super T> action) {
+			while (current == null && index < fence) {
+				current = firstNode(bucketList.get(index++));
+			}
+			if (current == null) {
+				return false;
+			}
+			Node<K,V> node = current;
+			current = current.next;
+			action.accept(extract.apply(node));
+			checkForChanges();
+			return true;
+		}
+		
+		@Override
+		public void forEachRemaining(Consumer<? super T> action) {
+			for (Node<K,V> node = current; node != null; node = node.next) {
+				action.accept(extract.apply(node));
+			}
+			current = null;
+			for (; index < fence; index++) {
+				for (Node<K,V> node = firstNode(bucketList.get(index)); node != null; node = node.next) {
+					action.accept(extract.apply(node));
+				}
+			}
+			checkForChanges();
+		}
+		
+		@Override
+		public Spliterator<T> trySplit() {
+			int middle = (index + fence) >>> 1;
+			if (middle <= index) {
+				return null;
+			}
+			estimate >>>= 1;
+			exact = false;
+			BucketSpliterator<T> prefix = new BucketSpliterator<T>(bucketList, index, middle,
+					estimate, false, extract, characteristics);
+			index = middle;
+			return prefix;
+		}
+		
+		@Override
+		public long estimateSize() {
+			return estimate;
+		}
+		
+		@Override
+		public int characteristics() {
+			return characteristics | (exact ? Spliterator.SIZED : 0);
+		}
+		
+		private void checkForChanges() {
+			if (modCount != expectedModCount) {
+				throw new ConcurrentModificationException();
+			}
+		}
+	}
+	
+	/** Builds a Bloom filter holding the hash of every node in the current
+	 *  buckets, with room for as many entries as the table can hold before its
+	 *  next resize
+	 * @return the new filter */
+	private CountingBloomFilter buildBloomFilter() {
+		CountingBloomFilter filter = newBloomFilter();
+		for (int i = 0; i < buckets.size(); i++) {
+			for (Node<K,V> node = firstNode(buckets.get(i)); node != null; node = node.next) {
+				filter.add(node.hash);
+			}
+		}
+		return filter;
+	}
+	
+	/** @return an empty Bloom filter sized for the current number of buckets */
+	private CountingBloomFilter newBloomFilter() {
+		int capacity = Math.max(size, (int) (numBuckets * loadFactor)) + 1;
+		return new CountingBloomFilter(capacity, bloomFalsePositiveRate);
+	}
+	
+	/** Allocates the larger bucket array and keeps the current one as oldBuckets.
+	 *  The entries are moved across later by migrateBuckets */
+	private void startIncrementalResize() {
+		//a new resize cannot start until the previous one has moved everything
+		migrateBuckets(Integer.MAX_VALUE);
+		
+		long start = System.nanoTime();
+		resizeCount++;
+		oldBuckets = buckets;
+		migrateIndex = 0;
+		numBuckets = capacityStrategy.grow(numBuckets);
+		buckets = new ArrayList<>(numBuckets);
+		for (int i = 0; i < numBuckets; i++) {
+			buckets.add(null);
+		}
+		
+		if (bloomFilter != null) {
+			//fill a filter for the larger table as nodes are moved across. Lookups
+			//keep using the old filter, which still holds every key, until then
+			nextBloomFilter = newBloomFilter();
+		}
+		resizeNanos += System.nanoTime() - start;
+	}
+	
+	/** Moves up to maxBuckets of the old buckets into the current bucket array.
+	 *  Nodes are relinked rather than copied, so size does not change */
+	private void migrateBuckets(int maxBuckets) {
+		if (oldBuckets == null) {
+			return;
+		}
+		
+		long start = System.nanoTime();
+		int end = (int) Math.min((long) migrateIndex + maxBuckets, oldBuckets.size());
+		for (; migrateIndex < end; migrateIndex++) {
+			Node<K,V> head = firstNode(oldBuckets.get(migrateIndex));
+			while (head != null) {
+				Node<K,V> next = head.next;
+				addToBucket(buckets, getIndex(head.hash), head);
+				if (nextBloomFilter != null) {
+					nextBloomFilter.add(head.hash);
+				}
+				head = next;
+			}
+			oldBuckets.set(migrateIndex, null);
+		}
+		
+		if (migrateIndex == oldBuckets.size()) {
+			//everything has been moved, release the old array
+			oldBuckets = null;
+			migrateIndex = 0;
+			if (nextBloomFilter != null) {
+				bloomFilter = nextBloomFilter;
+				nextBloomFilter = null;
+			}
+		}
+		resizeNanos += System.nanoTime() - start;
+	}
+	
+	/** Looks for key in the old bucket array of an unfinished incremental resize
+	 * @return the node holding key, or null if it is not in an old bucket */
+	private Node<K,V> findInOldBuckets(int hash, K key) {
+		if (oldBuckets == null) {
+			return null;
+		}
+		
+		int oldIndex = getIndex(hash, oldBuckets.size());
+		if (oldIndex < migrateIndex) {
+			//this bucket has already been moved
+			return null;
+		}
+		
+		return findInBucket(oldBuckets, oldIndex, hash, key);
+	}
+	
+	/** Adds one bucket to a histogram of bucket sizes. The last slot of the
+	 *  histogram counts every bucket at least that large */
+	private void addToHistogram(long[] histogram, Node<K,V> head) {
+		int length;
+		if (head instanceof HashTable.TreeBucket) {
+			length = ((TreeBucket) head).count;
+		}
+		else {
+			length = 0;
+			for (Node<K,V> node = head; node != null; node = node.next) {
+				length++;
+			}
+		}
+		histogram[Math.min(length, histogram.length - 1)]++;
 	}
 	
 	/** Prints out the array of buckets and a comma delimited 
 	 * list of the values in each bucket
 	 * @return  nothing. prints to screen*/
 	private void printBuckets() {
+		//show the final layout rather than a half moved incremental resize
+		migrateBuckets(Integer.MAX_VALUE);
+		
 		if (buckets.size() == 0) {
 			return;
 		}
 		
 		for (int i = 0; i < buckets.size(); i++) {
-			Node<K,V> head = buckets.get(i);
+			Node<K,V> head = firstNode(buckets.get(i));
 			System.out.print("Bucket at index " + i + ": ");
 			while (head != null) {
 				System.out.print(head.value + " , ");
@@ -325,10 +1551,6 @@ public class HashTable<K extends Comparable<K>, V> implements HashTableADT<K, V>
 	
 	//This is just used for testing
 	public static void main(String args[]) {
-		//System.out.println("Testing nextPrime");
-		//System.out.println("Using input of 16");
-		//System.out.println(nextPrime(16));
-		
 		HashTable<String, Integer> map = new HashTable<>(3, 0.75); 
         map.put("this",1 ); 
         map.put("coder",2 ); 
@@ -394,6 +1616,58 @@ public class HashTable<K extends Comparable<K>, V> implements HashTableADT<K, V>
         map2.remove(8000);
         System.out.println("Hash table size = " + map2.size()); 
         map2.printBuckets();
+        
+        System.out.println();
+        System.out.println("--------------------------------------------");
+        System.out.println("Testing stats:");
+        System.out.println("--------------------------------------------");
+        map.get("kelly");
+        map.getOrDefault("nobody", -1);
+        System.out.println(map.stats());
+        
+        System.out.println();
+        System.out.println("--------------------------------------------");
+        System.out.println("Testing presized:");
+        System.out.println("--------------------------------------------");
+        HashTable<Integer, Integer> map3 = presized(100000, 0.75, CapacityStrategy.POWER_OF_TWO);
+        for (int i = 0; i < 100000; i++) {
+        	map3.put(i, i);
+        }
+        System.out.println(map3.stats());
+        
+        System.out.println();
+        System.out.println("--------------------------------------------");
+        System.out.println("Testing putAll and streams:");
+        System.out.println("--------------------------------------------");
+        HashTable<Integer, Integer> map4 = new HashTable<>();
+        map4.putAll(java.util.stream.IntStream.range(0, 100000).boxed()
+        		.map(i -> Map.entry(i, i * 2)));
+        System.out.println("Hash table size = " + map4.size()); 
+        System.out.println("Sum of keys = " + map4.keys().parallel().mapToLong(i -> i).sum());
+        System.out.println("Sum of values = " + map4.values().parallel().mapToLong(i -> i).sum());
+        System.out.println(map4.stats());
+        
+        System.out.println();
+        System.out.println("--------------------------------------------");
+        System.out.println("Testing writeTo and readFrom:");
+        System.out.println("--------------------------------------------");
+        try {
+        	for (boolean compress : new boolean[] { false, true }) {
+        		java.io.ByteArrayOutputStream bytes = new java.io.ByteArrayOutputStream();
+        		map.writeTo(bytes, Codec.STRING, Codec.INTEGER, compress);
+        		int snapshotSize = bytes.size();
+        		new DataOutputStream(bytes).writeInt(12345);	//data stored after the snapshot
+        		DataInputStream in = new DataInputStream(new java.io.ByteArrayInputStream(bytes.toByteArray()));
+        		HashTable<String, Integer> copy = readFrom(in, Codec.STRING, Codec.INTEGER);
+        		boolean same = copy.size() == map.size()
+        				&& map.entries().allMatch(e -> e.getValue().equals(copy.get(e.getKey())))
+        				&& in.readInt() == 12345;
+        		System.out.println((compress ? "Compressed" : "Plain") + " snapshot of "
+        				+ snapshotSize + " bytes reloaded " + (same ? "correctly" : "INCORRECTLY"));
+        	}
+        } catch (IOException e) {
+        	e.printStackTrace();
+        }
 	}
 		
 }
@@ -0,0 +1,364 @@
+/**
+ * Filename:   HashTableBenchmark.java
+ * Project:    p3
+ * Authors:    Kelly East
+ *
+ * Version:    1.0
+ *
+ * Credits:    Profile.java for the original insert and retrieve workload
+ * 			   Gray et al., "Quickly Generating Billion-Record Synthetic Databases"
+ * 			   (1994) for the Zipfian generator
+ *
+ * Bugs:       No known bugs
+ */
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.TreeMap;
+
+// Benchmark harness for choosing a hash table configuration. Profile only times one pass
+// of sequential integer keys; this runs warmed up, repeated measurements of HashTable,
+// SwissHashTable, java.util.HashMap and java.util.TreeMap over a grid of
+// 		key distributions - sequential, uniform random, Zipfian, long strings
+//		load factors and initial capacities
+//		hit ratios - the share of lookups that find their key
+// For every combination it reports lookups per second, latency percentiles and the
+// bytes allocated per lookup (measured with the JVM's per-thread allocation counter).
+//
+// Usage: java HashTableBenchmark [-n elements] [-q lookups] [-warmup iterations]
+//		[-iterations iterations] [-dist sequential,uniform,zipfian,string]
+//		[-lf 0.5,0.75,0.9] [-cap 16,<elements>] [-hit 1.0,0.5] [-seed seed]
+// Every list option is comma separated, and "n" in -cap stands for the number of elements.
+
+public class HashTableBenchmark {
+
+	/** How the keys to load and look up are chosen */
+	private enum KeyDistribution { SEQUENTIAL, UNIFORM, ZIPFIAN, STRING }
+
+	/** A map under test, so the java.util maps run the same loop as HashTable */
+	private interface Target<K> {
+		void put(K key, Integer value);
+		Integer get(K key);
+	}
+
+	/** Makes an empty map under test for a given capacity and load factor */
+	private interface TargetFactory {
+		<K extends Comparable<K>> Target<K> create(int initialCapacity, double loadFactor);
+	}
+
+	/** Keys to load, then lookups split into hits and misses */
+	private static class Workload<K> {
+		final K[] loadKeys;		//keys inserted before timing lookups
+		final K[] queryKeys;	//keys looked up while timing
+
+		Workload(K[] loadKeys, K[] queryKeys) {
+			this.loadKeys = loadKeys;
+			this.queryKeys = queryKeys;
+		}
+	}
+
+	//settings, changed by the command line
+	private static int numElements = 100000;
+	private static int numQueries = 1000000;
+	private static int warmupIterations = 3;
+	private static int measureIterations = 5;
+	private static long seed = 42;
+
+	//results of the lookups are stored here so the JIT cannot drop them as unused
+	private static volatile long blackhole;
+
+	//
+	// Workload generation
+	//
+
+	/** Builds the keys for one distribution and hit ratio.
+	 *  Misses are drawn from keys that were never loaded. */
+	private static <K> Workload<K> workload(KeyDistribution distribution, double hitRatio,
+			Class<K> keyType) {
+		Random random = new Random(seed);
+		K[] loadKeys = newArray(keyType, numElements);
+		Object[] missKeys = new Object[numElements];
+		HashSet<Object> loaded = new HashSet<>();
+
+		for (int i = 0; i < numElements; i++) {
+			Object key;
+			do {
+				key = newKey(distribution, random, i);
+			} while (!loaded.add(key));
+			loadKeys[i] = keyType.cast(key);
+		}
+		for (int i = 0; i < numElements; i++) {
+			Object key;
+			do {
+				key = newKey(distribution, random, numElements + i);
+			} while (loaded.contains(key));
+			missKeys[i] = key;
+		}
+
+		//hits follow the distribution's popularity: Zipfian hits favour a few keys
+		ZipfianGenerator zipf = (distribution == KeyDistribution.ZIPFIAN)
+				? new ZipfianGenerator(numElements, random) : null;
+		K[] queryKeys = newArray(keyType, numQueries);
+		for (int i = 0; i < numQueries; i++) {
+			if (random.nextDouble() < hitRatio) {
+				int rank = (zipf != null) ? zipf.next() : random.nextInt(numElements);
+				queryKeys[i] = loadKeys[rank];
+			}
+			else {
+				queryKeys[i] = keyType.cast(missKeys[random.nextInt(numElements)]);
+			}
+		}
+		return new Workload<K>(loadKeys, queryKeys);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <K> K[] newArray(Class<K> keyType, int length) {
+		return (K[]) java.lang.reflect.Array.newInstance(keyType, length);
+	}
+
+	/** @return the index-th key of a distribution. Sequential keys use the index,
+	 *  the others are random */
+	private static Object newKey(KeyDistribution distribution, Random random, int index) {
+		switch (distribution) {
+			case SEQUENTIAL:
+				return index;
+			case STRING:
+				//long keys sharing a prefix, so hashing and equals have to read all of it
+				return "customer/account/transactions/" + Long.toHexString(random.nextLong())
+						+ "/" + index;
+			default:
+				return random.nextInt();
+		}
+	}
+
+	/** Draws ranks 0 .. n-1 where rank i is picked in proportion to 1 / (i+1)^theta */
+	private static class ZipfianGenerator {
+		private static final double THETA = 0.99;
+
+		private final int items;
+		private final double alpha;
+		private final double zetan;
+		private final double eta;
+		private final Random random;
+
+		ZipfianGenerator(int items, Random random) {
+			this.items = items;
+			this.random = random;
+			double zeta2 = 1 + Math.pow(0.5, THETA);
+			double sum = 0;
+			for (int i = 1; i <= items; i++) {
+				sum += 1 / Math.pow(i, THETA);
+			}
+			zetan = sum;
+			alpha = 1 / (1 - THETA);
+			eta = (1 - Math.pow(2.0 / items, 1 - THETA)) / (1 - zeta2 / zetan);
+		}
+
+		int next() {
+			double u = random.nextDouble();
+			double uz = u * zetan;
+			if (uz < 1) {
+				return 0;
+			}
+			if (uz < 1 + Math.pow(0.5, THETA)) {
+				return 1;
+			}
+			int rank = (int) (items * Math.pow(eta * u - eta + 1, alpha));
+			return Math.min(rank, items - 1);
+		}
+	}
+
+	//
+	// Measurement
+	//
+
+	/** Loads a fresh map, then times the lookups. Prints one line of results. */
+	private static <K extends Comparable<K>> void measure(String name, TargetFactory factory,
+			Workload<K> workload, int initialCapacity, double loadFactor) {
+		K[] queries = workload.queryKeys;
+		long[] latencies = new long[queries.length];
+		double[] throughput = new double[measureIterations];
+		long allocated = 0;
+		long sink = 0;
+
+		Target<K> table = null;
+		for (int iteration = 0; iteration < warmupIterations + measureIterations; iteration++) {
+			table = factory.create(initialCapacity, loadFactor);
+			for (int i = 0; i < workload.loadKeys.length; i++) {
+				table.put(workload.loadKeys[i], i);
+			}
+
+			long allocatedBefore = allocatedBytes();
+			long start = System.nanoTime();
+			for (int i = 0; i < queries.length; i++) {
+				Integer value = table.get(queries[i]);
+				sink += (value == null) ? 1 : value;
+			}
+			long elapsed = System.nanoTime() - start;
+
+			if (iteration >= warmupIterations) {
+				throughput[iteration - warmupIterations] = queries.length * 1e9 / elapsed;
+				allocated += allocatedBytes() - allocatedBefore;
+			}
+		}
+
+		//one more pass timing each lookup on its own, kept out of the throughput figures
+		for (int i = 0; i < queries.length; i++) {
+			long opStart = System.nanoTime();
+			Integer value = table.get(queries[i]);
+			latencies[i] = System.nanoTime() - opStart;
+			sink += (value == null) ? 1 : value;
+		}
+		blackhole = sink;
+
+		Arrays.sort(latencies);
+		Arrays.sort(throughput);
+		double mean = Arrays.stream(throughput).average().orElse(0);
+		System.out.println(String.format("%-10s %12.0f %10.0f %7d %7d %7d %9.2f",
+				name, mean, (throughput[throughput.length - 1] - throughput[0]) / 2,
+				percentile(latencies, 0.50), percentile(latencies, 0.99),
+				percentile(latencies, 0.999),
+				(double) allocated / ((long) queries.length * measureIterations)));
+	}
+
+	/** @return the value at the given fraction of a sorted array */
+	private static long percentile(long[] sorted, double fraction) {
+		return sorted[Math.min(sorted.length - 1, (int) (sorted.length * fraction))];
+	}
+
+	/** @return bytes allocated by this thread so far, or 0 if the JVM cannot tell */
+	private static long allocatedBytes() {
+		java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (threads instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) threads)
+					.getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return 0;
+	}
+
+	//
+	// Maps under test
+	//
+
+	private static final TargetFactory HASH_TABLE = new TargetFactory() {
+		public <K extends Comparable<K>> Target<K> create(int initialCapacity, double loadFactor) {
+			final HashTable<K, Integer> table = new HashTable<K, Integer>(initialCapacity, loadFactor);
+			return new Target<K>() {
+				public void put(K key, Integer value) { table.put(key, value); }
+				public Integer get(K key) { return table.getOrDefault(key, null); }
+			};
+		}
+	};
+
+	private static final TargetFactory SWISS_TABLE = new TargetFactory() {
+		public <K extends Comparable<K>> Target<K> create(int initialCapacity, double loadFactor) {
+			final SwissHashTable<K, Integer> table = new SwissHashTable<K, Integer>(initialCapacity, loadFactor);
+			return new Target<K>() {
+				public void put(K key, Integer value) { table.put(key, value); }
+				public Integer get(K key) { return table.getOrDefault(key, null); }
+			};
+		}
+	};
+
+	private static final TargetFactory HASH_MAP = new TargetFactory() {
+		public <K extends Comparable<K>> Target<K> create(int initialCapacity, double loadFactor) {
+			final HashMap<K, Integer> map = new HashMap<K, Integer>(initialCapacity, (float) loadFactor);
+			return new Target<K>() {
+				public void put(K key, Integer value) { map.put(key, value); }
+				public Integer get(K key) { return map.get(key); }
+			};
+		}
+	};
+
+	private static final TargetFactory TREE_MAP = new TargetFactory() {
+		public <K extends Comparable<K>> Target<K> create(int initialCapacity, double loadFactor) {
+			final TreeMap<K, Integer> map = new TreeMap<K, Integer>();
+			return new Target<K>() {
+				public void put(K key, Integer value) { map.put(key, value); }
+				public Integer get(K key) { return map.get(key); }
+			};
+		}
+	};
+
+	//
+	// Command line
+	//
+
+	private static double[] parseDoubles(String list) {
+		return Arrays.stream(list.split(",")).mapToDouble(Double::parseDouble).toArray();
+	}
+
+	private static int[] parseCapacities(String list) {
+		return Arrays.stream(list.split(","))
+				.mapToInt(s -> s.equals("n") ? numElements : Integer.parseInt(s)).toArray();
+	}
+
+	/** main method used to run the benchmark
+	 */
+	public static void main(String[] args) {
+		String dists = "sequential,uniform,zipfian,string";
+		String loadFactors = "0.75";
+		String capacities = "16,n";
+		String hitRatios = "1.0,0.5";
+
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			String value = args[i + 1];
+			switch (args[i]) {
+				case "-n": numElements = Integer.parseInt(value); break;
+				case "-q": numQueries = Integer.parseInt(value); break;
+				case "-warmup": warmupIterations = Integer.parseInt(value); break;
+				case "-iterations": measureIterations = Math.max(1, Integer.parseInt(value)); break;
+				case "-dist": dists = value; break;
+				case "-lf": loadFactors = value; break;
+				case "-cap": capacities = value; break;
+				case "-hit": hitRatios = value; break;
+				case "-seed": seed = Long.parseLong(value); break;
+				default:
+					System.out.println("Unknown option " + args[i]);
+					System.exit(1);
+			}
+		}
+
+		ArrayList<KeyDistribution> distributions = new ArrayList<>();
+		for (String dist : dists.split(",")) {
+			distributions.add(KeyDistribution.valueOf(dist.trim().toUpperCase()));
+		}
+
+		System.out.println(String.format("%d elements, %d lookups, %d warmup + %d measured iterations",
+				numElements, numQueries, warmupIterations, measureIterations));
+		for (KeyDistribution distribution : distributions) {
+			for (double hitRatio : parseDoubles(hitRatios)) {
+				System.out.println();
+				System.out.println(String.format("%s keys, hit ratio %.2f", distribution, hitRatio));
+				if (distribution == KeyDistribution.STRING) {
+					measureAll(workload(distribution, hitRatio, String.class),
+							parseDoubles(loadFactors), parseCapacities(capacities));
+				}
+				else {
+					measureAll(workload(distribution, hitRatio, Integer.class),
+							parseDoubles(loadFactors), parseCapacities(capacities));
+				}
+			}
+		}
+	}
+
+	/** Measures every map over one workload, for each load factor and capacity */
+	private static <K extends Comparable<K>> void measureAll(Workload<K> workload,
+			double[] loadFactors, int[] capacities) {
+		System.out.println(String.format("%-10s %12s %10s %7s %7s %7s %9s",
+				"map", "ops/s", "+/-", "p50 ns", "p99 ns", "p999 ns", "B/op"));
+		for (double loadFactor : loadFactors) {
+			for (int capacity : capacities) {
+				System.out.println(String.format("lf=%.3f cap=%d", loadFactor, capacity));
+				measure("HashTable", HASH_TABLE, workload, capacity, loadFactor);
+				measure("SwissTable", SWISS_TABLE, workload, capacity, loadFactor);
+				measure("HashMap", HASH_MAP, workload, capacity, loadFactor);
+			}
+		}
+		measure("TreeMap", TREE_MAP, workload, 0, 0);
+	}
+}
@@ -0,0 +1,89 @@
+/**
+ * Filename:   HashTableMonitor.java
+ * Project:    p3
+ * Authors:    Kelly East
+ *
+ * Version:    1.0
+ *
+ * Bugs:       No known bugs
+ */
+
+import java.lang.management.ManagementFactory;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+// Publishes a HashTable's statistics through JMX. Registering a table is optional and
+// costs nothing until a JMX client reads an attribute. Every attribute but the
+// histogram reads one of the table's counters directly; only the histogram takes a
+// stats() snapshot, which walks every bucket.
+//
+// HashTable is not thread safe and the JMX client reads from its own thread, so the
+// histogram in particular may be taken while the table is changing. The figures are
+// meant for watching trends, not for exact accounting.
+
+public class HashTableMonitor implements HashTableStatsMXBean {
+
+	private final HashTable<?, ?> table;	//table being watched
+
+	public HashTableMonitor(HashTable<?, ?> table) {
+		this.table = table;
+	}
+
+	/** Registers a monitor for the table with the platform MBean server
+	 * @param name the name shown for the table, e.g. "sessions"
+	 * @return the object name it was registered under, for unregistering later
+	 * @throws JMException if the name is taken or invalid */
+	public static ObjectName register(HashTable<?, ?> table, String name) throws JMException {
+		ObjectName objectName = new ObjectName("hashTable:type=HashTable,name=" + ObjectName.quote(name));
+		ManagementFactory.getPlatformMBeanServer().registerMBean(new HashTableMonitor(table), objectName);
+		return objectName;
+	}
+
+	/** Removes a monitor added by register
+	 * @throws JMException if nothing is registered under the name */
+	public static void unregister(ObjectName objectName) throws JMException {
+		ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+	}
+
+	public int getSize() {
+		return table.size();
+	}
+
+	public int getBucketCount() {
+		return table.bucketCount();
+	}
+
+	public double getLoadFactor() {
+		int buckets = table.bucketCount();
+		return (buckets == 0) ? 0 : (double) table.size() / buckets;
+	}
+
+	public long[] getChainLengthHistogram() {
+		return table.stats().getChainLengthHistogram();
+	}
+
+	public int getMaxProbeLength() {
+		return table.maxProbeLength();
+	}
+
+	public int getResizeCount() {
+		return table.resizeCount();
+	}
+
+	public long getResizeNanos() {
+		return table.resizeNanos();
+	}
+
+	public long getLookupCount() {
+		return table.lookupCount();
+	}
+
+	public double getAverageComparisonsPerGet() {
+		long lookups = table.lookupCount();
+		return (lookups == 0) ? 0 : (double) table.lookupProbes() / lookups;
+	}
+
+	public void resetStats() {
+		table.resetStats();
+	}
+}
@@ -0,0 +1,38 @@
+/**
+ * Filename:   HashTableSizes.java
+ * Project:    p3
+ * Authors:    Kelly East
+ *
+ * Version:    1.0
+ *
+ * Credits:    none
+ *
+ * Bugs:       No known bugs
+ */
+
+
+// Sizing shared by the tables that keep a power of two number of slots or buckets, so
+// that a slot can be found with hash & (size - 1) instead of a division.
+
+final class HashTableSizes {
+
+	//largest power of two that fits in an int
+	static final int MAX_POWER_OF_TWO = 1 << 30;
+
+	private HashTableSizes() {
+	}
+
+	/** Rounds the requested capacity up to a power of two (at least 2, at most 2^30)
+	 * @return the number of slots to allocate */
+	static int tableSizeFor(int capacity) {
+		if (capacity >= MAX_POWER_OF_TWO) {
+			return MAX_POWER_OF_TWO;
+		}
+		int n = 2;
+		while (n < capacity) {
+			n <<= 1;
+		}
+		return n;
+	}
+
+}
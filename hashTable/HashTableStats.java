@@ -0,0 +1,107 @@
+/**
+ * Filename:   HashTableStats.java
+ * Project:    p3
+ * Authors:    Kelly East
+ *
+ * Version:    1.0
+ *
+ * Bugs:       No known bugs
+ */
+
+import java.util.Arrays;
+
+/**
+ * A snapshot of how a HashTable is performing, returned by HashTable.stats().
+ * The values do not change after the snapshot is taken.
+ */
+public class HashTableStats {
+
+	/** Size of the bucket histogram. Its last slot counts every bucket this big or bigger */
+	public static final int HISTOGRAM_SIZE = 17;
+
+	//values at the time of the snapshot
+	private final int size;					//number of keys
+	private final int bucketCount;			//number of buckets
+	private final long[] chainLengths;		//number of buckets holding each number of keys
+	private final int maxProbeLength;		//most nodes examined by one lookup
+	private final int resizeCount;			//number of resizes
+	private final long resizeNanos;			//total time spent resizing
+	private final long lookups;				//lookups counted
+	private final long lookupProbes;		//nodes examined by those lookups
+
+	//Constructor, only called by HashTable
+	HashTableStats(int size, int bucketCount, long[] chainLengths, int maxProbeLength,
+			int resizeCount, long resizeNanos, long lookups, long lookupProbes) {
+		this.size = size;
+		this.bucketCount = bucketCount;
+		this.chainLengths = chainLengths;
+		this.maxProbeLength = maxProbeLength;
+		this.resizeCount = resizeCount;
+		this.resizeNanos = resizeNanos;
+		this.lookups = lookups;
+		this.lookupProbes = lookupProbes;
+	}
+
+	/** @return the number of keys in the table */
+	public int getSize() {
+		return size;
+	}
+
+	/** @return the number of buckets in the table */
+	public int getBucketCount() {
+		return bucketCount;
+	}
+
+	/** @return keys per bucket right now, which the table compares with its load factor
+	 *  limit to decide when to resize */
+	public double getLoadFactor() {
+		return (bucketCount == 0) ? 0 : (double) size / bucketCount;
+	}
+
+	/** @return an array where element i is the number of buckets holding i keys. The
+	 *  last element counts every bucket holding HISTOGRAM_SIZE - 1 keys or more */
+	public long[] getChainLengthHistogram() {
+		return chainLengths.clone();
+	}
+
+	/** @return the largest number of nodes a single lookup has examined */
+	public int getMaxProbeLength() {
+		return maxProbeLength;
+	}
+
+	/** @return the number of times the table has grown */
+	public int getResizeCount() {
+		return resizeCount;
+	}
+
+	/** @return total time spent resizing in nanoseconds, including the steps of an
+	 *  incremental resize */
+	public long getResizeNanos() {
+		return resizeNanos;
+	}
+
+	/** @return the number of get, getOrDefault and containsKey calls counted */
+	public long getLookupCount() {
+		return lookups;
+	}
+
+	/** @return average number of nodes examined per lookup, either along a chain or
+	 *  along the path through a tree bucket */
+	public double getAverageComparisonsPerGet() {
+		return (lookups == 0) ? 0 : (double) lookupProbes / lookups;
+	}
+
+	@Override
+	public String toString() {
+		//trim empty slots off the end of the histogram
+		int last = chainLengths.length - 1;
+		while (last > 0 && chainLengths[last] == 0) {
+			last--;
+		}
+		return String.format("size=%d buckets=%d loadFactor=%.3f resizes=%d resizeMs=%.3f "
+				+ "lookups=%d avgComparisons=%.3f maxProbe=%d chainLengths=%s",
+				size, bucketCount, getLoadFactor(), resizeCount, resizeNanos / 1e6, lookups,
+				getAverageComparisonsPerGet(), maxProbeLength,
+				Arrays.toString(Arrays.copyOf(chainLengths, last + 1)));
+	}
+}
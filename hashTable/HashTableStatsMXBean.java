@@ -0,0 +1,40 @@
+/**
+ * Filename:   HashTableStatsMXBean.java
+ * Project:    p3
+ * Authors:    Kelly East
+ *
+ * Version:    1.0
+ *
+ * Bugs:       No known bugs
+ */
+
+/**
+ * The HashTable statistics as seen through JMX (for example in jconsole). Every
+ * attribute but the histogram reads one of the table's counters directly, in O(1).
+ * getChainLengthHistogram takes a stats() snapshot, which walks every bucket on the
+ * JMX client's thread while the table may be changing, so it is slower and only
+ * approximate for a busy table.
+ */
+public interface HashTableStatsMXBean {
+
+	public int getSize();
+
+	public int getBucketCount();
+
+	public double getLoadFactor();
+
+	public long[] getChainLengthHistogram();
+
+	public int getMaxProbeLength();
+
+	public int getResizeCount();
+
+	public long getResizeNanos();
+
+	public long getLookupCount();
+
+	public double getAverageComparisonsPerGet();
+
+	/** Sets the table's lookup and resize counters back to zero */
+	public void resetStats();
+}
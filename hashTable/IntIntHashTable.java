@@ -0,0 +1,259 @@
+/**
+ * Filename:   IntIntHashTable.java
+ * Project:    p3
+ * Authors:    Kelly East
+ *
+ * Version:    1.0
+ *
+ * Credits:    Knuth, The Art of Computer Programming Vol. 3, section 6.4 (Algorithm R,
+ * 			   deletion with linear probing)
+ *
+ * Bugs:       No known bugs
+ */
+
+
+import java.util.NoSuchElementException;
+
+
+// This is a hash table specialized for int keys and int values. Keys and values are
+// stored directly in two int arrays, so there is no boxing to Integer and no node object
+// for each entry.
+//
+// The table uses linear probing. The key 0 is used to mark an empty slot, so an entry
+// with the key 0 is kept in its own field (zeroValue) outside of the arrays. Removal
+// shifts later entries of the probe run back into the freed slot so no tombstones are
+// needed.
+
+public class IntIntHashTable {
+
+	//key stored in a slot with no entry
+	private static final int FREE = 0;
+
+	//instance variables for IntIntHashTable
+	private int[] keys;				//keys stored in each slot
+	private int[] values;			//values stored in each slot
+	private int mask;				//number of slots - 1 (number of slots is a power of two)
+	private int size;				//number of keys in the table, including key 0
+	private boolean hasZeroKey;		//true if the key 0 is in the table
+	private int zeroValue;			//value paired with the key 0
+	private double loadFactor;		//used to determine when to resize
+	private int threshold;			//number of slots used at which the table is resized
+
+	//no-arg constructor
+	public IntIntHashTable() {
+		this(16, 0.75);
+	}
+
+	//Constructor that accepts initial capacity and load factor
+	public IntIntHashTable(int initialCapacity, double loadFactor) {
+		if (initialCapacity < 0) {
+			throw new IllegalArgumentException("Initial capacity cannot be negative");
+		}
+		if (loadFactor <= 0 || loadFactor >= 1 || Double.isNaN(loadFactor)) {
+			throw new IllegalArgumentException("Load factor must be between 0 and 1");
+		}
+		this.loadFactor = loadFactor;
+		allocate(HashTableSizes.tableSizeFor(initialCapacity));
+	}
+
+	/** insert a <key,value> pair entry into the hash table
+	 * if the key already exists in the table, replace the existing value
+	 */
+	public void put(int key, int value) {
+		if (key == FREE) {
+			if (!hasZeroKey) {
+				hasZeroKey = true;
+				size++;
+			}
+			zeroValue = value;
+			return;
+		}
+
+		int index = mix(key) & mask;
+		while (keys[index] != FREE) {
+			if (keys[index] == key) {
+				values[index] = value;
+				return;
+			}
+			index = (index + 1) & mask;
+		}
+		keys[index] = key;
+		values[index] = value;
+		size++;
+
+		if (slotsUsed() > threshold) {
+			resize();
+		}
+	}
+
+	/** return the value associated with the given key.
+	 * throw NoSuchElementException if key does not exist
+	 */
+	public int get(int key) throws NoSuchElementException {
+		if (key == FREE) {
+			if (hasZeroKey) {
+				return zeroValue;
+			}
+			throw new NoSuchElementException("The key does not exist in this hash table");
+		}
+
+		int index = mix(key) & mask;
+		while (keys[index] != FREE) {
+			if (keys[index] == key) {
+				return values[index];
+			}
+			index = (index + 1) & mask;
+		}
+		throw new NoSuchElementException("The key does not exist in this hash table");
+	}
+
+	/** @return true if the key exists in the table */
+	public boolean containsKey(int key) {
+		if (key == FREE) {
+			return hasZeroKey;
+		}
+		int index = mix(key) & mask;
+		while (keys[index] != FREE) {
+			if (keys[index] == key) {
+				return true;
+			}
+			index = (index + 1) & mask;
+		}
+		return false;
+	}
+
+	/** remove the (key,value) entry for the specified key
+	 * throw NoSuchElementException if key does not exist
+	 */
+	public void remove(int key) throws NoSuchElementException {
+		if (key == FREE) {
+			if (!hasZeroKey) {
+				throw new NoSuchElementException("The key does not exist in this hash table");
+			}
+			hasZeroKey = false;
+			zeroValue = 0;
+			size--;
+			return;
+		}
+
+		int index = mix(key) & mask;
+		while (keys[index] != key) {
+			if (keys[index] == FREE) {
+				throw new NoSuchElementException("The key does not exist in this hash table");
+			}
+			index = (index + 1) & mask;
+		}
+
+		//shift back any later entry whose home slot is at or before the freed slot
+		int next = (index + 1) & mask;
+		while (keys[next] != FREE) {
+			int home = mix(keys[next]) & mask;
+			if (((next - home) & mask) >= ((next - index) & mask)) {
+				keys[index] = keys[next];
+				values[index] = values[next];
+				index = next;
+			}
+			next = (next + 1) & mask;
+		}
+		keys[index] = FREE;
+		values[index] = 0;
+		size--;
+	}
+
+	/** @return  the number of keys in the hash table */
+	public int size() {
+		return size;
+	}
+
+	//
+	// Start of helper methods
+	//
+
+	/** Scrambles the key so sequential keys do not fill neighbouring slots
+	 * @return the mixed hash */
+	private static int mix(int key) {
+		int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	/** Doubles the number of slots and re-inserts every entry */
+	private void resize() {
+		int[] oldKeys = keys;
+		int[] oldValues = values;
+
+		allocate(oldKeys.length * 2);
+		for (int i = 0; i < oldKeys.length; i++) {
+			int key = oldKeys[i];
+			if (key != FREE) {
+				int index = mix(key) & mask;
+				while (keys[index] != FREE) {
+					index = (index + 1) & mask;
+				}
+				keys[index] = key;
+				values[index] = oldValues[i];
+			}
+		}
+	}
+
+	/** Sets up empty arrays with the given number of slots */
+	private void allocate(int capacity) {
+		keys = new int[capacity];
+		values = new int[capacity];
+		mask = capacity - 1;
+		//always leave at least one slot empty so probes terminate
+		threshold = Math.min((int) (capacity * loadFactor), capacity - 1);
+	}
+
+	/** The key 0 is counted in size but is not stored in the arrays
+	 * @return the number of array slots holding an entry */
+	private int slotsUsed() {
+		return hasZeroKey ? size - 1 : size;
+	}
+
+	//This is just used for testing
+	public static void main(String args[]) {
+		//the key 0 marks an empty slot, so it is kept in zeroValue instead
+		IntIntHashTable table = new IntIntHashTable();
+		table.put(7, 70);
+		table.put(0, 100);
+		table.put(0, 200);
+		System.out.println("Hash table size = " + table.size() + " (expected 2)");
+		System.out.println("get(0) = " + table.get(0) + " (expected 200)");
+		table.remove(0);
+		System.out.println("containsKey(0) = " + table.containsKey(0) + " (expected false)");
+		System.out.println("get(7) = " + table.get(7) + " (expected 70)");
+		try {
+			table.remove(0);
+			System.out.println("Removing 0 twice did not throw");
+		} catch (NoSuchElementException e) {
+			System.out.println("Removing 0 twice threw NoSuchElementException");
+		}
+
+		//32, 33 and 66 all hash to slot 15 of 16 and 10 hashes to slot 0, so they
+		//fill slots 15, 0, 1 and 2. Removing 32 must shift the other three back,
+		//across the end of the array
+		IntIntHashTable wrap = new IntIntHashTable();
+		wrap.put(32, 1);
+		wrap.put(33, 2);
+		wrap.put(66, 3);
+		wrap.put(10, 4);
+		wrap.remove(32);
+		boolean passed = wrap.size() == 3 && !wrap.containsKey(32)
+				&& wrap.get(33) == 2 && wrap.get(66) == 3 && wrap.get(10) == 4;
+		System.out.println("Removal across the end of the array " + (passed ? "passed" : "failed"));
+
+		IntIntHashTable grown = new IntIntHashTable();
+		for (int key = -5000; key < 5000; key++) {
+			grown.put(key, key * 2);
+		}
+		for (int key = -5000; key < 5000; key += 2) {
+			grown.remove(key);
+		}
+		passed = grown.size() == 5000;
+		for (int key = -4999; key < 5000; key += 2) {
+			passed &= grown.get(key) == key * 2 && !grown.containsKey(key - 1);
+		}
+		System.out.println("Insert/remove of 10000 integers " + (passed ? "passed" : "failed"));
+	}
+
+}
@@ -0,0 +1,243 @@
+/**
+ * Filename:   IntObjHashTable.java
+ * Project:    p3
+ * Authors:    Kelly East
+ *
+ * Version:    1.0
+ *
+ * Credits:    Knuth, The Art of Computer Programming Vol. 3, section 6.4 (Algorithm R,
+ * 			   deletion with linear probing)
+ *
+ * Bugs:       No known bugs
+ */
+
+
+import java.util.NoSuchElementException;
+
+
+// This is a hash table specialized for int keys and object values. Keys are stored
+// directly in an int array next to an array of values, so there is no boxing of the
+// key to Integer and no node object for each entry.
+//
+// The table uses linear probing. The key 0 is used to mark an empty slot, so an entry
+// with the key 0 is kept in its own field (zeroValue) outside of the arrays. Removal
+// shifts later entries of the probe run back into the freed slot so no tombstones are
+// needed.
+
+public class IntObjHashTable<V> {
+
+	//key stored in a slot with no entry
+	private static final int FREE = 0;
+
+	//instance variables for IntObjHashTable
+	private int[] keys;				//keys stored in each slot
+	private Object[] values;		//values stored in each slot
+	private int mask;				//number of slots - 1 (number of slots is a power of two)
+	private int size;				//number of keys in the table, including key 0
+	private boolean hasZeroKey;		//true if the key 0 is in the table
+	private V zeroValue;			//value paired with the key 0
+	private double loadFactor;		//used to determine when to resize
+	private int threshold;			//number of slots used at which the table is resized
+
+	//no-arg constructor
+	public IntObjHashTable() {
+		this(16, 0.75);
+	}
+
+	//Constructor that accepts initial capacity and load factor
+	public IntObjHashTable(int initialCapacity, double loadFactor) {
+		if (initialCapacity < 0) {
+			throw new IllegalArgumentException("Initial capacity cannot be negative");
+		}
+		if (loadFactor <= 0 || loadFactor >= 1 || Double.isNaN(loadFactor)) {
+			throw new IllegalArgumentException("Load factor must be between 0 and 1");
+		}
+		this.loadFactor = loadFactor;
+		allocate(HashTableSizes.tableSizeFor(initialCapacity));
+	}
+
+	/** insert a <key,value> pair entry into the hash table
+	 * if the key already exists in the table, replace the existing value
+	 * permits null values
+	 */
+	public void put(int key, V value) {
+		if (key == FREE) {
+			if (!hasZeroKey) {
+				hasZeroKey = true;
+				size++;
+			}
+			zeroValue = value;
+			return;
+		}
+
+		int index = mix(key) & mask;
+		while (keys[index] != FREE) {
+			if (keys[index] == key) {
+				values[index] = value;
+				return;
+			}
+			index = (index + 1) & mask;
+		}
+		keys[index] = key;
+		values[index] = value;
+		size++;
+
+		if (slotsUsed() > threshold) {
+			resize();
+		}
+	}
+
+	/** return the value associated with the given key.
+	 * throw NoSuchElementException if key does not exist
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(int key) throws NoSuchElementException {
+		if (key == FREE) {
+			if (hasZeroKey) {
+				return zeroValue;
+			}
+			throw new NoSuchElementException("The key does not exist in this hash table");
+		}
+
+		int index = mix(key) & mask;
+		while (keys[index] != FREE) {
+			if (keys[index] == key) {
+				return (V) values[index];
+			}
+			index = (index + 1) & mask;
+		}
+		throw new NoSuchElementException("The key does not exist in this hash table");
+	}
+
+	/** @return true if the key exists in the table */
+	public boolean containsKey(int key) {
+		if (key == FREE) {
+			return hasZeroKey;
+		}
+		int index = mix(key) & mask;
+		while (keys[index] != FREE) {
+			if (keys[index] == key) {
+				return true;
+			}
+			index = (index + 1) & mask;
+		}
+		return false;
+	}
+
+	/** remove the (key,value) entry for the specified key
+	 * throw NoSuchElementException if key does not exist
+	 */
+	public void remove(int key) throws NoSuchElementException {
+		if (key == FREE) {
+			if (!hasZeroKey) {
+				throw new NoSuchElementException("The key does not exist in this hash table");
+			}
+			hasZeroKey = false;
+			zeroValue = null;
+			size--;
+			return;
+		}
+
+		int index = mix(key) & mask;
+		while (keys[index] != key) {
+			if (keys[index] == FREE) {
+				throw new NoSuchElementException("The key does not exist in this hash table");
+			}
+			index = (index + 1) & mask;
+		}
+
+		//shift back any later entry whose home slot is at or before the freed slot
+		int next = (index + 1) & mask;
+		while (keys[next] != FREE) {
+			int home = mix(keys[next]) & mask;
+			if (((next - home) & mask) >= ((next - index) & mask)) {
+				keys[index] = keys[next];
+				values[index] = values[next];
+				index = next;
+			}
+			next = (next + 1) & mask;
+		}
+		keys[index] = FREE;
+		values[index] = null;
+		size--;
+	}
+
+	/** @return  the number of keys in the hash table */
+	public int size() {
+		return size;
+	}
+
+	//
+	// Start of helper methods
+	//
+
+	/** Scrambles the key so sequential keys do not fill neighbouring slots
+	 * @return the mixed hash */
+	private static int mix(int key) {
+		int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	/** Doubles the number of slots and re-inserts every entry */
+	private void resize() {
+		int[] oldKeys = keys;
+		Object[] oldValues = values;
+
+		allocate(oldKeys.length * 2);
+		for (int i = 0; i < oldKeys.length; i++) {
+			int key = oldKeys[i];
+			if (key != FREE) {
+				int index = mix(key) & mask;
+				while (keys[index] != FREE) {
+					index = (index + 1) & mask;
+				}
+				keys[index] = key;
+				values[index] = oldValues[i];
+			}
+		}
+	}
+
+	/** Sets up empty arrays with the given number of slots */
+	private void allocate(int capacity) {
+		keys = new int[capacity];
+		values = new Object[capacity];
+		mask = capacity - 1;
+		//always leave at least one slot empty so probes terminate
+		threshold = Math.min((int) (capacity * loadFactor), capacity - 1);
+	}
+
+	/** The key 0 is counted in size but is not stored in the arrays
+	 * @return the number of array slots holding an entry */
+	private int slotsUsed() {
+		return hasZeroKey ? size - 1 : size;
+	}
+
+	//This is just used for testing
+	public static void main(String args[]) {
+		//the key 0 is kept outside the arrays, and may hold a null value like any key
+		IntObjHashTable<String> table = new IntObjHashTable<String>();
+		table.put(0, null);
+		table.put(1, "one");
+		System.out.println("containsKey(0) = " + table.containsKey(0) + " (expected true)");
+		System.out.println("get(0) = " + table.get(0) + " (expected null)");
+		table.remove(0);
+		System.out.println("Hash table size = " + table.size() + " (expected 1)");
+
+		//32 and 33 both hash to slot 15 of 16, so 33 wraps around to slot 0 and
+		//must be shifted back when 32 is removed
+		table.put(32, "thirty-two");
+		table.put(33, "thirty-three");
+		table.remove(32);
+		System.out.println("get(33) = " + table.get(33) + " (expected thirty-three)");
+
+		for (int key = 100; key < 10100; key++) {
+			table.put(key, "wine-" + key);
+		}
+		boolean passed = table.size() == 10002 && table.get(1).equals("one");
+		for (int key = 100; key < 10100; key++) {
+			passed &= table.get(key).equals("wine-" + key);
+		}
+		System.out.println("Growing to 10000 entries " + (passed ? "passed" : "failed"));
+	}
+
+}
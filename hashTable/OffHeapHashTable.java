@@ -0,0 +1,400 @@
+/**
+ * Filename:   OffHeapHashTable.java
+ * Project:    p3
+ * Authors:    Kelly East
+ *
+ * Version:    1.0
+ *
+ * Credits:    Java NIO documentation for direct ByteBuffers
+ *
+ * Bugs:       No known bugs
+ */
+
+
+import java.io.Closeable;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.NoSuchElementException;
+
+
+// A hash table for very large maps that keeps its keys and values out of the java heap.
+// Each entry is encoded with a Codec and written into a "slab", a large direct
+// ByteBuffer allocated in native memory. The heap only holds two index arrays:
+// 		hashes    - the hash of the key in each slot (0 for an empty slot)
+//		addresses - where the slot's record is, as (slab number << 32) | offset
+// so there is no object per entry for the garbage collector to trace or copy.
+//
+// The index uses linear probing with backward shift deletion, like IntIntHashTable.
+// A record is laid out as key length (4), value length (4, -1 for null), key bytes,
+// value bytes. Replacing or removing an entry leaves its old record behind as dead
+// space; once that outgrows the live records, the live records are copied into fresh
+// slabs and the old slabs are freed.
+//
+// close() frees every slab straight away instead of waiting for the garbage collector
+// to notice the buffers are unreachable. The table cannot be used after it is closed.
+
+public class OffHeapHashTable<K extends Comparable<K>, V> implements HashTableADT<K, V>, Closeable {
+
+	private static final int EMPTY = 0;					//hash stored in an empty slot
+	private static final int DEFAULT_SLAB_SIZE = 1 << 22;	//4MB
+	private static final int RECORD_HEADER_SIZE = 8;	//key length (4), value length (4)
+	private static final int NULL_VALUE = -1;
+
+	//frees a direct buffer right away, or null if the JDK does not allow it
+	private static final Method INVOKE_CLEANER;
+	private static final Object UNSAFE;
+
+	static {
+		Method invokeCleaner = null;
+		Object unsafe = null;
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			java.lang.reflect.Field field = unsafeClass.getDeclaredField("theUnsafe");
+			field.setAccessible(true);
+			unsafe = field.get(null);
+			invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			//fall back to letting the garbage collector free the slabs
+			invokeCleaner = null;
+			unsafe = null;
+		}
+		INVOKE_CLEANER = invokeCleaner;
+		UNSAFE = unsafe;
+	}
+
+	//instance variables for OffHeapHashTable
+	private final Codec<K> keyCodec;		//encodes keys
+	private final Codec<V> valueCodec;		//encodes values
+	private final int slabSize;				//bytes in each slab
+	private ArrayList<ByteBuffer> slabs;	//native memory holding the records
+	private int[] hashes;					//hash of the key in each slot, EMPTY if unused
+	private long[] addresses;				//(slab << 32) | offset of each slot's record
+	private int mask;						//number of slots - 1 (a power of two)
+	private int size;						//number of keys in the table
+	private double loadFactor;				//used to determine when to resize
+	private int threshold;					//size at which the index is resized
+	private long liveBytes;					//bytes of records still in use
+	private long deadBytes;					//bytes of records replaced or removed
+
+	//Constructor with the default slab size
+	public OffHeapHashTable(Codec<K> keyCodec, Codec<V> valueCodec) {
+		this(keyCodec, valueCodec, 16, 0.75, DEFAULT_SLAB_SIZE);
+	}
+
+	//Constructor that accepts initial capacity, load factor and slab size
+	public OffHeapHashTable(Codec<K> keyCodec, Codec<V> valueCodec, int initialCapacity,
+			double loadFactor, int slabSize) {
+		if (keyCodec == null || valueCodec == null) {
+			throw new IllegalArgumentException("Codecs cannot be null");
+		}
+		if (loadFactor <= 0 || loadFactor >= 1 || Double.isNaN(loadFactor)) {
+			throw new IllegalArgumentException("Load factor must be between 0 and 1");
+		}
+		if (slabSize < 64) {
+			throw new IllegalArgumentException("Slab size must be at least 64 bytes");
+		}
+		this.keyCodec = keyCodec;
+		this.valueCodec = valueCodec;
+		this.loadFactor = loadFactor;
+		this.slabSize = slabSize;
+		slabs = new ArrayList<>();
+		allocateIndex(HashTableSizes.tableSizeFor(initialCapacity));
+	}
+
+	/** insert a <key,value> pair entry into the hash table
+	 * if the key already exists in the table,
+	 * replace existing value for that key with the
+	 * value specified in this call to put.
+	 *
+	 * permits null values but not null keys
+	 *
+	 * throw IllegalArgumentException when key is null
+	 */
+	@Override
+	public void put(K key, V value) throws IllegalArgumentException {
+		//handle null keys
+		if (key == null) {
+			throw new IllegalArgumentException("Cannot insert a null key");
+		}
+		checkOpen();
+
+		byte[] keyBytes = keyCodec.encode(key);
+		byte[] valueBytes = (value == null) ? null : valueCodec.encode(value);
+		int hash = hashBytes(keyBytes);
+		long address = writeRecord(keyBytes, valueBytes);
+
+		int index = findSlot(keyBytes, hash);
+		if (index >= 0) {
+			//the key already exists: point the slot at the new record
+			deadBytes += recordLength(addresses[index]);
+			liveBytes -= recordLength(addresses[index]);
+			addresses[index] = address;
+		}
+		else {
+			if (size + 1 > threshold) {
+				resizeIndex();
+			}
+			insertSlot(hash, address);
+			size++;
+		}
+		compactIfNeeded();
+	}
+
+	/** return the value associated with the given key.
+	 * throw IllegalArgumentException if key is null
+	 * throw NoSuchElementException if key does not exist
+	 */
+	@Override
+	public V get(K key) throws IllegalArgumentException, NoSuchElementException {
+		//handle null keys
+		if (key == null) {
+			throw new IllegalArgumentException("Cannot get a null key");
+		}
+		checkOpen();
+
+		byte[] keyBytes = keyCodec.encode(key);
+		int index = findSlot(keyBytes, hashBytes(keyBytes));
+		if (index < 0) {
+			throw new NoSuchElementException("The key does not exist in this hash table");
+		}
+
+		long address = addresses[index];
+		ByteBuffer slab = slabs.get((int) (address >>> 32));
+		int offset = (int) address;
+		int keyLength = slab.getInt(offset);
+		int valueLength = slab.getInt(offset + 4);
+		if (valueLength == NULL_VALUE) {
+			return null;
+		}
+		return valueCodec.decode(slab, offset + RECORD_HEADER_SIZE + keyLength, valueLength);
+	}
+
+	/** remove the (key,value) entry for the specified key
+	 * throw IllegalArgumentException if key is null
+	 * throw NoSuchElementException if key does not exist in the tree
+	 */
+	@Override
+	public void remove(K key) throws IllegalArgumentException, NoSuchElementException {
+		//handle null keys
+		if (key == null) {
+			throw new IllegalArgumentException("Cannot remove a null key");
+		}
+		checkOpen();
+
+		byte[] keyBytes = keyCodec.encode(key);
+		int index = findSlot(keyBytes, hashBytes(keyBytes));
+		if (index < 0) {
+			throw new NoSuchElementException("The key does not exist in this hash table");
+		}
+		deadBytes += recordLength(addresses[index]);
+		liveBytes -= recordLength(addresses[index]);
+
+		//shift back any later entry whose home slot is at or before the freed slot
+		int next = (index + 1) & mask;
+		while (hashes[next] != EMPTY) {
+			int home = hashes[next] & mask;
+			if (((next - home) & mask) >= ((next - index) & mask)) {
+				hashes[index] = hashes[next];
+				addresses[index] = addresses[next];
+				index = next;
+			}
+			next = (next + 1) & mask;
+		}
+		hashes[index] = EMPTY;
+		addresses[index] = 0;
+		size--;
+		compactIfNeeded();
+	}
+
+	/** @return  the number of keys in the hash table */
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/** @return the number of bytes of native memory held by the slabs */
+	public long offHeapBytes() {
+		long total = 0;
+		if (slabs != null) {
+			for (ByteBuffer slab : slabs) {
+				total += slab.capacity();
+			}
+		}
+		return total;
+	}
+
+	/** Frees all native memory held by the table. The table cannot be used after */
+	@Override
+	public void close() {
+		if (slabs == null) {
+			return;
+		}
+		for (ByteBuffer slab : slabs) {
+			free(slab);
+		}
+		slabs = null;
+		hashes = null;
+		addresses = null;
+		size = 0;
+	}
+
+	//
+	// Start of helper methods
+	//
+
+	/** Hashes encoded key bytes with FNV-1a and folds the high bits into the low
+	 *  bits. Zero is reserved to mark an empty slot
+	 * @return the hash */
+	private static int hashBytes(byte[] bytes) {
+		int hash = 0x811C9DC5;
+		for (byte b : bytes) {
+			hash ^= b;
+			hash *= 0x01000193;
+		}
+		hash ^= (hash >>> 16);
+		return (hash == EMPTY) ? 1 : hash;
+	}
+
+	/** @return the slot holding keyBytes, or -1 if the key is not in the table */
+	private int findSlot(byte[] keyBytes, int hash) {
+		int index = hash & mask;
+		while (hashes[index] != EMPTY) {
+			if (hashes[index] == hash && keyMatches(addresses[index], keyBytes)) {
+				return index;
+			}
+			index = (index + 1) & mask;
+		}
+		return -1;
+	}
+
+	/** @return true if the key of the record at address equals keyBytes */
+	private boolean keyMatches(long address, byte[] keyBytes) {
+		ByteBuffer slab = slabs.get((int) (address >>> 32));
+		int offset = (int) address;
+		if (slab.getInt(offset) != keyBytes.length) {
+			return false;
+		}
+		offset += RECORD_HEADER_SIZE;
+		for (int i = 0; i < keyBytes.length; i++) {
+			if (slab.get(offset + i) != keyBytes[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/** Places a record's address in the first empty slot of its probe sequence */
+	private void insertSlot(int hash, long address) {
+		int index = hash & mask;
+		while (hashes[index] != EMPTY) {
+			index = (index + 1) & mask;
+		}
+		hashes[index] = hash;
+		addresses[index] = address;
+	}
+
+	/** @return the number of bytes taken by the record at address */
+	private int recordLength(long address) {
+		ByteBuffer slab = slabs.get((int) (address >>> 32));
+		int offset = (int) address;
+		return RECORD_HEADER_SIZE + slab.getInt(offset) + Math.max(slab.getInt(offset + 4), 0);
+	}
+
+	/** Writes a record into the current slab, starting a new slab if it is full
+	 * @return the address of the record */
+	private long writeRecord(byte[] keyBytes, byte[] valueBytes) {
+		int valueLength = (valueBytes == null) ? 0 : valueBytes.length;
+		int length = RECORD_HEADER_SIZE + keyBytes.length + valueLength;
+
+		ByteBuffer slab = slabs.isEmpty() ? null : slabs.get(slabs.size() - 1);
+		if (slab == null || slab.remaining() < length) {
+			//a record bigger than a slab gets a slab of its own
+			slab = ByteBuffer.allocateDirect(Math.max(slabSize, length));
+			slabs.add(slab);
+		}
+
+		int offset = slab.position();
+		slab.putInt(keyBytes.length);
+		slab.putInt((valueBytes == null) ? NULL_VALUE : valueLength);
+		slab.put(keyBytes);
+		if (valueBytes != null) {
+			slab.put(valueBytes);
+		}
+		liveBytes += length;
+		return ((long) (slabs.size() - 1) << 32) | offset;
+	}
+
+	/** Doubles the number of index slots. The records do not move */
+	private void resizeIndex() {
+		int[] oldHashes = hashes;
+		long[] oldAddresses = addresses;
+		allocateIndex(oldHashes.length * 2);
+		for (int i = 0; i < oldHashes.length; i++) {
+			if (oldHashes[i] != EMPTY) {
+				insertSlot(oldHashes[i], oldAddresses[i]);
+			}
+		}
+	}
+
+	/** Sets up empty index arrays with the given number of slots */
+	private void allocateIndex(int capacity) {
+		hashes = new int[capacity];
+		addresses = new long[capacity];
+		mask = capacity - 1;
+		threshold = Math.min((int) (capacity * loadFactor), capacity - 1);
+	}
+
+	/** Copies the live records into new slabs once dead records outweigh them,
+	 *  then frees the old slabs */
+	private void compactIfNeeded() {
+		if (deadBytes < slabSize || deadBytes < liveBytes) {
+			return;
+		}
+
+		ArrayList<ByteBuffer> oldSlabs = slabs;
+		slabs = new ArrayList<>();
+		liveBytes = 0;
+		deadBytes = 0;
+		for (int i = 0; i <= mask; i++) {
+			if (hashes[i] != EMPTY) {
+				long address = addresses[i];
+				ByteBuffer oldSlab = oldSlabs.get((int) (address >>> 32));
+				int offset = (int) address;
+				int keyLength = oldSlab.getInt(offset);
+				int valueLength = oldSlab.getInt(offset + 4);
+
+				byte[] keyBytes = new byte[keyLength];
+				oldSlab.get(offset + RECORD_HEADER_SIZE, keyBytes);
+				byte[] valueBytes = null;
+				if (valueLength != NULL_VALUE) {
+					valueBytes = new byte[valueLength];
+					oldSlab.get(offset + RECORD_HEADER_SIZE + keyLength, valueBytes);
+				}
+				addresses[i] = writeRecord(keyBytes, valueBytes);
+			}
+		}
+		for (ByteBuffer oldSlab : oldSlabs) {
+			free(oldSlab);
+		}
+	}
+
+	/** Releases a slab's native memory now if the JDK allows it. Otherwise it is
+	 *  released when the garbage collector finds the buffer unreachable */
+	private static void free(ByteBuffer slab) {
+		if (INVOKE_CLEANER != null) {
+			try {
+				INVOKE_CLEANER.invoke(UNSAFE, slab);
+			} catch (ReflectiveOperationException e) {
+				//leave it to the garbage collector
+			}
+		}
+	}
+
+	private void checkOpen() {
+		if (slabs == null) {
+			throw new IllegalStateException("Hash table has been closed");
+		}
+	}
+
+}
@@ -0,0 +1,107 @@
+/**
+ * Filename:   OffHeapProfile.java
+ * Project:    p3
+ * Authors:    Kelly East
+ *
+ * Version:    1.0
+ *
+ * Credits:    Profile.java for the insert and retrieve workload
+ *
+ * Bugs:       No known bugs
+ */
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+
+// Compares the heap cost of a large map kept on the heap with one kept off the heap.
+// The same Integer -> String entries are loaded into HashTable, java.util.HashMap and
+// OffHeapHashTable, then every key is read back. For each table it prints the elapsed
+// time, the heap still in use once the table is loaded, the garbage collector time
+// spent during the run, and for the off heap table the native memory it holds.
+
+public class OffHeapProfile {
+
+	/** A map under test; lets HashMap run the same workload as the HashTableADTs */
+	private interface Target {
+		void put(Integer key, String value);
+		String get(Integer key);
+	}
+
+	/** Loads and reads back numElements entries, then prints the measurements */
+	private static void run(String name, Target table, int numElements) {
+		long heapBefore = usedHeap();
+		long gcBefore = gcMillis();
+		long start = System.nanoTime();
+
+		for (int i = 0; i < numElements; i++) {
+			table.put(i, "value" + i);
+		}
+		for (int i = 0; i < numElements; i++) {
+			if (table.get(i) == null) {
+				throw new IllegalStateException(name + " lost key " + i);
+			}
+		}
+
+		long elapsed = System.nanoTime() - start;
+		long gcTime = gcMillis() - gcBefore;
+		long heapUsed = usedHeap() - heapBefore;
+		System.out.println(String.format("%-18s %8d ms %10d KB heap %6d ms gc",
+				name, elapsed / 1000000, heapUsed / 1024, gcTime));
+	}
+
+	/** @return bytes of heap in use after a full collection */
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	/** @return total milliseconds spent in garbage collection so far */
+	private static long gcMillis() {
+		long total = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			total += Math.max(gc.getCollectionTime(), 0);
+		}
+		return total;
+	}
+
+	/** main method used to run the comparison
+	 */
+	public static void main(String[] args) {
+		if (args.length < 1) {
+			System.out.println("Expected arguments: <num_elements>");
+			System.exit(1);
+		}
+		int numElements = Integer.parseInt(args[0]);
+		System.out.println(numElements);
+
+		final HashTable<Integer, String> chained = new HashTable<Integer, String>();
+		run("HashTable", new Target() {
+			public void put(Integer key, String value) { chained.put(key, value); }
+			public String get(Integer key) { return chained.get(key); }
+		}, numElements);
+
+		final HashMap<Integer, String> hashMap = new HashMap<Integer, String>();
+		run("java.util.HashMap", new Target() {
+			public void put(Integer key, String value) { hashMap.put(key, value); }
+			public String get(Integer key) { return hashMap.get(key); }
+		}, numElements);
+
+		//the on heap tables stay reachable until here so their heap use is counted
+		System.out.println(String.format("%-18s %10d entries on heap", "",
+				chained.size() + hashMap.size()));
+
+		try (OffHeapHashTable<Integer, String> offHeap =
+				new OffHeapHashTable<Integer, String>(Codec.INTEGER, Codec.STRING)) {
+			run("OffHeapHashTable", new Target() {
+				public void put(Integer key, String value) { offHeap.put(key, value); }
+				public String get(Integer key) { return offHeap.get(key); }
+			}, numElements);
+			System.out.println(String.format("%-18s %10d KB off heap", "",
+					offHeap.offHeapBytes() / 1024));
+		}
+	}
+}
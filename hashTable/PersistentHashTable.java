@@ -0,0 +1,531 @@
+/**
+ * Filename:   PersistentHashTable.java
+ * Project:    p3
+ * Authors:    Kelly East
+ *
+ * Version:    1.0
+ *
+ * Credits:    Java NIO documentation for FileChannel.map and MappedByteBuffer
+ *
+ * Bugs:       A single mapping limits the file to 2GB
+ */
+
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.NoSuchElementException;
+
+
+// A hash table whose buckets and entries live in a file that is memory mapped with
+// FileChannel.map. Because the table already is the file, opening an existing file
+// only reads its header; there is no need to replay every put after a restart.
+//
+// File layout (all numbers big-endian):
+//
+//		header   (HEADER_SIZE bytes)   magic, version, number of buckets, size,
+//		                               end of the data area, dead bytes
+//		buckets  (8 bytes each)        file offset of the first record in each
+//		                               bucket's chain, 0 if the bucket is empty
+//		records  (appended in order)   next record offset (8), hash (4), key
+//		                               length (4), value length (4, -1 for a
+//		                               null value), key bytes, value bytes
+//
+// Keys and values are turned into bytes by pluggable Codecs. The bucket index comes
+// from a hash of the encoded key bytes rather than hashCode, so it is the same in
+// every process that opens the file. Lookups compare key bytes in place in the mapped
+// region and only decode the value that is returned.
+//
+// Writes only ever append: a put writes a new record and links it into its bucket's
+// chain in place of any older record for the same key, and a remove unlinks the
+// record. The space of records that are no longer linked is counted as dead bytes,
+// and once it outgrows the live data the file is compacted by copying the live
+// records into a new file (with more buckets if the chains have grown long).
+
+public class PersistentHashTable<K extends Comparable<K>, V> implements HashTableADT<K, V>, Closeable {
+
+	private static final int MAGIC = 0x50485431;		//"PHT1"
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 64;
+
+	//positions of the header fields
+	private static final int NUM_BUCKETS_OFFSET = 8;
+	private static final int SIZE_OFFSET = 12;
+	private static final int END_OFFSET = 16;
+	private static final int DEAD_BYTES_OFFSET = 24;
+
+	//layout of a record: next (8), hash (4), key length (4), value length (4)
+	private static final int RECORD_HEADER_SIZE = 20;
+	private static final int NULL_VALUE = -1;
+
+	//compaction is not worth it below this many dead bytes
+	private static final long MIN_COMPACT_BYTES = 1 << 20;
+	//the data area grows by at least this much each time the file is extended
+	private static final int MIN_GROWTH = 1 << 16;
+	//average chain length at which compaction also doubles the buckets
+	private static final int MAX_CHAIN_LENGTH = 4;
+
+	//instance variables for PersistentHashTable
+	private final Path path;				//the table's file
+	private final Codec<K> keyCodec;		//encodes keys
+	private final Codec<V> valueCodec;		//encodes values
+	private FileChannel channel;			//open channel to the file
+	private MappedByteBuffer buffer;		//the mapped file
+	private int numBuckets;					//number of buckets (a power of two)
+	private int size;						//number of live keys
+	private long end;						//offset where the next record is appended
+	private long deadBytes;					//bytes of records that are no longer linked
+	private long previousRecord;			//set by findRecord: record linking to the one
+											//found, 0 if it is first in its bucket
+
+	/** Opens the table stored in file, or creates it if the file does not exist
+	 *  or is empty.
+	 * @param file the table's file
+	 * @param numBuckets number of buckets for a new file, rounded up to a power of
+	 *  two. Ignored when an existing file is opened
+	 * @param keyCodec encodes keys
+	 * @param valueCodec encodes values
+	 * @throws UncheckedIOException if the file cannot be opened or is not a table */
+	public PersistentHashTable(Path file, int numBuckets, Codec<K> keyCodec, Codec<V> valueCodec) {
+		if (keyCodec == null || valueCodec == null) {
+			throw new IllegalArgumentException("Codecs cannot be null");
+		}
+		this.path = file;
+		this.keyCodec = keyCodec;
+		this.valueCodec = valueCodec;
+
+		try {
+			boolean exists = Files.exists(file) && Files.size(file) > 0;
+			channel = FileChannel.open(file, StandardOpenOption.CREATE,
+					StandardOpenOption.READ, StandardOpenOption.WRITE);
+			if (exists) {
+				openExisting();
+			}
+			else {
+				createNew(numBuckets);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot open hash table file " + file, e);
+		}
+	}
+
+	/** insert a <key,value> pair entry into the hash table
+	 * if the key already exists in the table,
+	 * replace existing value for that key with the
+	 * value specified in this call to put.
+	 *
+	 * permits null values but not null keys
+	 *
+	 * throw IllegalArgumentException when key is null
+	 */
+	@Override
+	public void put(K key, V value) throws IllegalArgumentException {
+		//handle null keys
+		if (key == null) {
+			throw new IllegalArgumentException("Cannot insert a null key");
+		}
+		checkOpen();
+
+		byte[] keyBytes = keyCodec.encode(key);
+		byte[] valueBytes = (value == null) ? null : valueCodec.encode(value);
+		int hash = hashBytes(keyBytes, 0, keyBytes.length);
+
+		long existing = findRecord(keyBytes, hash);
+		long record = appendRecord(hash, keyBytes, 0, keyBytes.length, valueBytes);
+
+		if (existing != 0) {
+			//take the old record's place in the chain
+			buffer.putLong((int) record, buffer.getLong((int) existing));
+			link(previousRecord, hash, record);
+			deadBytes += recordLength(existing);
+		}
+		else {
+			long bucket = bucketOffset(hash);
+			buffer.putLong((int) record, buffer.getLong((int) bucket));
+			buffer.putLong((int) bucket, record);
+			size++;
+		}
+		writeHeader();
+		compactIfNeeded();
+	}
+
+	/** return the value associated with the given key.
+	 * throw IllegalArgumentException if key is null
+	 * throw NoSuchElementException if key does not exist
+	 */
+	@Override
+	public V get(K key) throws IllegalArgumentException, NoSuchElementException {
+		//handle null keys
+		if (key == null) {
+			throw new IllegalArgumentException("Cannot get a null key");
+		}
+		checkOpen();
+
+		byte[] keyBytes = keyCodec.encode(key);
+		long record = findRecord(keyBytes, hashBytes(keyBytes, 0, keyBytes.length));
+		if (record == 0) {
+			throw new NoSuchElementException("The key does not exist in this hash table");
+		}
+
+		int position = (int) record;
+		int keyLength = buffer.getInt(position + 12);
+		int valueLength = buffer.getInt(position + 16);
+		if (valueLength == NULL_VALUE) {
+			return null;
+		}
+		return valueCodec.decode(buffer, position + RECORD_HEADER_SIZE + keyLength, valueLength);
+	}
+
+	/** remove the (key,value) entry for the specified key
+	 * throw IllegalArgumentException if key is null
+	 * throw NoSuchElementException if key does not exist in the tree
+	 */
+	@Override
+	public void remove(K key) throws IllegalArgumentException, NoSuchElementException {
+		//handle null keys
+		if (key == null) {
+			throw new IllegalArgumentException("Cannot remove a null key");
+		}
+		checkOpen();
+
+		byte[] keyBytes = keyCodec.encode(key);
+		int hash = hashBytes(keyBytes, 0, keyBytes.length);
+		long record = findRecord(keyBytes, hash);
+		if (record == 0) {
+			throw new NoSuchElementException("The key does not exist in this hash table");
+		}
+
+		link(previousRecord, hash, buffer.getLong((int) record));
+		deadBytes += recordLength(record);
+		size--;
+		writeHeader();
+		compactIfNeeded();
+	}
+
+	/** @return  the number of keys in the hash table */
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/** Forces every change made so far out to the file */
+	public void flush() {
+		checkOpen();
+		buffer.force();
+	}
+
+	/** Rewrites the file with only the live records, removing the space left by
+	 *  replaced and removed entries. The number of buckets is doubled until the
+	 *  average chain is no longer than MAX_CHAIN_LENGTH */
+	public void compact() {
+		checkOpen();
+		int newBuckets = numBuckets;
+		while ((long) size > (long) newBuckets * MAX_CHAIN_LENGTH && newBuckets < (1 << 26)) {
+			newBuckets <<= 1;
+		}
+
+		Path compacted = path.resolveSibling(path.getFileName() + ".compact");
+		PersistentHashTable<K, V> target = null;
+		try {
+			Files.deleteIfExists(compacted);
+			target = new PersistentHashTable<>(compacted, newBuckets, keyCodec, valueCodec);
+
+			//copy the raw records, so nothing is decoded or re-encoded
+			for (int i = 0; i < numBuckets; i++) {
+				long record = buffer.getLong(HEADER_SIZE + i * 8);
+				while (record != 0) {
+					target.copyRecord(buffer, record);
+					record = buffer.getLong((int) record);
+				}
+			}
+			target.writeHeader();
+			target.close();
+		} catch (IOException | RuntimeException e) {
+			//the original file has not been touched, so the table is still usable
+			if (target != null && target.channel != null) {
+				try {
+					target.channel.close();
+				} catch (IOException closeFailure) {
+					e.addSuppressed(closeFailure);
+				}
+			}
+			deleteQuietly(compacted);
+			if (e instanceof IOException) {
+				throw new UncheckedIOException("Cannot compact hash table file " + path, (IOException) e);
+			}
+			throw (RuntimeException) e;
+		}
+
+		//let go of the old mapping before the file under it is replaced (a mapped
+		//file cannot be replaced on some platforms), then swap the files
+		buffer.force();
+		buffer = null;
+		try {
+			channel.close();
+			Files.move(compacted, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			//the original file still holds every record, so go back to it
+			deleteQuietly(compacted);
+			reopen();
+			throw new UncheckedIOException("Cannot compact hash table file " + path, e);
+		}
+		reopen();
+	}
+
+	/** Writes all changes to the file and closes it. The table cannot be used after */
+	@Override
+	public void close() {
+		if (channel == null) {
+			return;
+		}
+		try {
+			buffer.force();
+			channel.close();
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot close hash table file " + path, e);
+		} finally {
+			channel = null;
+			buffer = null;
+		}
+	}
+
+	//
+	// Start of helper methods
+	//
+
+	/** Hashes encoded key bytes with FNV-1a, then folds the high bits into the
+	 *  low bits used for the bucket index
+	 * @return the hash */
+	private static int hashBytes(byte[] bytes, int offset, int length) {
+		int hash = 0x811C9DC5;
+		for (int i = offset; i < offset + length; i++) {
+			hash ^= bytes[i];
+			hash *= 0x01000193;
+		}
+		return hash ^ (hash >>> 16);
+	}
+
+	/** @return the file offset of the bucket slot for hash */
+	private long bucketOffset(int hash) {
+		return HEADER_SIZE + (long) (hash & (numBuckets - 1)) * 8;
+	}
+
+	/** Walks the chain for hash looking for a record whose key bytes match.
+	 *  Also sets previousRecord, so the caller can unlink the record found
+	 * @return the record's offset, or 0 if the key is not in the table */
+	private long findRecord(byte[] keyBytes, int hash) {
+		previousRecord = 0;
+		long record = buffer.getLong((int) bucketOffset(hash));
+		while (record != 0) {
+			int position = (int) record;
+			if (buffer.getInt(position + 8) == hash
+					&& buffer.getInt(position + 12) == keyBytes.length
+					&& keyMatches(position + RECORD_HEADER_SIZE, keyBytes)) {
+				return record;
+			}
+			previousRecord = record;
+			record = buffer.getLong(position);
+		}
+		return 0;
+	}
+
+	/** @return true if the bytes at position in the file equal keyBytes */
+	private boolean keyMatches(int position, byte[] keyBytes) {
+		for (int i = 0; i < keyBytes.length; i++) {
+			if (buffer.get(position + i) != keyBytes[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/** Points previous (or the bucket slot for hash, if previous is 0) at record */
+	private void link(long previous, int hash, long record) {
+		if (previous == 0) {
+			buffer.putLong((int) bucketOffset(hash), record);
+		}
+		else {
+			buffer.putLong((int) previous, record);
+		}
+	}
+
+	/** @return the number of bytes the record at offset takes up */
+	private int recordLength(long record) {
+		int keyLength = buffer.getInt((int) record + 12);
+		int valueLength = buffer.getInt((int) record + 16);
+		return RECORD_HEADER_SIZE + keyLength + Math.max(valueLength, 0);
+	}
+
+	/** Appends an unlinked record to the data area
+	 * @return the offset of the new record */
+	private long appendRecord(int hash, byte[] keyBytes, int keyOffset, int keyLength, byte[] valueBytes) {
+		int valueLength = (valueBytes == null) ? 0 : valueBytes.length;
+		ensureCapacity(RECORD_HEADER_SIZE + keyLength + valueLength);
+
+		long record = end;
+		int position = (int) record;
+		buffer.putLong(position, 0);
+		buffer.putInt(position + 8, hash);
+		buffer.putInt(position + 12, keyLength);
+		buffer.putInt(position + 16, (valueBytes == null) ? NULL_VALUE : valueLength);
+		buffer.put(position + RECORD_HEADER_SIZE, keyBytes, keyOffset, keyLength);
+		if (valueBytes != null) {
+			buffer.put(position + RECORD_HEADER_SIZE + keyLength, valueBytes);
+		}
+		end += RECORD_HEADER_SIZE + keyLength + valueLength;
+		return record;
+	}
+
+	/** Appends a copy of a record from another table's file and links it into
+	 *  this table's chain. Used by compact, so the key is known to be new */
+	private void copyRecord(MappedByteBuffer source, long sourceRecord) {
+		int position = (int) sourceRecord;
+		int length = RECORD_HEADER_SIZE + source.getInt(position + 12)
+				+ Math.max(source.getInt(position + 16), 0);
+		ensureCapacity(length);
+
+		long record = end;
+		buffer.put((int) record, source, position, length);
+		long bucket = bucketOffset(source.getInt(position + 8));
+		buffer.putLong((int) record, buffer.getLong((int) bucket));
+		buffer.putLong((int) bucket, record);
+		end += length;
+		size++;
+	}
+
+	/** Grows the file, and its mapping, so that bytes more bytes can be appended */
+	private void ensureCapacity(int bytes) {
+		long needed = end + bytes;
+		if (needed <= buffer.capacity()) {
+			return;
+		}
+		long newSize = Math.max(needed, Math.max((long) buffer.capacity() * 2, buffer.capacity() + MIN_GROWTH));
+		newSize = Math.min(newSize, Integer.MAX_VALUE);
+		if (needed > newSize) {
+			throw new IllegalStateException("Hash table file cannot grow past 2GB");
+		}
+		try {
+			//mapping past the end of the file extends it
+			buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, newSize);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Cannot grow hash table file " + path, e);
+		}
+	}
+
+	/** Compacts once the dead records take up more room than the live ones */
+	private void compactIfNeeded() {
+		long liveBytes = end - HEADER_SIZE - (long) numBuckets * 8 - deadBytes;
+		if (deadBytes > MIN_COMPACT_BYTES && deadBytes > liveBytes) {
+			compact();
+		}
+	}
+
+	/** Sets up the header and an empty bucket array in a new file */
+	private void createNew(int requestedBuckets) throws IOException {
+		numBuckets = 2;
+		while (numBuckets < requestedBuckets && numBuckets < (1 << 26)) {
+			numBuckets <<= 1;
+		}
+		size = 0;
+		deadBytes = 0;
+		end = HEADER_SIZE + (long) numBuckets * 8;
+
+		//a newly mapped region of a file is filled with zeros, so every bucket
+		//starts out empty
+		buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, end + MIN_GROWTH);
+		buffer.putInt(0, MAGIC);
+		buffer.putInt(4, VERSION);
+		writeHeader();
+	}
+
+	/** Maps an existing file and reads its header. Nothing else is read */
+	private void openExisting() throws IOException {
+		buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+		if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+			channel.close();
+			throw new IOException("Not a hash table file: " + path);
+		}
+		if (buffer.getInt(4) != VERSION) {
+			channel.close();
+			throw new IOException("Unsupported hash table file version " + buffer.getInt(4));
+		}
+		numBuckets = buffer.getInt(NUM_BUCKETS_OFFSET);
+		size = buffer.getInt(SIZE_OFFSET);
+		end = buffer.getLong(END_OFFSET);
+		deadBytes = buffer.getLong(DEAD_BYTES_OFFSET);
+	}
+
+	/** Opens and maps the table's file again after compact has closed it. If that
+	 *  fails the table is left closed
+	 * @throws UncheckedIOException if the file cannot be opened */
+	private void reopen() {
+		try {
+			channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+			openExisting();
+		} catch (IOException e) {
+			channel = null;
+			buffer = null;
+			throw new UncheckedIOException("Cannot reopen hash table file " + path, e);
+		}
+	}
+
+	/** Deletes a file, ignoring any failure, when cleaning up after another error */
+	private static void deleteQuietly(Path file) {
+		try {
+			Files.deleteIfExists(file);
+		} catch (IOException e) {
+			//the error being handled matters more than a leftover file
+		}
+	}
+
+	/** Writes the in-memory copies of the header fields to the file */
+	private void writeHeader() {
+		buffer.putInt(NUM_BUCKETS_OFFSET, numBuckets);
+		buffer.putInt(SIZE_OFFSET, size);
+		buffer.putLong(END_OFFSET, end);
+		buffer.putLong(DEAD_BYTES_OFFSET, deadBytes);
+	}
+
+	private void checkOpen() {
+		if (channel == null) {
+			throw new IllegalStateException("Hash table file has been closed");
+		}
+	}
+
+	//This is just used for testing
+	public static void main(String args[]) throws IOException {
+		Path file = (args.length > 0) ? Paths.get(args[0]) : Files.createTempFile("hashtable", ".pht");
+		Files.deleteIfExists(file);
+
+		PersistentHashTable<String, Integer> map =
+				new PersistentHashTable<>(file, 16, Codec.STRING, Codec.INTEGER);
+		for (int i = 0; i < 100000; i++) {
+			map.put("key" + i, i);
+		}
+		for (int i = 0; i < 100000; i += 2) {
+			map.remove("key" + i);
+		}
+		map.put("key1", -1);
+		map.close();
+
+		//reopening only reads the header
+		long start = System.nanoTime();
+		PersistentHashTable<String, Integer> reopened =
+				new PersistentHashTable<>(file, 16, Codec.STRING, Codec.INTEGER);
+		long elapsed = System.nanoTime() - start;
+		System.out.println("Reopened in " + elapsed / 1000 + " microseconds");
+		System.out.println("Hash table size = " + reopened.size() + " (expected 50000)");
+		System.out.println("get(key1) = " + reopened.get("key1") + " (expected -1)");
+		System.out.println("get(key99999) = " + reopened.get("key99999") + " (expected 99999)");
+		reopened.close();
+		Files.deleteIfExists(file);
+	}
+
+}
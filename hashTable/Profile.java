@@ -21,14 +21,21 @@ import java.util.TreeMap;
 public class Profile<K extends Comparable<K>, V> {
 	
 	//instance variables
-	HashTable<K, V> hashtable;
+	HashTableADT<K, V> hashtable;
 	TreeMap<K, V> treemap;
 	
 	/** constructor for the profile class
 	 */
 	public Profile() {
 		// Instantiate hashtable and treemap
-		hashtable = new HashTable<K,V>();
+		this(new HashTable<K,V>());
+	}
+	
+	/** constructor for the profile class that measures the given 
+	 *  HashTableADT implementation against the treemap
+	 */
+	public Profile(HashTableADT<K, V> hashtable) {
+		this.hashtable = hashtable;
 		treemap = new TreeMap<K,V>();
 	}
 	
@@ -50,17 +57,48 @@ public class Profile<K extends Comparable<K>, V> {
 		treemap.get(key);
 	}
 	
+	/** runs the same insert and retrieve workload as main against the
+	 *  int specialized hash table, so no keys or values are boxed
+	 */
+	private static void profilePrimitive(int numElements) {
+		IntIntHashTable hashtable = new IntIntHashTable();
+		
+		for (int i = 0; i < numElements; i++) {
+			hashtable.put(i, i);
+		}
+		
+		for (int i = 0; i < numElements; i++) {
+			hashtable.get(i);
+		}
+		
+		String msg = String.format("Successfully inserted and retreived %d elements into the int hash table", numElements);
+		System.out.println(msg);
+	}
+	
 	/** main method used to test this class
 	 */
 	public static void main(String[] args) {
 		if (args.length < 1) {
-			System.out.println("Expected 1 argument: <num_elements>");
+			System.out.println("Expected arguments: <num_elements> [chained|robinhood|intint]");
 			System.exit(1);
 		}
 		int numElements = Integer.parseInt(args[0]);
 		System.out.println(numElements);
 		
-		Profile<Integer, Integer> profile = new Profile<Integer, Integer>();
+		//the optional second argument picks the hash table implementation
+		String tableType = (args.length > 1) ? args[1] : "chained";
+		if (tableType.equals("intint")) {
+			profilePrimitive(numElements);
+			return;
+		}
+		
+		Profile<Integer, Integer> profile;
+		if (tableType.equals("robinhood")) {
+			profile = new Profile<Integer, Integer>(new RobinHoodHashTable<Integer, Integer>());
+		}
+		else {
+			profile = new Profile<Integer, Integer>();
+		}
 
         for (int i = 0; i < numElements; i++) {
             profile.insert(i, i);    
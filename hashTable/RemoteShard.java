@@ -0,0 +1,262 @@
+/**
+ * Filename:   RemoteShard.java
+ * Project:    p3
+ * Authors:    Kelly East
+ *
+ * Version:    1.0
+ *
+ * Bugs:       No known bugs
+ */
+
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+
+// A shard of a ShardedHashTable held by a ShardWorker process. Keys and values are
+// turned into bytes with Codecs and sent over a local socket using the protocol
+// described in ShardWorker. Each batch method is one request and one reply, and a
+// put returns only once the worker has stored the entries.
+//
+// Calls are synchronized, since the connection can only carry one request at a time.
+// A network failure is thrown as an UncheckedIOException.
+
+public class RemoteShard<K extends Comparable<K>, V> implements ShardedHashTable.Shard<K, V> {
+
+	//instance variables for RemoteShard
+	private final Codec<K> keyCodec;		//encodes keys
+	private final Codec<V> valueCodec;		//encodes values
+	private final Socket socket;			//connection to the worker
+	private final DataInputStream in;
+	private final DataOutputStream out;
+	private final Process process;			//worker started by launch, or null
+
+	//Constructor that connects to a worker already listening on the given port
+	public RemoteShard(int port, Codec<K> keyCodec, Codec<V> valueCodec) throws IOException {
+		this(port, keyCodec, valueCodec, null);
+	}
+
+	private RemoteShard(int port, Codec<K> keyCodec, Codec<V> valueCodec, Process process)
+			throws IOException {
+		this.keyCodec = keyCodec;
+		this.valueCodec = valueCodec;
+		this.process = process;
+		socket = new Socket(InetAddress.getLoopbackAddress(), port);
+		socket.setTcpNoDelay(true);
+		in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+		out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+	}
+
+	/** Starts a ShardWorker in a new JVM with this JVM's class path and connects to it.
+	 *  The worker is stopped when the shard is closed
+	 * @return the connected shard */
+	public static <K extends Comparable<K>, V> RemoteShard<K, V> launch(Codec<K> keyCodec,
+			Codec<V> valueCodec) throws IOException {
+		String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+		Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+				"ShardWorker").redirectError(ProcessBuilder.Redirect.INHERIT).start();
+
+		//the worker's first line of output is its port
+		BufferedReader reader = new BufferedReader(
+				new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+		String line = reader.readLine();
+		if (line == null) {
+			process.destroy();
+			throw new IOException("Shard worker exited before reporting its port");
+		}
+		return new RemoteShard<>(Integer.parseInt(line.trim()), keyCodec, valueCodec, process);
+	}
+
+	@Override
+	public synchronized void put(K key, V value) {
+		try {
+			out.writeByte(ShardWorker.PUT);
+			out.writeInt(1);
+			writeEntry(key, value);
+			out.flush();
+			readStored(1);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public V get(K key) throws NoSuchElementException {
+		Map<K, V> found = getAll(List.of(key));
+		if (!found.containsKey(key)) {
+			throw new NoSuchElementException("The key does not exist in this hash table");
+		}
+		return found.get(key);
+	}
+
+	@Override
+	public synchronized void remove(K key) throws NoSuchElementException {
+		boolean removed;
+		try {
+			out.writeByte(ShardWorker.REMOVE);
+			ShardWorker.writeBytes(out, keyCodec.encode(key));
+			out.flush();
+			removed = in.readBoolean();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		if (!removed) {
+			throw new NoSuchElementException("The key does not exist in this hash table");
+		}
+	}
+
+	@Override
+	public synchronized int size() {
+		try {
+			out.writeByte(ShardWorker.SIZE);
+			out.flush();
+			return in.readInt();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public synchronized Map<K, V> getAll(Collection<K> keys) {
+		try {
+			List<K> sent = new ArrayList<>(keys);
+			out.writeByte(ShardWorker.GET);
+			out.writeInt(sent.size());
+			for (K key : sent) {
+				ShardWorker.writeBytes(out, keyCodec.encode(key));
+			}
+			out.flush();
+
+			Map<K, V> found = new HashMap<>();
+			int count = in.readInt();
+			for (int i = 0; i < count; i++) {
+				if (in.readBoolean()) {
+					found.put(sent.get(i), decodeValue(ShardWorker.readBytes(in)));
+				}
+			}
+			return found;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public synchronized void putAll(Map<K, V> entries) {
+		try {
+			out.writeByte(ShardWorker.PUT);
+			out.writeInt(entries.size());
+			for (Map.Entry<K, V> entry : entries.entrySet()) {
+				writeEntry(entry.getKey(), entry.getValue());
+			}
+			out.flush();
+			readStored(entries.size());
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public synchronized void removeAll(Collection<K> keys) {
+		try {
+			out.writeByte(ShardWorker.REMOVE_ALL);
+			out.writeInt(keys.size());
+			for (K key : keys) {
+				ShardWorker.writeBytes(out, keyCodec.encode(key));
+			}
+			out.flush();
+			in.readInt();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public synchronized Map<K, V> entries() {
+		try {
+			out.writeByte(ShardWorker.ENTRIES);
+			out.flush();
+			return readEntries();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/** The worker picks out the entries on the arcs, so only those are sent back */
+	@Override
+	public synchronized Map<K, V> entriesIn(ShardedHashTable.RingArcs arcs) {
+		try {
+			out.writeByte(ShardWorker.ENTRIES_IN);
+			arcs.writeTo(out);
+			out.flush();
+			return readEntries();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/** Disconnects, which ends the worker, and waits for a launched worker to exit */
+	@Override
+	public synchronized void close() throws IOException {
+		socket.close();
+		if (process != null) {
+			try {
+				process.waitFor();
+			} catch (InterruptedException e) {
+				process.destroy();
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	//
+	// Start of helper methods
+	//
+
+	/** Sends a key with its ring position, so the worker can answer entriesIn
+	 *  without decoding keys, followed by its value */
+	private void writeEntry(K key, V value) throws IOException {
+		ShardWorker.writeBytes(out, keyCodec.encode(key));
+		out.writeInt(ShardedHashTable.ringPosition(key));
+		ShardWorker.writeBytes(out, (value == null) ? null : valueCodec.encode(value));
+	}
+
+	/** Waits for the worker to confirm a PUT of count entries */
+	private void readStored(int count) throws IOException {
+		int stored = in.readInt();
+		if (stored != count) {
+			throw new IOException("Shard worker stored " + stored + " of " + count + " entries");
+		}
+	}
+
+	/** Reads a count and then that many (key, value) pairs
+	 * @return the entries */
+	private Map<K, V> readEntries() throws IOException {
+		int count = in.readInt();
+		Map<K, V> entries = new HashMap<>();
+		for (int i = 0; i < count; i++) {
+			byte[] key = ShardWorker.readBytes(in);
+			entries.put(keyCodec.decode(key, 0, key.length), decodeValue(ShardWorker.readBytes(in)));
+		}
+		return entries;
+	}
+
+	private V decodeValue(byte[] bytes) {
+		return (bytes == null) ? null : valueCodec.decode(bytes, 0, bytes.length);
+	}
+}
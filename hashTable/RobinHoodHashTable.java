@@ -0,0 +1,284 @@
+/**
+ * Filename:   RobinHoodHashTable.java
+ * Project:    p3
+ * Authors:    Kelly East
+ *
+ * Version:    1.0
+ *
+ * Credits:    Celis, "Robin Hood Hashing" (1986) for the probing scheme
+ * 			   Backward shift deletion as described on codecapsule.com
+ *
+ * Bugs:       No known bugs
+ */
+
+
+import java.util.NoSuchElementException;
+
+
+// This is a second implementation of HashTableADT that uses open addressing instead of
+// chained buckets. Keys, values and hash codes are stored in three parallel arrays, so
+// a lookup reads neighbouring slots instead of following next pointers from node to node.
+//
+// Collisions are handled with Robin Hood linear probing:
+// 		1) each key has a "home" slot given by its hash code
+//		2) while probing for a place to insert, if we find an entry that is closer to
+//		   its home slot than the entry we are carrying, the two are swapped and we
+//		   keep going with the displaced entry ("take from the rich")
+//		3) this keeps probe lengths short and even, and lets get() stop early as soon
+//		   as it sees an entry that is closer to home than the key being searched for
+//
+// Removal uses backward shift deletion: the entries after the removed slot are moved
+// back by one until we reach an empty slot or an entry already in its home slot. This
+// means no tombstones are ever left in the table.
+
+public class RobinHoodHashTable<K extends Comparable<K>, V> implements HashTableADT<K, V> {
+
+	//hash code stored in a slot with no entry. Real hash codes are forced to be non-zero
+	private static final int EMPTY = 0;
+
+	//instance variables for RobinHoodHashTable
+	private Object[] keys;		//keys stored in each slot
+	private Object[] values;	//values stored in each slot
+	private int[] hashes;		//cached hash code for each slot, EMPTY if unused
+	private int mask;			//number of slots - 1 (number of slots is a power of two)
+	private int size;			//number of keys in the table
+	private double loadFactor;	//used to determine when to resize
+	private int threshold;		//size at which the table is resized
+
+	//no-arg constructor
+	public RobinHoodHashTable() {
+		this(16, 0.75);
+	}
+
+	//Constructor that accepts initial capacity and load factor
+	public RobinHoodHashTable(int initialCapacity, double loadFactor) {
+		if (initialCapacity < 0) {
+			throw new IllegalArgumentException("Initial capacity cannot be negative");
+		}
+		if (loadFactor <= 0 || loadFactor >= 1 || Double.isNaN(loadFactor)) {
+			//open addressing needs at least one empty slot to stop a probe
+			throw new IllegalArgumentException("Load factor must be between 0 and 1");
+		}
+		this.loadFactor = loadFactor;
+		allocate(HashTableSizes.tableSizeFor(initialCapacity));
+	}
+
+	/** insert a <key,value> pair entry into the hash table
+	 * if the key already exists in the table,
+	 * replace existing value for that key with the
+	 * value specified in this call to put.
+	 *
+	 * permits null values but not null keys and permits the same value
+	 * to be paired with different key
+	 *
+	 * throw IllegalArgumentException when key is null
+	 */
+	@Override
+	public void put(K key, V value) throws IllegalArgumentException {
+		//handle null keys
+		if (key == null) {
+			throw new IllegalArgumentException("Cannot insert a null key");
+		}
+
+		int hash = hash(key);
+		int index = findIndex(key, hash);
+		if (index >= 0) {
+			//the key already exists, we just want to update the value
+			values[index] = value;
+			return;
+		}
+
+		//make room first so the new entry is placed in the final table
+		if (size + 1 > threshold) {
+			resize();
+		}
+		insert(hash, key, value);
+		size++;
+	}
+
+	/** return the value associated with the given key.
+	 * throw IllegalArgumentException if key is null
+	 * throw NoSuchElementException if key does not exist
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public V get(K key) throws IllegalArgumentException, NoSuchElementException {
+		//handle null keys
+		if (key == null) {
+			throw new IllegalArgumentException("Cannot get a null key");
+		}
+
+		int index = findIndex(key, hash(key));
+		if (index < 0) {
+			throw new NoSuchElementException("The key does not exist in this hash table");
+		}
+		return (V) values[index];
+	}
+
+	/** remove the (key,value) entry for the specified key
+	 * throw IllegalArgumentException if key is null
+	 * throw NoSuchElementException if key does not exist in the tree
+	 */
+	@Override
+	public void remove(K key) throws IllegalArgumentException, NoSuchElementException {
+		//handle null keys
+		if (key == null) {
+			throw new IllegalArgumentException("Cannot remove a null key");
+		}
+
+		int index = findIndex(key, hash(key));
+		if (index < 0) {
+			throw new NoSuchElementException("The key does not exist in this hash table");
+		}
+
+		//backward shift: pull every following entry that is not in its home slot
+		//back by one, stopping at an empty slot or an entry that is already home
+		int next = (index + 1) & mask;
+		while (hashes[next] != EMPTY && probeDistance(hashes[next], next) > 0) {
+			hashes[index] = hashes[next];
+			keys[index] = keys[next];
+			values[index] = values[next];
+			index = next;
+			next = (next + 1) & mask;
+		}
+
+		//clear the last slot that was shifted (or the removed slot itself)
+		hashes[index] = EMPTY;
+		keys[index] = null;
+		values[index] = null;
+		size--;
+	}
+
+	/** @return  the number of keys in the hash table */
+	@Override
+	public int size() {
+		return size;
+	}
+
+	//
+	// Start of helper methods
+	//
+
+	/** Spreads the java hashCode so the low bits used for the slot index depend on
+	 *  the high bits as well. Zero is reserved to mark an empty slot.
+	 * @return the hash code used by this table */
+	private static int hash(Object key) {
+		int h = key.hashCode();
+		h ^= (h >>> 16);
+		return (h == EMPTY) ? 1 : h;
+	}
+
+	/** Distance of the entry stored at index from its home slot
+	 * @return the probe distance */
+	private int probeDistance(int hash, int index) {
+		return (index - hash) & mask;
+	}
+
+	/** Looks up the slot holding key. The search stops at an empty slot or once we
+	 *  pass the point where key would have displaced the stored entry.
+	 * @return the slot index, or -1 if the key does not exist */
+	private int findIndex(Object key, int hash) {
+		int index = hash & mask;
+		int distance = 0;
+		while (true) {
+			int slotHash = hashes[index];
+			if (slotHash == EMPTY || probeDistance(slotHash, index) < distance) {
+				return -1;
+			}
+			if (slotHash == hash && keys[index].equals(key)) {
+				return index;
+			}
+			index = (index + 1) & mask;
+			distance++;
+		}
+	}
+
+	/** Places a key that is known not to be in the table, swapping with any entry
+	 *  that is closer to its home slot than the entry being carried. */
+	private void insert(int hash, Object key, Object value) {
+		int index = hash & mask;
+		int distance = 0;
+		while (true) {
+			int slotHash = hashes[index];
+			if (slotHash == EMPTY) {
+				hashes[index] = hash;
+				keys[index] = key;
+				values[index] = value;
+				return;
+			}
+
+			int slotDistance = probeDistance(slotHash, index);
+			if (slotDistance < distance) {
+				//take the slot from the "richer" entry and keep placing that one
+				Object slotKey = keys[index];
+				Object slotValue = values[index];
+				hashes[index] = hash;
+				keys[index] = key;
+				values[index] = value;
+				hash = slotHash;
+				key = slotKey;
+				value = slotValue;
+				distance = slotDistance;
+			}
+			index = (index + 1) & mask;
+			distance++;
+		}
+	}
+
+	/** Doubles the number of slots and re-inserts every entry using its cached hash */
+	private void resize() {
+		Object[] oldKeys = keys;
+		Object[] oldValues = values;
+		int[] oldHashes = hashes;
+
+		allocate(oldHashes.length * 2);
+		for (int i = 0; i < oldHashes.length; i++) {
+			if (oldHashes[i] != EMPTY) {
+				insert(oldHashes[i], oldKeys[i], oldValues[i]);
+			}
+		}
+	}
+
+	/** Sets up empty arrays with the given number of slots */
+	private void allocate(int capacity) {
+		keys = new Object[capacity];
+		values = new Object[capacity];
+		hashes = new int[capacity];
+		mask = capacity - 1;
+		//always leave at least one slot empty so probes terminate
+		threshold = Math.min((int) (capacity * loadFactor), capacity - 1);
+	}
+
+	//This is just used for testing
+	public static void main(String args[]) {
+		RobinHoodHashTable<String, Integer> map = new RobinHoodHashTable<>(3, 0.75);
+        map.put("this",1 );
+        map.put("coder",2 );
+        map.put("this",4 );
+        map.put("hi",5 );
+        map.put("kelly",28 );
+        map.put("lauren",24 );
+        map.put("matt",29 );
+        map.put("chewie",3 );
+        System.out.println("Hash table size = " + map.size() + " (expected 7)");
+        System.out.println("get(this) = " + map.get("this") + " (expected 4)");
+        map.remove("matt");
+        map.remove("this");
+        System.out.println("Hash table size = " + map.size() + " (expected 5)");
+        System.out.println("get(chewie) = " + map.get("chewie") + " (expected 3)");
+
+        RobinHoodHashTable<Integer, Integer> map2 = new RobinHoodHashTable<>();
+        for (int i = 0; i < 10000; i++) {
+        	map2.put(i, i * 2);
+        }
+        for (int i = 0; i < 10000; i += 2) {
+        	map2.remove(i);
+        }
+        boolean passed = map2.size() == 5000;
+        for (int i = 1; i < 10000; i += 2) {
+        	passed &= map2.get(i) == i * 2;
+        }
+        System.out.println("Insert/remove of 10000 integers " + (passed ? "passed" : "failed"));
+	}
+
+}
@@ -0,0 +1,193 @@
+/**
+ * Filename:   ShardWorker.java
+ * Project:    p3
+ * Authors:    Kelly East
+ *
+ * Version:    1.0
+ *
+ * Bugs:       No known bugs
+ */
+
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+
+// A worker process holding one shard of a ShardedHashTable. It is started by
+// RemoteShard.launch, prints the port it listens on, serves one connection from that
+// RemoteShard and exits when the connection closes.
+//
+// The worker never decodes keys or values; it stores the bytes the client's Codecs
+// made. Keys are held as ISO-8859-1 strings, which map each byte to one char, so two
+// keys are equal exactly when their bytes are.
+//
+// Every message is one operation byte followed by its arguments. A byte array is sent
+// as its length and then its bytes, with length -1 for a null value. PUT sends each
+// key's ring position with it, which the worker keeps so that ENTRIES_IN can pick out
+// the keys on a set of ring arcs:
+//		PUT        count, then count (key, position, value)  -> number stored
+//		GET        count, then count keys                    -> count (found, value) pairs
+//		REMOVE     key                                       -> removed (0 or 1)
+//		REMOVE_ALL count, then count keys                    -> number removed
+//		SIZE                                                 -> size
+//		ENTRIES                                              -> count, then (key, value) pairs
+//		ENTRIES_IN count, then count (low, high) arcs        -> count, then (key, value) pairs
+
+public class ShardWorker {
+
+	//operation codes, shared with RemoteShard
+	static final byte PUT = 1;
+	static final byte GET = 2;
+	static final byte REMOVE = 3;
+	static final byte REMOVE_ALL = 4;
+	static final byte SIZE = 5;
+	static final byte ENTRIES = 6;
+	static final byte ENTRIES_IN = 7;
+
+	/** A stored value and the ring position of its key */
+	private static final class Stored {
+		private final int position;
+		private final byte[] value;
+
+		Stored(int position, byte[] value) {
+			this.position = position;
+			this.value = value;
+		}
+	}
+
+	//this worker's shard
+	private final HashTable<String, Stored> table = new HashTable<>();
+
+	/** Answers requests until the client disconnects */
+	private void serve(Socket socket) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+		while (true) {
+			byte operation;
+			try {
+				operation = in.readByte();
+			} catch (EOFException e) {
+				return;
+			}
+
+			switch (operation) {
+				case PUT: {
+					int count = in.readInt();
+					for (int i = 0; i < count; i++) {
+						String key = toKey(readBytes(in));
+						int position = in.readInt();
+						table.put(key, new Stored(position, readBytes(in)));
+					}
+					out.writeInt(count);
+					break;
+				}
+				case GET: {
+					int count = in.readInt();
+					out.writeInt(count);
+					for (int i = 0; i < count; i++) {
+						String key = toKey(readBytes(in));
+						boolean found = table.containsKey(key);
+						out.writeBoolean(found);
+						if (found) {
+							writeBytes(out, table.get(key).value);
+						}
+					}
+					break;
+				}
+				case REMOVE:
+					out.writeBoolean(table.removeIfPresent(toKey(readBytes(in))));
+					break;
+				case REMOVE_ALL: {
+					int count = in.readInt();
+					int removed = 0;
+					for (int i = 0; i < count; i++) {
+						removed += table.removeIfPresent(toKey(readBytes(in))) ? 1 : 0;
+					}
+					out.writeInt(removed);
+					break;
+				}
+				case SIZE:
+					out.writeInt(table.size());
+					break;
+				case ENTRIES:
+					writeEntries(out, table.size(), table.entries().iterator());
+					break;
+				case ENTRIES_IN: {
+					ShardedHashTable.RingArcs arcs = ShardedHashTable.RingArcs.readFrom(in);
+					List<Map.Entry<String, Stored>> onArcs = table.entries()
+							.filter(entry -> arcs.contains(entry.getValue().position))
+							.collect(Collectors.toList());
+					writeEntries(out, onArcs.size(), onArcs.iterator());
+					break;
+				}
+				default:
+					throw new IOException("Unknown operation " + operation);
+			}
+			out.flush();
+		}
+	}
+
+	/** Writes count and then that many (key, value) pairs from entries */
+	private static void writeEntries(DataOutputStream out, int count,
+			Iterator<Map.Entry<String, Stored>> entries) throws IOException {
+		out.writeInt(count);
+		while (entries.hasNext()) {
+			Map.Entry<String, Stored> entry = entries.next();
+			writeBytes(out, entry.getKey().getBytes(StandardCharsets.ISO_8859_1));
+			writeBytes(out, entry.getValue().value);
+		}
+	}
+
+	private static String toKey(byte[] bytes) {
+		return new String(bytes, StandardCharsets.ISO_8859_1);
+	}
+
+	/** Writes a byte array as its length and its bytes, or -1 for null */
+	static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+		if (bytes == null) {
+			out.writeInt(-1);
+			return;
+		}
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	/** Reads a byte array written by writeBytes
+	 * @return the bytes, or null */
+	static byte[] readBytes(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if (length < 0) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return bytes;
+	}
+
+	/** main method: listens on the port given (or any free port), prints it, and
+	 *  serves the first connection */
+	public static void main(String[] args) throws IOException {
+		int port = (args.length > 0) ? Integer.parseInt(args[0]) : 0;
+		try (ServerSocket server = new ServerSocket(port, 1, InetAddress.getLoopbackAddress())) {
+			System.out.println(server.getLocalPort());
+			System.out.flush();
+			try (Socket socket = server.accept()) {
+				socket.setTcpNoDelay(true);
+				new ShardWorker().serve(socket);
+			}
+		}
+	}
+}
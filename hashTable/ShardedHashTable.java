@@ -0,0 +1,524 @@
+/**
+ * Filename:   ShardedHashTable.java
+ * Project:    p3
+ * Authors:    Kelly East
+ *
+ * Version:    1.0
+ *
+ * Credits:    Karger et al., "Consistent Hashing and Random Trees" (1997)
+ * 			   DeCandia et al., "Dynamo: Amazon's Highly Available Key-value Store"
+ * 			   (2007) for virtual nodes
+ *
+ * Bugs:       No known bugs
+ */
+
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+
+// A hash table spread over several shards, for data that does not fit in one heap.
+// A shard is either a HashTable in this process (LocalShard) or a separate worker
+// process reached over a socket (RemoteShard and ShardWorker).
+//
+// Keys are given to shards with a consistent hash ring:
+// 		1) each shard is placed on a ring of 2^32 positions at virtualNodes points,
+//		   found by hashing the shard's name with a point number
+//		2) a key is hashed onto the same ring, and belongs to the first shard point
+//		   at or after it (wrapping around at the end)
+// Adding a shard only takes over the keys just before its own points, about 1/N of
+// them. addShard asks each shard for just the keys on those arcs of the ring (a
+// RemoteShard's worker picks them out itself), copies them to the new shard and only
+// then removes them from the old one. removeShard hands a shard's keys to its
+// neighbours. The many points per shard keep the shares even.
+//
+// getAll and putAll group their keys by shard and send one batch to each shard, all
+// shards at once on a thread pool. Each shard is only ever used by one thread at a
+// time, but this class itself is not thread safe.
+
+public class ShardedHashTable<K extends Comparable<K>, V> implements HashTableADT<K, V>, Closeable {
+
+	/** One part of a sharded table. Besides the single key operations a shard
+	 *  handles batches, so a remote shard needs one round trip per batch */
+	public interface Shard<K extends Comparable<K>, V> extends HashTableADT<K, V>, Closeable {
+
+		/** @return the keys found and their values. Missing keys are left out */
+		public Map<K, V> getAll(Collection<K> keys);
+
+		/** Inserts or replaces every entry */
+		public void putAll(Map<K, V> entries);
+
+		/** Removes every key that exists, ignoring the rest */
+		public void removeAll(Collection<K> keys);
+
+		/** @return a copy of every entry in the shard */
+		public Map<K, V> entries();
+
+		/** @return a copy of every entry whose key's ring position is in arcs */
+		public Map<K, V> entriesIn(RingArcs arcs);
+	}
+
+	/** A set of arcs of the ring, each a range of ring positions. addShard uses
+	 *  one to ask a shard for the keys that belong to the new shard */
+	public static final class RingArcs {
+		private final int[] lows;		//first position of each arc, in increasing order
+		private final int[] highs;		//last position of each arc (inclusive)
+
+		private RingArcs(int[] lows, int[] highs) {
+			this.lows = lows;
+			this.highs = highs;
+		}
+
+		/** @return the arcs owned by the named shard: from just after the point
+		 *  before each of its points up to that point, wrapping at the end */
+		static RingArcs ownedBy(TreeMap<Integer, String> ring, String name) {
+			List<int[]> arcs = new ArrayList<>();
+			for (Map.Entry<Integer, String> point : ring.entrySet()) {
+				if (!point.getValue().equals(name)) {
+					continue;
+				}
+				int end = point.getKey();
+				Integer before = ring.lowerKey(end);
+				int start = (before != null) ? before : ring.lastKey();
+				if (start == end) {
+					//the only point on the ring owns all of it
+					arcs.add(new int[] {Integer.MIN_VALUE, Integer.MAX_VALUE});
+				}
+				else if (start < end) {
+					arcs.add(new int[] {start + 1, end});
+				}
+				else {
+					//wraps past the end of the ring
+					if (start != Integer.MAX_VALUE) {
+						arcs.add(new int[] {start + 1, Integer.MAX_VALUE});
+					}
+					arcs.add(new int[] {Integer.MIN_VALUE, end});
+				}
+			}
+			arcs.sort((a, b) -> Integer.compare(a[0], b[0]));
+
+			int[] lows = new int[arcs.size()];
+			int[] highs = new int[arcs.size()];
+			for (int i = 0; i < lows.length; i++) {
+				lows[i] = arcs.get(i)[0];
+				highs[i] = arcs.get(i)[1];
+			}
+			return new RingArcs(lows, highs);
+		}
+
+		/** @return true if the ring position is on one of the arcs */
+		public boolean contains(int position) {
+			//the arcs do not overlap, so only the last one starting at or before
+			//position can hold it
+			int index = Arrays.binarySearch(lows, position);
+			if (index < 0) {
+				index = -index - 2;
+			}
+			return index >= 0 && position <= highs[index];
+		}
+
+		/** @return true if the key's ring position is on one of the arcs */
+		public boolean containsKey(Object key) {
+			return contains(ringPosition(key));
+		}
+
+		/** Sends the arcs to a ShardWorker */
+		void writeTo(DataOutputStream out) throws IOException {
+			out.writeInt(lows.length);
+			for (int i = 0; i < lows.length; i++) {
+				out.writeInt(lows[i]);
+				out.writeInt(highs[i]);
+			}
+		}
+
+		/** Reads arcs written by writeTo
+		 * @return the arcs */
+		static RingArcs readFrom(DataInputStream in) throws IOException {
+			int count = in.readInt();
+			int[] lows = new int[count];
+			int[] highs = new int[count];
+			for (int i = 0; i < count; i++) {
+				lows[i] = in.readInt();
+				highs[i] = in.readInt();
+			}
+			return new RingArcs(lows, highs);
+		}
+	}
+
+	/** A shard held in this process, backed by a HashTable */
+	public static class LocalShard<K extends Comparable<K>, V> implements Shard<K, V> {
+		private final HashTable<K, V> table = new HashTable<>();
+
+		public void put(K key, V value) {
+			table.put(key, value);
+		}
+
+		public V get(K key) {
+			return table.get(key);
+		}
+
+		public void remove(K key) {
+			table.remove(key);
+		}
+
+		public int size() {
+			return table.size();
+		}
+
+		public Map<K, V> getAll(Collection<K> keys) {
+			Map<K, V> found = new HashMap<>();
+			for (K key : keys) {
+				if (table.containsKey(key)) {
+					found.put(key, table.get(key));
+				}
+			}
+			return found;
+		}
+
+		public void putAll(Map<K, V> entries) {
+			table.putAll(entries);
+		}
+
+		public void removeAll(Collection<K> keys) {
+			for (K key : keys) {
+				table.removeIfPresent(key);
+			}
+		}
+
+		public Map<K, V> entries() {
+			Map<K, V> copy = new HashMap<>();
+			table.entries().forEach(entry -> copy.put(entry.getKey(), entry.getValue()));
+			return copy;
+		}
+
+		public Map<K, V> entriesIn(RingArcs arcs) {
+			Map<K, V> copy = new HashMap<>();
+			table.entries().filter(entry -> arcs.containsKey(entry.getKey()))
+					.forEach(entry -> copy.put(entry.getKey(), entry.getValue()));
+			return copy;
+		}
+
+		public void close() {
+		}
+	}
+
+	//instance variables for ShardedHashTable
+	private final TreeMap<Integer, String> ring;		//ring position -> shard name
+	private final Map<String, Shard<K, V>> shards;		//shard name -> shard
+	private final int virtualNodes;						//ring points per shard
+	private final ExecutorService pool;					//runs batches on many shards at once
+
+	//Constructor for a table with no shards yet; add them with addShard
+	public ShardedHashTable(int virtualNodes) {
+		if (virtualNodes < 1) {
+			throw new IllegalArgumentException("Each shard needs at least one virtual node");
+		}
+		this.virtualNodes = virtualNodes;
+		ring = new TreeMap<>();
+		shards = new LinkedHashMap<>();
+		pool = Executors.newCachedThreadPool(runnable -> {
+			Thread thread = new Thread(runnable, "shard-batch");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/** Adds a shard and moves to it the keys it now owns, about 1/N of them.
+	 * Each existing shard sends only the keys on the new shard's arcs. They are
+	 * all stored in the new shard before any is removed from the old ones, so if
+	 * copying fails the shard is taken off the ring again and no key is lost
+	 * @return the number of keys moved
+	 * throw IllegalArgumentException if the name is already in use
+	 */
+	public int addShard(String name, Shard<K, V> shard) throws IllegalArgumentException {
+		if (name == null || shard == null || shards.containsKey(name)) {
+			throw new IllegalArgumentException("Shard needs a new, non-null name");
+		}
+		for (int point = 0; point < virtualNodes; point++) {
+			//step past any position another point already holds
+			int position = mix((name + "#" + point).hashCode());
+			while (ring.containsKey(position)) {
+				position++;
+			}
+			ring.put(position, name);
+		}
+		if (shards.isEmpty()) {
+			shards.put(name, shard);
+			return 0;
+		}
+
+		RingArcs arcs = RingArcs.ownedBy(ring, name);
+		Map<Shard<K, V>, Collection<K>> taken = new LinkedHashMap<>();
+		try {
+			for (Shard<K, V> other : shards.values()) {
+				Map<K, V> entries = other.entriesIn(arcs);
+				if (!entries.isEmpty()) {
+					shard.putAll(entries);
+					taken.put(other, new ArrayList<>(entries.keySet()));
+				}
+			}
+		} catch (RuntimeException e) {
+			ring.values().removeIf(name::equals);
+			throw e;
+		}
+		shards.put(name, shard);
+
+		int moved = 0;
+		for (Map.Entry<Shard<K, V>, Collection<K>> copied : taken.entrySet()) {
+			copied.getKey().removeAll(copied.getValue());
+			moved += copied.getValue().size();
+		}
+		return moved;
+	}
+
+	/** Removes a shard, handing its keys to the shards that now own them, and
+	 * closes it
+	 * @return the number of keys moved
+	 * throw IllegalArgumentException if there is no such shard, or it is the last one
+	 */
+	public int removeShard(String name) throws IllegalArgumentException, IOException {
+		Shard<K, V> shard = shards.get(name);
+		if (shard == null || shards.size() == 1) {
+			throw new IllegalArgumentException("Cannot remove shard " + name);
+		}
+		ring.values().removeIf(name::equals);
+		shards.remove(name);
+
+		Map<K, V> entries = shard.entries();
+		putAll(entries);
+		shard.close();
+		return entries.size();
+	}
+
+	/** insert a <key,value> pair entry into the shard that owns the key
+	 * throw IllegalArgumentException when key is null
+	 */
+	@Override
+	public void put(K key, V value) throws IllegalArgumentException {
+		//handle null keys
+		if (key == null) {
+			throw new IllegalArgumentException("Cannot insert a null key");
+		}
+		shardFor(key).put(key, value);
+	}
+
+	/** return the value associated with the given key.
+	 * throw IllegalArgumentException if key is null
+	 * throw NoSuchElementException if key does not exist
+	 */
+	@Override
+	public V get(K key) throws IllegalArgumentException, NoSuchElementException {
+		//handle null keys
+		if (key == null) {
+			throw new IllegalArgumentException("Cannot get a null key");
+		}
+		return shardFor(key).get(key);
+	}
+
+	/** remove the (key,value) entry for the specified key
+	 * throw IllegalArgumentException if key is null
+	 * throw NoSuchElementException if key does not exist
+	 */
+	@Override
+	public void remove(K key) throws IllegalArgumentException, NoSuchElementException {
+		//handle null keys
+		if (key == null) {
+			throw new IllegalArgumentException("Cannot remove a null key");
+		}
+		shardFor(key).remove(key);
+	}
+
+	/** @return  the number of keys in all shards */
+	@Override
+	public int size() {
+		int size = 0;
+		for (Shard<K, V> shard : shards.values()) {
+			size += shard.size();
+		}
+		return size;
+	}
+
+	/** Looks up many keys, sending one batch to each shard with all shards
+	 * working at once
+	 * @return the keys found and their values. Missing keys are left out
+	 * throw IllegalArgumentException if any key is null
+	 */
+	public Map<K, V> getAll(Collection<K> keys) throws IllegalArgumentException {
+		Map<String, List<K>> batches = new HashMap<>();
+		for (K key : keys) {
+			if (key == null) {
+				throw new IllegalArgumentException("Cannot get a null key");
+			}
+			batches.computeIfAbsent(ownerOf(key), name -> new ArrayList<>()).add(key);
+		}
+
+		List<Future<Map<K, V>>> results = new ArrayList<>();
+		for (Map.Entry<String, List<K>> batch : batches.entrySet()) {
+			Shard<K, V> shard = shards.get(batch.getKey());
+			results.add(pool.submit(() -> shard.getAll(batch.getValue())));
+		}
+		Map<K, V> found = new HashMap<>();
+		for (Future<Map<K, V>> result : results) {
+			found.putAll(await(result));
+		}
+		return found;
+	}
+
+	/** Inserts or replaces many entries, sending one batch to each shard with
+	 * all shards working at once
+	 * throw IllegalArgumentException if any key is null
+	 */
+	public void putAll(Map<K, V> entries) throws IllegalArgumentException {
+		Map<String, Map<K, V>> batches = new HashMap<>();
+		for (Map.Entry<K, V> entry : entries.entrySet()) {
+			if (entry.getKey() == null) {
+				throw new IllegalArgumentException("Cannot insert a null key");
+			}
+			batches.computeIfAbsent(ownerOf(entry.getKey()), name -> new HashMap<>())
+					.put(entry.getKey(), entry.getValue());
+		}
+
+		List<Future<Object>> results = new ArrayList<>();
+		for (Map.Entry<String, Map<K, V>> batch : batches.entrySet()) {
+			Shard<K, V> shard = shards.get(batch.getKey());
+			results.add(pool.submit(() -> {
+				shard.putAll(batch.getValue());
+				return null;
+			}));
+		}
+		for (Future<Object> result : results) {
+			await(result);
+		}
+	}
+
+	/** @return the number of keys held by each shard, by name */
+	public Map<String, Integer> shardSizes() {
+		Map<String, Integer> sizes = new LinkedHashMap<>();
+		for (Map.Entry<String, Shard<K, V>> shard : shards.entrySet()) {
+			sizes.put(shard.getKey(), shard.getValue().size());
+		}
+		return sizes;
+	}
+
+	/** Closes every shard and the batch thread pool */
+	@Override
+	public void close() throws IOException {
+		pool.shutdown();
+		for (Shard<K, V> shard : shards.values()) {
+			shard.close();
+		}
+		shards.clear();
+		ring.clear();
+	}
+
+	//
+	// Start of helper methods
+	//
+
+	/** Scrambles a hashCode so nearby values land far apart on the ring
+	 *  (the finalizer of MurmurHash3)
+	 * @return the ring position */
+	private static int mix(int h) {
+		h ^= h >>> 16;
+		h *= 0x85EBCA6B;
+		h ^= h >>> 13;
+		h *= 0xC2B2AE35;
+		h ^= h >>> 16;
+		return h;
+	}
+
+	/** Places a key on the ring. RemoteShard sends this along with each key so
+	 *  its worker can pick out the keys on a set of arcs
+	 * @return the key's ring position */
+	static int ringPosition(Object key) {
+		return mix(key.hashCode());
+	}
+
+	/** @return the name of the shard that owns key: the first shard point at or
+	 *  after the key's ring position, wrapping around to the first point */
+	private String ownerOf(K key) {
+		if (ring.isEmpty()) {
+			throw new IllegalStateException("The table has no shards");
+		}
+		Map.Entry<Integer, String> point = ring.ceilingEntry(ringPosition(key));
+		return (point != null) ? point.getValue() : ring.firstEntry().getValue();
+	}
+
+	private Shard<K, V> shardFor(K key) {
+		return shards.get(ownerOf(key));
+	}
+
+	/** Waits for a batch, passing on any exception it threw
+	 * @return the batch's result */
+	private static <T> T await(Future<T> result) {
+		try {
+			return result.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted waiting for a shard", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IllegalStateException("Shard failed", e.getCause());
+		}
+	}
+
+	//This is just used for testing. Pass "remote" to also run shards in worker processes
+	public static void main(String args[]) throws IOException {
+		ShardedHashTable<String, Integer> table = new ShardedHashTable<>(128);
+		for (int i = 0; i < 4; i++) {
+			table.addShard("local-" + i, new LocalShard<>());
+		}
+		Map<String, Integer> wines = new HashMap<>();
+		for (int i = 0; i < 100000; i++) {
+			wines.put("wine-" + i, i);
+		}
+		table.putAll(wines);
+		System.out.println("Shard sizes: " + table.shardSizes());
+
+		int moved = table.addShard("local-4", new LocalShard<>());
+		System.out.println("Adding a fifth shard moved " + moved + " of " + table.size()
+				+ " keys (expected about 1/5)");
+		moved = table.removeShard("local-1");
+		System.out.println("Removing a shard moved " + moved + " keys");
+
+		boolean passed = table.size() == 100000;
+		Map<String, Integer> found = table.getAll(wines.keySet());
+		passed &= found.equals(wines);
+		table.remove("wine-7");
+		passed &= table.getAll(List.of("wine-7", "wine-8")).size() == 1;
+		System.out.println("Local shard test " + (passed ? "passed" : "failed"));
+		table.close();
+
+		if (args.length > 0 && args[0].equals("remote")) {
+			ShardedHashTable<String, Integer> remote = new ShardedHashTable<>(128);
+			for (int i = 0; i < 2; i++) {
+				remote.addShard("worker-" + i, RemoteShard.launch(Codec.STRING, Codec.INTEGER));
+			}
+			remote.putAll(wines);
+			moved = remote.addShard("worker-2", RemoteShard.launch(Codec.STRING, Codec.INTEGER));
+			System.out.println("Adding a third worker moved " + moved + " keys (expected about 1/3)");
+			System.out.println("Worker sizes: " + remote.shardSizes());
+			passed = remote.getAll(wines.keySet()).equals(wines) && remote.get("wine-42") == 42;
+			System.out.println("Remote shard test " + (passed ? "passed" : "failed"));
+			remote.close();
+		}
+	}
+
+}
@@ -0,0 +1,399 @@
+/**
+ * Filename:   StringArenaHashTable.java
+ * Project:    p3
+ * Authors:    Kelly East
+ *
+ * Version:    1.0
+ *
+ * Credits:    Knuth, The Art of Computer Programming Vol. 3, section 6.4 (Algorithm R,
+ * 			   deletion with linear probing)
+ *
+ * Bugs:       No known bugs
+ */
+
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+
+// This is a hash table specialized for String keys. A HashTable<String,V> holds a String
+// object, its byte array and a Node for every entry, which for a short key is several
+// times the size of the characters themselves. This table keeps no key objects at all:
+// the characters of every key are copied back to back into one growable byte array (the
+// arena), and each slot holds only the key's hash, its offset in the arena and its length
+// in int arrays, next to an array of values.
+//
+// A key whose characters all fit in one byte (any ASCII or Latin-1 string) takes one byte
+// per character; any other key takes two bytes per character, and its length is stored as
+// a negative number to say so. Lookups compare the stored hash and length first and then
+// the query's characters against the arena bytes in place, so a get never creates a
+// String.
+//
+// The slots use linear probing with backward shift removal, the same as IntObjHashTable.
+// A removed key leaves its bytes in the arena; once those dead bytes outweigh the live
+// ones the arena is compacted by copying the live keys to a new array.
+
+public class StringArenaHashTable<V> implements HashTableADT<String, V> {
+
+	//offset stored in a slot with no entry
+	private static final int FREE = -1;
+
+	//the arena is not compacted while it holds fewer dead bytes than this
+	private static final int MIN_COMPACT_BYTES = 1 << 16;
+
+	//instance variables for StringArenaHashTable
+	private int[] hashes;			//hash of the key in each slot
+	private int[] offsets;			//where each slot's key starts in the arena, or FREE
+	private int[] lengths;			//characters in each key, negative for two byte characters
+	private Object[] values;		//values stored in each slot
+	private int mask;				//number of slots - 1 (number of slots is a power of two)
+	private int size;				//number of keys in the table
+	private double loadFactor;		//used to determine when to resize
+	private int threshold;			//number of keys at which the table is resized
+	private byte[] arena;			//characters of every key, back to back
+	private int arenaSize;			//bytes of the arena in use
+	private int deadBytes;			//bytes of the arena belonging to removed keys
+
+	//no-arg constructor
+	public StringArenaHashTable() {
+		this(16, 0.75);
+	}
+
+	//Constructor that accepts initial capacity and load factor
+	public StringArenaHashTable(int initialCapacity, double loadFactor) {
+		if (initialCapacity < 0) {
+			throw new IllegalArgumentException("Initial capacity cannot be negative");
+		}
+		if (loadFactor <= 0 || loadFactor >= 1 || Double.isNaN(loadFactor)) {
+			throw new IllegalArgumentException("Load factor must be between 0 and 1");
+		}
+		this.loadFactor = loadFactor;
+		allocate(HashTableSizes.tableSizeFor(initialCapacity));
+		arena = new byte[Math.max(64, initialCapacity * 8)];
+	}
+
+	/** insert a <key,value> pair entry into the hash table
+	 * if the key already exists in the table, replace the existing value
+	 * permits null values but not null keys
+	 *
+	 * throw IllegalArgumentException when key is null
+	 */
+	@Override
+	public void put(String key, V value) throws IllegalArgumentException {
+		if (key == null) {
+			throw new IllegalArgumentException("Cannot insert a null key");
+		}
+
+		int hash = hash(key);
+		int index = hash & mask;
+		while (offsets[index] != FREE) {
+			if (hashes[index] == hash && keyEquals(index, key)) {
+				values[index] = value;
+				return;
+			}
+			index = (index + 1) & mask;
+		}
+
+		hashes[index] = hash;
+		storeKey(index, key);
+		values[index] = value;
+		size++;
+
+		if (size > threshold) {
+			resize();
+		}
+	}
+
+	/** return the value associated with the given key.
+	 * throw IllegalArgumentException if key is null
+	 * throw NoSuchElementException if key does not exist
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public V get(String key) throws IllegalArgumentException, NoSuchElementException {
+		if (key == null) {
+			throw new IllegalArgumentException("Cannot get a null key");
+		}
+		int index = find(key);
+		if (index == FREE) {
+			throw new NoSuchElementException("The key does not exist in this hash table");
+		}
+		return (V) values[index];
+	}
+
+	/** @return the value associated with key, or defaultValue if key does not exist
+	 * throw IllegalArgumentException if key is null */
+	@SuppressWarnings("unchecked")
+	public V getOrDefault(String key, V defaultValue) throws IllegalArgumentException {
+		if (key == null) {
+			throw new IllegalArgumentException("Cannot get a null key");
+		}
+		int index = find(key);
+		return (index == FREE) ? defaultValue : (V) values[index];
+	}
+
+	/** @return true if the key exists in the table
+	 * throw IllegalArgumentException if key is null */
+	public boolean containsKey(String key) throws IllegalArgumentException {
+		if (key == null) {
+			throw new IllegalArgumentException("Cannot search for a null key");
+		}
+		return find(key) != FREE;
+	}
+
+	/** remove the (key,value) entry for the specified key
+	 * throw IllegalArgumentException if key is null
+	 * throw NoSuchElementException if key does not exist
+	 */
+	@Override
+	public void remove(String key) throws IllegalArgumentException, NoSuchElementException {
+		if (key == null) {
+			throw new IllegalArgumentException("Cannot remove a null key");
+		}
+		int index = find(key);
+		if (index == FREE) {
+			throw new NoSuchElementException("The key does not exist in this hash table");
+		}
+		deadBytes += byteLength(lengths[index]);
+
+		//shift back any later entry whose home slot is at or before the freed slot
+		int next = (index + 1) & mask;
+		while (offsets[next] != FREE) {
+			int home = hashes[next] & mask;
+			if (((next - home) & mask) >= ((next - index) & mask)) {
+				hashes[index] = hashes[next];
+				offsets[index] = offsets[next];
+				lengths[index] = lengths[next];
+				values[index] = values[next];
+				index = next;
+			}
+			next = (next + 1) & mask;
+		}
+		offsets[index] = FREE;
+		values[index] = null;
+		size--;
+
+		if (deadBytes >= MIN_COMPACT_BYTES && deadBytes > arenaSize - deadBytes) {
+			compact();
+		}
+	}
+
+	/** @return  the number of keys in the hash table */
+	@Override
+	public int size() {
+		return size;
+	}
+
+	/** @return the number of bytes of the arena in use, including removed keys not yet
+	 * compacted away */
+	public int arenaBytes() {
+		return arenaSize;
+	}
+
+	//
+	// Start of helper methods
+	//
+
+	/** Uses the java hashCode function, which String caches, and scrambles it so keys
+	 *  that differ only in their last characters do not fill neighbouring slots
+	 * @return the hash stored for the key */
+	private static int hash(String key) {
+		int h = key.hashCode() * CapacityStrategy.GOLDEN_RATIO;
+		return h ^ (h >>> 16);
+	}
+
+	/** Finds the slot holding key without creating any objects
+	 * @return the slot, or FREE if the key does not exist */
+	private int find(String key) {
+		int hash = hash(key);
+		int index = hash & mask;
+		while (offsets[index] != FREE) {
+			if (hashes[index] == hash && keyEquals(index, key)) {
+				return index;
+			}
+			index = (index + 1) & mask;
+		}
+		return FREE;
+	}
+
+	/** Compares key with the characters stored in the arena for a slot
+	 * @return true if they are the same string */
+	private boolean keyEquals(int slot, String key) {
+		int length = lengths[slot];
+		int offset = offsets[slot];
+		if (length >= 0) {
+			if (key.length() != length) {
+				return false;
+			}
+			for (int i = 0; i < length; i++) {
+				if ((arena[offset + i] & 0xFF) != key.charAt(i)) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		if (key.length() != -length) {
+			return false;
+		}
+		for (int i = 0; i < -length; i++) {
+			char c = (char) (((arena[offset + 2 * i] & 0xFF) << 8) | (arena[offset + 2 * i + 1] & 0xFF));
+			if (c != key.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/** Copies the characters of key to the end of the arena and records where they are
+	 *  in the given slot */
+	private void storeKey(int slot, String key) {
+		int length = key.length();
+		boolean oneByte = true;
+		for (int i = 0; i < length && oneByte; i++) {
+			oneByte = key.charAt(i) <= 0xFF;
+		}
+
+		int bytes = oneByte ? length : 2 * length;
+		ensureArenaCapacity(bytes);
+		int offset = arenaSize;
+		if (oneByte) {
+			for (int i = 0; i < length; i++) {
+				arena[offset + i] = (byte) key.charAt(i);
+			}
+		}
+		else {
+			for (int i = 0; i < length; i++) {
+				char c = key.charAt(i);
+				arena[offset + 2 * i] = (byte) (c >>> 8);
+				arena[offset + 2 * i + 1] = (byte) c;
+			}
+		}
+		arenaSize += bytes;
+		offsets[slot] = offset;
+		lengths[slot] = oneByte ? length : -length;
+	}
+
+	/** @return the number of arena bytes used by a key with the given stored length */
+	private static int byteLength(int length) {
+		return (length >= 0) ? length : -2 * length;
+	}
+
+	/** Grows the arena, about doubling it, until bytes more will fit */
+	private void ensureArenaCapacity(int bytes) {
+		long needed = (long) arenaSize + bytes;
+		if (needed <= arena.length) {
+			return;
+		}
+		if (needed > Integer.MAX_VALUE - 8) {
+			throw new IllegalStateException("The key arena cannot hold more than 2GB");
+		}
+		long grown = Math.max(needed, 2L * arena.length);
+		arena = Arrays.copyOf(arena, (int) Math.min(grown, Integer.MAX_VALUE - 8));
+	}
+
+	/** Copies the keys still in the table to a new arena, dropping removed keys */
+	private void compact() {
+		byte[] compacted = new byte[Math.max(64, (arenaSize - deadBytes) * 2)];
+		int position = 0;
+		for (int i = 0; i < offsets.length; i++) {
+			if (offsets[i] != FREE) {
+				int bytes = byteLength(lengths[i]);
+				System.arraycopy(arena, offsets[i], compacted, position, bytes);
+				offsets[i] = position;
+				position += bytes;
+			}
+		}
+		arena = compacted;
+		arenaSize = position;
+		deadBytes = 0;
+	}
+
+	/** Doubles the number of slots and re-inserts every entry using its stored hash.
+	 *  The keys stay where they are in the arena */
+	private void resize() {
+		int[] oldHashes = hashes;
+		int[] oldOffsets = offsets;
+		int[] oldLengths = lengths;
+		Object[] oldValues = values;
+
+		allocate(oldOffsets.length * 2);
+		for (int i = 0; i < oldOffsets.length; i++) {
+			if (oldOffsets[i] != FREE) {
+				int index = oldHashes[i] & mask;
+				while (offsets[index] != FREE) {
+					index = (index + 1) & mask;
+				}
+				hashes[index] = oldHashes[i];
+				offsets[index] = oldOffsets[i];
+				lengths[index] = oldLengths[i];
+				values[index] = oldValues[i];
+			}
+		}
+	}
+
+	/** Sets up empty arrays with the given number of slots */
+	private void allocate(int capacity) {
+		hashes = new int[capacity];
+		offsets = new int[capacity];
+		Arrays.fill(offsets, FREE);
+		lengths = new int[capacity];
+		values = new Object[capacity];
+		mask = capacity - 1;
+		//always leave at least one slot empty so probes terminate
+		threshold = Math.min((int) (capacity * loadFactor), capacity - 1);
+	}
+
+	/** Measures the heap in use after a garbage collection
+	 * @return bytes of heap in use */
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	//This is just used for testing. Loads the same short ASCII keys into a HashTable and
+	//a StringArenaHashTable and compares the heap each one uses. Pass a number of keys
+	//as the first argument to change it from 1,000,000
+	public static void main(String[] args) {
+		int count = (args.length > 0) ? Integer.parseInt(args[0]) : 1_000_000;
+		Integer value = 1;
+
+		long before = usedHeap();
+		HashTable<String, Integer> table = new HashTable<>();
+		for (int i = 0; i < count; i++) {
+			table.put("sku-" + Integer.toString(i, 36), value);
+		}
+		long tableBytes = usedHeap() - before;
+		System.out.println("HashTable:            " + (tableBytes / count) + " bytes per key");
+		table = null;
+
+		before = usedHeap();
+		StringArenaHashTable<Integer> arenaTable = new StringArenaHashTable<>();
+		for (int i = 0; i < count; i++) {
+			arenaTable.put("sku-" + Integer.toString(i, 36), value);
+		}
+		long arenaTableBytes = usedHeap() - before;
+		System.out.println("StringArenaHashTable: " + (arenaTableBytes / count) + " bytes per key ("
+				+ (arenaTable.arenaBytes() / count) + " in the arena)");
+
+		//check lookups, including keys that need two bytes per character, and removal
+		boolean passed = arenaTable.size() == count;
+		arenaTable.put("caf\u00e9", 2);
+		arenaTable.put("\u6771\u4eac", 3);
+		passed &= arenaTable.get("caf\u00e9") == 2 && arenaTable.get("\u6771\u4eac") == 3;
+		passed &= !arenaTable.containsKey("\u6771") && !arenaTable.containsKey("sku-");
+		for (int i = 0; i < count; i += 2) {
+			arenaTable.remove("sku-" + Integer.toString(i, 36));
+		}
+		for (int i = 0; i < count; i++) {
+			String key = "sku-" + Integer.toString(i, 36);
+			passed &= arenaTable.containsKey(key) == (i % 2 == 1);
+		}
+		passed &= arenaTable.size() == count - (count + 1) / 2 + 2;
+		System.out.println("Lookups and removes " + (passed ? "passed" : "FAILED")
+				+ ", arena compacted to " + arenaTable.arenaBytes() + " bytes");
+	}
+}
@@ -0,0 +1,358 @@
+/**
+ * Filename:   SwissHashTable.java
+ * Project:    p3
+ * Authors:    Kelly East
+ *
+ * Version:    1.0
+ *
+ * Credits:    Abseil "Swiss Tables Design Notes" (abseil.io/about/design/swisstables)
+ * 			   Mycroft, "Finding zero bytes in a word" for the SWAR byte match
+ *
+ * Bugs:       No known bugs
+ */
+
+
+import java.util.NoSuchElementException;
+
+
+// An open addressing implementation of HashTableADT built for read heavy use, after
+// Google's SwissTable. Slots are split into groups of eight, and each slot has a
+// control byte saying whether it is
+// 		EMPTY     (0x80) - never used since the last rehash
+//		DELETED   (0xFE) - its entry was removed (a "tombstone")
+//		full      (0x00 - 0x7F) - it holds an entry, and the byte is 7 bits of the hash
+// The eight control bytes of a group are packed into one long. A lookup splits the
+// hash into a starting group (H1) and a 7 bit tag (H2), then checks all eight control
+// bytes of a group against the tag at once with a few word-wide operations (SWAR).
+// Only slots whose tag matches, about 1 in 128 of the others, have their key compared.
+// If the group also contains an EMPTY byte the key cannot be further along, so most
+// hits and misses read one control word and at most one key.
+//
+// Groups are probed in triangular order (1, 2, 3 ... groups along), which visits every
+// group when the number of groups is a power of two. A removal only leaves a tombstone
+// when its group has no EMPTY slot, since otherwise no probe can have passed it. A
+// rehash clears the tombstones, doubling the table only if it is actually full.
+
+public class SwissHashTable<K extends Comparable<K>, V> implements HashTableADT<K, V> {
+
+	private static final int GROUP_SIZE = 8;				//slots per group, one byte each in a long
+	private static final long EMPTY = 0x80L;				//control byte of an unused slot
+	private static final long DELETED = 0xFEL;				//control byte of a removed entry
+	private static final long LOW_BITS = 0x0101010101010101L;	//lowest bit of each byte
+	private static final long HIGH_BITS = 0x8080808080808080L;	//highest bit of each byte
+
+	//instance variables for SwissHashTable
+	private long[] control;		//control bytes, eight slots (one group) per long
+	private Object[] keys;		//keys stored in each slot
+	private Object[] values;	//values stored in each slot
+	private int groupMask;		//number of groups - 1 (a power of two)
+	private int size;			//number of keys in the table
+	private int tombstones;		//number of DELETED slots
+	private double loadFactor;	//used to determine when to rehash
+	private int growthLimit;	//most full and DELETED slots allowed before a rehash
+
+	//no-arg constructor. SwissTable runs fuller than most tables since a probe
+	//checks a whole group at a time
+	public SwissHashTable() {
+		this(16, 0.875);
+	}
+
+	//Constructor that accepts initial capacity and load factor
+	public SwissHashTable(int initialCapacity, double loadFactor) {
+		if (initialCapacity < 0) {
+			throw new IllegalArgumentException("Initial capacity cannot be negative");
+		}
+		if (loadFactor <= 0 || loadFactor >= 1 || Double.isNaN(loadFactor)) {
+			//open addressing needs at least one empty slot to stop a probe
+			throw new IllegalArgumentException("Load factor must be between 0 and 1");
+		}
+		this.loadFactor = loadFactor;
+		allocate(Math.max(1, HashTableSizes.tableSizeFor(initialCapacity) / GROUP_SIZE));
+	}
+
+	/** insert a <key,value> pair entry into the hash table
+	 * if the key already exists in the table,
+	 * replace existing value for that key with the
+	 * value specified in this call to put.
+	 *
+	 * permits null values but not null keys and permits the same value
+	 * to be paired with different key
+	 *
+	 * throw IllegalArgumentException when key is null
+	 */
+	@Override
+	public void put(K key, V value) throws IllegalArgumentException {
+		//handle null keys
+		if (key == null) {
+			throw new IllegalArgumentException("Cannot insert a null key");
+		}
+
+		int hash = hash(key);
+		int slot = findSlot(key, hash);
+		if (slot >= 0) {
+			//the key already exists, we just want to update the value
+			values[slot] = value;
+			return;
+		}
+
+		slot = findFreeSlot(hash);
+		if (controlByte(slot) == EMPTY && size + tombstones >= growthLimit) {
+			//filling an EMPTY slot would pass the limit, rehash first
+			rehash();
+			slot = findFreeSlot(hash);
+		}
+		if (controlByte(slot) == DELETED) {
+			tombstones--;
+		}
+		setControlByte(slot, tag(hash));
+		keys[slot] = key;
+		values[slot] = value;
+		size++;
+	}
+
+	/** return the value associated with the given key.
+	 * throw IllegalArgumentException if key is null
+	 * throw NoSuchElementException if key does not exist
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public V get(K key) throws IllegalArgumentException, NoSuchElementException {
+		//handle null keys
+		if (key == null) {
+			throw new IllegalArgumentException("Cannot get a null key");
+		}
+
+		int slot = findSlot(key, hash(key));
+		if (slot < 0) {
+			throw new NoSuchElementException("The key does not exist in this hash table");
+		}
+		return (V) values[slot];
+	}
+
+	/** return the value associated with the given key, or defaultValue if the
+	 * key does not exist
+	 * throw IllegalArgumentException if key is null
+	 */
+	@SuppressWarnings("unchecked")
+	public V getOrDefault(K key, V defaultValue) throws IllegalArgumentException {
+		//handle null keys
+		if (key == null) {
+			throw new IllegalArgumentException("Cannot get a null key");
+		}
+
+		int slot = findSlot(key, hash(key));
+		return (slot >= 0) ? (V) values[slot] : defaultValue;
+	}
+
+	/** @return true if the key exists in the hash table
+	 * throw IllegalArgumentException if key is null
+	 */
+	public boolean containsKey(K key) throws IllegalArgumentException {
+		//handle null keys
+		if (key == null) {
+			throw new IllegalArgumentException("Cannot search for a null key");
+		}
+
+		return findSlot(key, hash(key)) >= 0;
+	}
+
+	/** remove the (key,value) entry for the specified key
+	 * throw IllegalArgumentException if key is null
+	 * throw NoSuchElementException if key does not exist in the tree
+	 */
+	@Override
+	public void remove(K key) throws IllegalArgumentException, NoSuchElementException {
+		//handle null keys
+		if (key == null) {
+			throw new IllegalArgumentException("Cannot remove a null key");
+		}
+
+		int slot = findSlot(key, hash(key));
+		if (slot < 0) {
+			throw new NoSuchElementException("The key does not exist in this hash table");
+		}
+
+		if (matchEmpty(control[slot / GROUP_SIZE]) != 0) {
+			//no probe has gone past a group with an empty slot, so the slot
+			//can simply be empty again
+			setControlByte(slot, EMPTY);
+		}
+		else {
+			setControlByte(slot, DELETED);
+			tombstones++;
+		}
+		keys[slot] = null;
+		values[slot] = null;
+		size--;
+	}
+
+	/** @return  the number of keys in the hash table */
+	@Override
+	public int size() {
+		return size;
+	}
+
+	//
+	// Start of helper methods
+	//
+
+	/** Scrambles the java hashCode so both its high bits (the tag) and its low
+	 *  bits (the starting group) depend on every bit of the hashCode
+	 * @return the hash used by this table */
+	private static int hash(Object key) {
+		int h = key.hashCode() * CapacityStrategy.GOLDEN_RATIO;
+		return h ^ (h >>> 16);
+	}
+
+	/** @return the 7 bit tag stored in the control byte of a full slot */
+	private static long tag(int hash) {
+		return hash >>> 25;
+	}
+
+	/** @return a word with the high bit set in each byte of group equal to tag.
+	 *  A byte just after a real match can also be flagged, so callers still
+	 *  compare keys; it is never flagged for an EMPTY or DELETED byte */
+	private static long matchTag(long group, long tag) {
+		long x = group ^ (LOW_BITS * tag);
+		return (x - LOW_BITS) & ~x & HIGH_BITS;
+	}
+
+	/** @return a word with the high bit set in each EMPTY byte of group */
+	private static long matchEmpty(long group) {
+		//EMPTY is the only control byte with bit 7 set and bit 1 clear
+		return group & (~group << 6) & HIGH_BITS;
+	}
+
+	/** @return a word with the high bit set in each EMPTY or DELETED byte of group */
+	private static long matchFree(long group) {
+		//EMPTY and DELETED both have bit 7 set and bit 0 clear
+		return group & ~(group << 7) & HIGH_BITS;
+	}
+
+	/** @return the slot within a group of the lowest flagged byte of a match */
+	private static int firstMatch(long match) {
+		return Long.numberOfTrailingZeros(match) >>> 3;
+	}
+
+	/** Looks up the slot holding key, one group at a time. The search stops at the
+	 *  first group containing an EMPTY slot.
+	 * @return the slot index, or -1 if the key does not exist */
+	private int findSlot(Object key, int hash) {
+		long tag = tag(hash);
+		int group = hash & groupMask;
+		int step = 0;
+		while (true) {
+			long word = control[group];
+			for (long match = matchTag(word, tag); match != 0; match &= match - 1) {
+				int slot = group * GROUP_SIZE + firstMatch(match);
+				if (keys[slot].equals(key)) {
+					return slot;
+				}
+			}
+			if (matchEmpty(word) != 0) {
+				return -1;
+			}
+			step++;
+			group = (group + step) & groupMask;
+		}
+	}
+
+	/** @return the first EMPTY or DELETED slot along the probe sequence for hash */
+	private int findFreeSlot(int hash) {
+		int group = hash & groupMask;
+		int step = 0;
+		while (true) {
+			long match = matchFree(control[group]);
+			if (match != 0) {
+				return group * GROUP_SIZE + firstMatch(match);
+			}
+			step++;
+			group = (group + step) & groupMask;
+		}
+	}
+
+	private long controlByte(int slot) {
+		return (control[slot / GROUP_SIZE] >>> ((slot % GROUP_SIZE) * 8)) & 0xFF;
+	}
+
+	private void setControlByte(int slot, long value) {
+		int shift = (slot % GROUP_SIZE) * 8;
+		int group = slot / GROUP_SIZE;
+		control[group] = (control[group] & ~(0xFFL << shift)) | (value << shift);
+	}
+
+	/** Re-inserts every entry into fresh arrays, dropping the tombstones. The
+	 *  table keeps its size when tombstones took up at least half of the growth
+	 *  limit, and doubles otherwise */
+	private void rehash() {
+		long[] oldControl = control;
+		Object[] oldKeys = keys;
+		Object[] oldValues = values;
+
+		int groups = groupMask + 1;
+		if (size >= growthLimit / 2) {
+			groups *= 2;
+		}
+		allocate(groups);
+
+		for (int slot = 0; slot < oldKeys.length; slot++) {
+			long controlByte = (oldControl[slot / GROUP_SIZE] >>> ((slot % GROUP_SIZE) * 8)) & 0xFF;
+			if ((controlByte & EMPTY) == 0) {
+				//full slot: place it in the new arrays
+				int hash = hash(oldKeys[slot]);
+				int newSlot = findFreeSlot(hash);
+				setControlByte(newSlot, tag(hash));
+				keys[newSlot] = oldKeys[slot];
+				values[newSlot] = oldValues[slot];
+			}
+		}
+		tombstones = 0;
+	}
+
+	/** Sets up empty arrays with the given number of groups */
+	private void allocate(int groups) {
+		control = new long[groups];
+		java.util.Arrays.fill(control, LOW_BITS * EMPTY);
+		keys = new Object[groups * GROUP_SIZE];
+		values = new Object[groups * GROUP_SIZE];
+		groupMask = groups - 1;
+		//always leave at least one slot empty so probes terminate
+		growthLimit = Math.min((int) (keys.length * loadFactor), keys.length - 1);
+	}
+
+	//This is just used for testing
+	public static void main(String args[]) {
+		SwissHashTable<String, Integer> map = new SwissHashTable<>(3, 0.875);
+        map.put("this",1 );
+        map.put("coder",2 );
+        map.put("this",4 );
+        map.put("hi",5 );
+        map.put("kelly",28 );
+        map.put("lauren",24 );
+        map.put("matt",29 );
+        map.put("chewie",3 );
+        System.out.println("Hash table size = " + map.size() + " (expected 7)");
+        System.out.println("get(this) = " + map.get("this") + " (expected 4)");
+        map.remove("matt");
+        map.remove("this");
+        System.out.println("Hash table size = " + map.size() + " (expected 5)");
+        System.out.println("get(chewie) = " + map.get("chewie") + " (expected 3)");
+
+        SwissHashTable<Integer, Integer> map2 = new SwissHashTable<>();
+        for (int i = 0; i < 10000; i++) {
+        	map2.put(i, i * 2);
+        }
+        for (int i = 0; i < 10000; i += 2) {
+        	map2.remove(i);
+        }
+        boolean passed = map2.size() == 5000;
+        for (int i = 1; i < 10000; i += 2) {
+        	passed &= map2.get(i) == i * 2;
+        }
+        for (int i = 0; i < 10000; i += 2) {
+        	passed &= !map2.containsKey(i);
+        }
+        System.out.println("Insert/remove of 10000 integers " + (passed ? "passed" : "failed"));
+	}
+
+}